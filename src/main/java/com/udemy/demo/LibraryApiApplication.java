@@ -1,25 +1,27 @@
 package com.udemy.demo;
 
+import com.udemy.demo.api.mapper.DtoMapper;
 import com.udemy.demo.service.EmailService;
 import java.lang.reflect.Array;
 import java.util.Arrays;
 import java.util.List;
-import org.modelmapper.ModelMapper;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.SpringBootConfiguration;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.cache.annotation.EnableCaching;
 import org.springframework.context.annotation.Bean;
 import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.scheduling.annotation.Scheduled;
 
 @SpringBootApplication
 @EnableScheduling
+@EnableCaching
 public class LibraryApiApplication {
   @Bean
-  public ModelMapper modelMapper(){
-    return new ModelMapper();
+  public DtoMapper dtoMapper(){
+    return new DtoMapper();
   }
 
 
@@ -35,7 +37,7 @@ public class LibraryApiApplication {
 //  public CommandLineRunner runner(){
 //    return args -> {
 //      List<String>  emails= Arrays.asList("library-api-a54154@inbox.mailtrap.io");
-//      emailService.sendEmails("Testando emails",emails);
+//      emailService.sendEmailsAsync("Testando emails",emails).join();
 //      System.out.println("Emails enviados!!!");
 //    };
 //  }
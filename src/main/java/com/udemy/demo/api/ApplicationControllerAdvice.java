@@ -2,6 +2,7 @@ package com.udemy.demo.api;
 
 import com.udemy.demo.api.exception.ApiErrors;
 import com.udemy.demo.exception.BusinessException;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.BindingResult;
@@ -9,6 +10,7 @@ import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
+import org.springframework.web.bind.support.WebExchangeBindException;
 import org.springframework.web.server.ResponseStatusException;
 
 @RestControllerAdvice
@@ -20,6 +22,13 @@ public class ApplicationControllerAdvice {
     return new ApiErrors(bindingResult);
   }
 
+  //validação do @Valid na api do profile reactive
+  @ExceptionHandler(WebExchangeBindException.class)
+  @ResponseStatus(HttpStatus.BAD_REQUEST)
+  public ApiErrors handleValidationExceptions(WebExchangeBindException ex){
+    return new ApiErrors(ex.getBindingResult());
+  }
+
   @ExceptionHandler(BusinessException.class)
   @ResponseStatus(HttpStatus.BAD_REQUEST)
   public ApiErrors handleValidationExceptions(BusinessException ex){
@@ -27,9 +36,16 @@ public class ApplicationControllerAdvice {
     return new ApiErrors(ex);
   }
 
+  //versão informada (ou lida no merge) desatualizada: outra requisição alterou o registro antes
+  @ExceptionHandler(OptimisticLockingFailureException.class)
+  @ResponseStatus(HttpStatus.CONFLICT)
+  public ApiErrors handleOptimisticLockingExceptions(OptimisticLockingFailureException ex){
+    return new ApiErrors("Resource was changed by another request");
+  }
+
   @ExceptionHandler(ResponseStatusException.class)
   public ResponseEntity handleResponseExceptions(ResponseStatusException ex){
-    return new ResponseEntity(new ApiErrors(ex),ex.getStatus());
+    return new ResponseEntity(new ApiErrors(ex),ex.getStatusCode());
   }
 
 
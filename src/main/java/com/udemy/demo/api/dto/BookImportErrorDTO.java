@@ -0,0 +1,16 @@
+package com.udemy.demo.api.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Data
+public class BookImportErrorDTO {
+  private Long line;
+  private String isbn;
+  private String message;
+}
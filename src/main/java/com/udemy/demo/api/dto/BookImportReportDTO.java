@@ -0,0 +1,21 @@
+package com.udemy.demo.api.dto;
+
+import java.util.ArrayList;
+import java.util.List;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+//errors traz no máximo as primeiras linhas com erro, failed conta todas
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Data
+public class BookImportReportDTO {
+  private long received;
+  private long imported;
+  private long failed;
+  @Builder.Default
+  private List<BookImportErrorDTO> errors = new ArrayList<>();
+}
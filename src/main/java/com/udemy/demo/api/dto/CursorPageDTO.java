@@ -0,0 +1,21 @@
+package com.udemy.demo.api.dto;
+
+import java.util.List;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Página da paginação por cursor: não tem total de registros, apenas o cursor
+ * que deve ser enviado para buscar a próxima página (nulo quando acabou).
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class CursorPageDTO<T> {
+  private List<T> content;
+  private int size;
+  private String nextCursor;
+}
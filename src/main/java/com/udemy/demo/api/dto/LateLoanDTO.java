@@ -0,0 +1,16 @@
+package com.udemy.demo.api.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class LateLoanDTO {
+  private Long id;
+  private String customer;
+  private String email;
+}
@@ -0,0 +1,19 @@
+package com.udemy.demo.api.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+//um por item do lote, na ordem recebida: index é a posição do item no corpo da requisição
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Data
+public class LoanBatchResultDTO {
+  private int index;
+  private Long id;
+  private String isbn;
+  private LoanBatchStatus status;
+  private String message;
+}
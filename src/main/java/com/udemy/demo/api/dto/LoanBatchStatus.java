@@ -0,0 +1,12 @@
+package com.udemy.demo.api.dto;
+
+//resultado de cada item dos empréstimos e devoluções em lote
+public enum LoanBatchStatus {
+  CREATED,
+  UPDATED,
+  INVALID,
+  NOT_FOUND,
+  CONFLICT,
+  //o banco recusou o item por outro motivo (coluna maior que o limite, por exemplo); os outros itens seguem
+  ERROR
+}
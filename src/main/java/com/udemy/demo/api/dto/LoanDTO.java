@@ -1,6 +1,7 @@
 package com.udemy.demo.api.dto;
 
-import javax.validation.constraints.NotEmpty;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import jakarta.validation.constraints.NotEmpty;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -22,4 +23,17 @@ public class LoanDTO {
   @NotEmpty
   private String email;
   private BookDTO book;
+
+  //versão do empréstimo para a devolução com controle otimista; só as listagens por entidade preenchem
+  @JsonInclude(JsonInclude.Include.NON_NULL)
+  private Long version;
+
+  public LoanDTO(Long id, String isbn, String customer, String email, BookDTO book) {
+    this(id, isbn, customer, email, book, null);
+  }
+
+  //usado nas consultas com "select new", que não aceitam construtor aninhado
+  public LoanDTO(Long id, String isbn, String customer, String email, Long bookId, String title, String author) {
+    this(id, isbn, customer, email, new BookDTO(bookId, title, author, isbn));
+  }
 }
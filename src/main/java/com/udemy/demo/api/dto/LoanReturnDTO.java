@@ -0,0 +1,17 @@
+package com.udemy.demo.api.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+//item da devolução em lote: o ReturnedLoanDTO com o id do empréstimo
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@Data
+public class LoanReturnDTO {
+    private Long id;
+    private Boolean returned;
+    private Long version;
+}
@@ -0,0 +1,38 @@
+package com.udemy.demo.api.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import java.util.List;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Slice;
+
+/**
+ * Página das listagens. Mantém os nomes do {@code PageImpl} que os clientes usam (content, number, size,
+ * totalElements, totalPages e last) e deixa de fora o pageable e o sort, que só repetiam a requisição.
+ * Na listagem sem total (count=false) totalElements e totalPages não aparecem.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class PageDTO<T> {
+  private List<T> content;
+  private int number;
+  private int size;
+  private Long totalElements;
+  private Integer totalPages;
+  private boolean last;
+
+  public static <T> PageDTO<T> of(Page<T> page) {
+    return new PageDTO<>(page.getContent(), page.getNumber(), page.getSize(), page.getTotalElements(),
+        page.getTotalPages(), page.isLast());
+  }
+
+  public static <T> PageDTO<T> of(Slice<T> slice) {
+    return new PageDTO<>(slice.getContent(), slice.getNumber(), slice.getSize(), null, null, slice.isLast());
+  }
+}
@@ -11,4 +11,7 @@ import lombok.NoArgsConstructor;
 @Data
 public class ReturnedLoanDTO {
     private Boolean returned;
+
+    //opcional: com a versão lida, a devolução falha com 409 se o empréstimo mudou nesse meio tempo
+    private Long version;
 }
@@ -19,6 +19,10 @@ public class ApiErrors {
 
   }
 
+  public ApiErrors(String error) {
+    this.errors= Arrays.asList(error);
+  }
+
   public ApiErrors(ResponseStatusException ex) {
     this.errors= Arrays.asList(ex.getReason());
 
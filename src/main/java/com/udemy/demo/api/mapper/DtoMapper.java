@@ -0,0 +1,75 @@
+package com.udemy.demo.api.mapper;
+
+import com.udemy.demo.api.dto.BookDTO;
+import com.udemy.demo.api.dto.LoanDTO;
+import com.udemy.demo.api.model.entity.BookRow;
+import com.udemy.demo.api.model.entity.Books;
+import com.udemy.demo.api.model.entity.Loan;
+import com.udemy.demo.api.model.entity.LoanBookRow;
+
+/**
+ * Conversões entre entidades e DTOs da api, escritas à mão para evitar a
+ * reflexão do ModelMapper a cada linha das listagens paginadas.
+ */
+public class DtoMapper {
+
+  public Books toEntity(BookDTO dto) {
+    if (dto == null) {
+      return null;
+    }
+    return Books.builder()
+        .id(dto.getId())
+        .title(dto.getTitle())
+        .author(dto.getAuthor())
+        .isbn(dto.getIsbn())
+        .build();
+  }
+
+  public BookDTO toDto(Books book) {
+    if (book == null) {
+      return null;
+    }
+    return new BookDTO(book.getId(), book.getTitle(), book.getAuthor(), book.getIsbn());
+  }
+
+  public LoanDTO toDto(Loan loan) {
+    if (loan == null) {
+      return null;
+    }
+    Books book = loan.getBook();
+    return new LoanDTO(
+        loan.getId(),
+        book == null ? null : book.getIsbn(),
+        loan.getCustomer(),
+        loan.getCustomerEmail(),
+        toDto(book),//o BookDTO evita de mandar todo book , somente aquilo que é preciso
+        loan.getVersion());
+  }
+
+  public BookRow toRow(BookDTO dto) {
+    if (dto == null) {
+      return null;
+    }
+    return BookRow.builder()
+        .id(dto.getId())
+        .title(dto.getTitle())
+        .author(dto.getAuthor())
+        .isbn(dto.getIsbn())
+        .build();
+  }
+
+  public BookDTO toDto(BookRow book) {
+    if (book == null) {
+      return null;
+    }
+    return new BookDTO(book.getId(), book.getTitle(), book.getAuthor(), book.getIsbn());
+  }
+
+  public LoanDTO toDto(LoanBookRow loan) {
+    if (loan == null) {
+      return null;
+    }
+    return new LoanDTO(loan.id(), loan.isbn(), loan.customer(), loan.customerEmail(),
+        loan.bookId(), loan.title(), loan.author());
+  }
+}
@@ -0,0 +1,24 @@
+package com.udemy.demo.api.model.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+//livro como lido pelo r2dbc na variante reativa (BooksReactiveRepository): mesma tabela de Books, sem os relacionamentos do jpa
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Data
+public class BookRow {
+
+  //vem da books_seq, a mesma do hibernate
+  private Long id;
+
+  private String title;
+  private String author;
+  private String isbn;
+
+  //mesma coluna de Books.version
+  private Long version;
+}
@@ -1,13 +1,17 @@
 package com.udemy.demo.api.model.entity;
 
 import java.util.List;
-import javax.persistence.Column;
-import javax.persistence.Entity;
-import javax.persistence.FetchType;
-import javax.persistence.GeneratedValue;
-import javax.persistence.GenerationType;
-import javax.persistence.Id;
-import javax.persistence.OneToMany;
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.FetchType;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.OneToMany;
+import jakarta.persistence.SequenceGenerator;
+import jakarta.persistence.Table;
+import jakarta.persistence.Version;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -19,10 +23,13 @@ import lombok.NoArgsConstructor;
 @AllArgsConstructor
 @Data
 @Entity
+@Table(indexes = @Index(name = "uk_books_isbn", columnList = "isbn", unique = true))
 public class Books {
 
+  //sequence em vez de identity para o hibernate poder agrupar os inserts da importação em lote
   @Id
-  @GeneratedValue(strategy= GenerationType.IDENTITY)
+  @GeneratedValue(strategy= GenerationType.SEQUENCE, generator = "books_seq")
+  @SequenceGenerator(name = "books_seq", sequenceName = "books_seq", allocationSize = 50)
   @Column
   private Long id;
 
@@ -30,6 +37,10 @@ public class Books {
   private String author;
   private String isbn;
 
+  //controle otimista das alterações, exposto como ETag em /api/books/{id}
+  @Version
+  private Long version;
+
   @OneToMany(mappedBy = "book")
   private List<Loan> loans;
 }
@@ -0,0 +1,50 @@
+package com.udemy.demo.api.model.entity;
+
+import java.time.LocalDateTime;
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Lob;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Email que não foi entregue depois de todas as tentativas (ou que a fila cheia recusou), guardado para
+ * o reenvio; os do dia são reenviados a cada hora pelo {@code LateLoanNotificationJob}.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+public class DeadLetterEmail {
+
+  @Id
+  @GeneratedValue(strategy = GenerationType.IDENTITY)
+  @Column
+  private Long id;
+
+  @Lob
+  @Column
+  private String recipients;
+
+  @Column
+  private String subject;
+
+  @Lob
+  @Column
+  private String text;
+
+  @Column
+  private Integer attempts;
+
+  @Column(length = 1000)
+  private String lastError;
+
+  @Column
+  private LocalDateTime failedAt;
+}
@@ -0,0 +1,35 @@
+package com.udemy.demo.api.model.entity;
+
+import java.time.LocalDate;
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Progresso de um job em lotes: último id processado na execução do dia,
+ * para que uma execução interrompida continue de onde parou.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+public class JobCheckpoint {
+
+  @Id
+  @Column
+  private String name;
+
+  @Column
+  private LocalDate runDate;
+
+  @Column
+  private Long lastId;
+
+  @Column
+  private Boolean finished;
+}
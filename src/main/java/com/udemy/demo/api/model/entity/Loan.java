@@ -2,14 +2,20 @@ package com.udemy.demo.api.model.entity;
 
 
 import java.time.LocalDate;
-import javax.persistence.CascadeType;
-import javax.persistence.Column;
-import javax.persistence.Entity;
-import javax.persistence.GeneratedValue;
-import javax.persistence.GenerationType;
-import javax.persistence.Id;
-import javax.persistence.JoinColumn;
-import javax.persistence.ManyToOne;
+import jakarta.persistence.CascadeType;
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.FetchType;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.JoinColumn;
+import jakarta.persistence.ManyToOne;
+import jakarta.persistence.PrePersist;
+import jakarta.persistence.PreUpdate;
+import jakarta.persistence.Table;
+import jakarta.persistence.UniqueConstraint;
+import jakarta.persistence.Version;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -20,7 +26,10 @@ import lombok.NoArgsConstructor;
 @NoArgsConstructor
 @AllArgsConstructor
 @Entity
+@Table(uniqueConstraints = @UniqueConstraint(name = Loan.ACTIVE_BOOK_CONSTRAINT, columnNames = "active_book_id"))
 public class Loan {
+  public static final String ACTIVE_BOOK_CONSTRAINT = "uk_loan_active_book";
+
   @Id
   @GeneratedValue(strategy = GenerationType.IDENTITY)
   @Column
@@ -32,8 +41,9 @@ public class Loan {
   @Column(name="customer_email")
   private String customerEmail;
 
+  //lazy: as listagens que devolvem o livro buscam com join fetch/entity graph no repository
   @JoinColumn(name="id_book")
-  @ManyToOne
+  @ManyToOne(fetch = FetchType.LAZY)
   private Books book;
 
   @Column
@@ -41,4 +51,19 @@ public class Loan {
 
   @Column
   private Boolean returned;
+
+  //id do livro enquanto o empréstimo não foi devolvido, nulo depois: a unique garante um só empréstimo ativo por livro
+  @Column(name="active_book_id")
+  private Long activeBookId;
+
+  //controle otimista: o merge e a devolução direta (LoanRepository.updateReturned) conferem e incrementam
+  @Version
+  @Column
+  private Long version;
+
+  @PrePersist
+  @PreUpdate
+  void updateActiveBook() {
+    activeBookId = Boolean.TRUE.equals(returned) || book == null ? null : book.getId();
+  }
 }
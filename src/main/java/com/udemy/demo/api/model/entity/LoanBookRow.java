@@ -0,0 +1,6 @@
+package com.udemy.demo.api.model.entity;
+
+//linha das listagens de empréstimos da variante reativa: empréstimo e livro lidos no mesmo join
+public record LoanBookRow(Long id, String isbn, String customer, String customerEmail,
+    Long bookId, String title, String author) {
+}
@@ -0,0 +1,38 @@
+package com.udemy.demo.api.model.entity;
+
+import java.time.LocalDate;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+//empréstimo como lido pelo r2dbc na variante reativa (LoanReactiveRepository): o livro é só o id, as listagens usam LoanBookRow
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class LoanRow {
+
+  private Long id;
+
+  private String customer;
+
+  private String customerEmail;
+
+  private Long bookId;
+
+  private LocalDate loanDate;
+
+  private Boolean returned;
+
+  //mesma regra de Loan.updateActiveBook: a unique uk_loan_active_book barra o segundo empréstimo ativo
+  private Long activeBookId;
+
+  //mesma coluna de Loan.version
+  private Long version;
+
+  public LoanRow updateActiveBook() {
+    activeBookId = Boolean.TRUE.equals(returned) ? null : bookId;
+    return this;
+  }
+}
@@ -1,46 +1,68 @@
 package com.udemy.demo.api.resource;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.udemy.demo.api.dto.BookDTO;
+import com.udemy.demo.api.dto.BookImportReportDTO;
+import com.udemy.demo.api.dto.CursorPageDTO;
 import com.udemy.demo.api.dto.LoanDTO;
+import com.udemy.demo.api.dto.PageDTO;
+import com.udemy.demo.api.mapper.DtoMapper;
 import com.udemy.demo.api.model.entity.Books;
 import com.udemy.demo.api.model.entity.Loan;
+import com.udemy.demo.model.repository.BooksRepository;
+import com.udemy.demo.model.repository.LoanRepository;
+import com.udemy.demo.service.BookImportService;
 import com.udemy.demo.service.BookService;
 import com.udemy.demo.service.LoanService;
-import io.swagger.annotations.Api;
-import io.swagger.annotations.ApiOperation;
-import io.swagger.annotations.ApiResponse;
-import io.swagger.annotations.ApiResponses;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import java.io.InputStream;
+import java.util.Arrays;
 import java.util.List;
-import java.util.stream.Collectors;
-import javax.validation.Valid;
+import java.util.Map;
+import jakarta.validation.Valid;
+import jakarta.validation.Validator;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.modelmapper.ModelMapper;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+//api do mvc, o profile reactive troca pela BookReactiveController
 @RestController
+@Profile("!reactive")
 @RequestMapping("/api/books")
 @RequiredArgsConstructor
-@Api("Book Api - Testando")
+@Tag(name = "Book Api - Testando")
 @Slf4j
 public class BookController {
 
   private final BookService service;
   private final LoanService loanService;
-  private final  ModelMapper modelMapper;
+  private final DtoMapper mapper;
+  private final BookImportService importService;
+  private final ObjectMapper objectMapper;
+  private final Validator validator;
 
 
 
@@ -51,17 +73,31 @@ public class BookController {
   public BookDTO create(@RequestBody @Valid BookDTO dto) {
     //Book book=Book.bui
     log.info("Create a book for isbn agora automatizado com heroku: {}",dto.getIsbn());
-    Books entity = modelMapper.map(dto, Books.class);
+    Books entity = mapper.toEntity(dto);
     entity = service.save(entity);
 
-    return modelMapper.map(entity, BookDTO.class);
+    return mapper.toDto(entity);
   }
 
+  //o corpo é lido como stream, então a importação aceita arquivos maiores que a memória
+  @PostMapping(value = "import", consumes = "text/csv")
+  @Operation(summary = "Importa livros de um csv (title,author,isbn)")
+  public BookImportReportDTO importCsv(InputStream body) {
+    return importService.importBooks(BookImportReader.csv(body, validator, mapper));
+  }
+
+  @PostMapping(value = "import", consumes = "application/x-ndjson")
+  @Operation(summary = "Importa livros de um ndjson, um livro por linha")
+  public BookImportReportDTO importNdjson(InputStream body) {
+    return importService.importBooks(BookImportReader.ndjson(body, objectMapper, validator, mapper));
+  }
+
+  //o ETag é a versão do livro: com If-None-Match igual o spring responde 304 sem corpo
   @GetMapping("{id}")
-  public BookDTO get(@PathVariable Long id) {
+  public ResponseEntity<BookDTO> get(@PathVariable Long id) {
     return service
         .getById(id)
-        .map(book -> modelMapper.map(book, BookDTO.class))
+        .map(book -> ResponseEntity.ok().eTag(BookETag.of(book.getVersion())).body(mapper.toDto(book)))
         .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND));
 
 
@@ -77,56 +113,130 @@ public class BookController {
 
   }
 
+  //If-Match obrigatório (428 sem ele); 412 se o livro mudou desde a leitura, seja pelo ETag ou pela versão no merge
   @PutMapping("{id}")
-  public BookDTO update(@PathVariable Long id, BookDTO dto) {
-    return service
-        .getById(id).map(book -> {
-          book.setAuthor(dto.getAuthor());
-          book.setTitle(dto.getTitle());
-          book = service.update(book);
-          return modelMapper.map(book, BookDTO.class);
-        }).orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND));
-
+  public ResponseEntity<BookDTO> update(@PathVariable Long id, @RequestBody @Valid BookDTO dto,
+      @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+    BookETag.require(ifMatch);
+    Books book = service.getById(id)
+        .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND));
+    BookETag.check(ifMatch, book.getVersion());
+
+    //cópia com a versão lida: o livro do cache não é alterado e o merge confere a versão na base
+    Books changed = Books.builder().id(book.getId()).isbn(book.getIsbn()).author(dto.getAuthor()).title(dto.getTitle())
+        .version(book.getVersion()).build();
+    try {
+      changed = service.update(changed);
+    } catch (OptimisticLockingFailureException e) {
+      throw new ResponseStatusException(HttpStatus.PRECONDITION_FAILED, BookETag.CHANGED);
+    }
+    return ResponseEntity.ok().eTag(BookETag.of(changed.getVersion())).body(mapper.toDto(changed));
   }
 
   //observa que tem 2 get - Spring encaixa os parametros com o metodo correspondente
   @GetMapping
-  @ApiOperation("Procura um livro")
+  @Operation(summary = "Procura um livro")
   @ApiResponses({
-       @ApiResponse(code=204,message="Livro não localizado")
+       @ApiResponse(responseCode="204",description="Livro não localizado")
   })
-  public Page<BookDTO> find(BookDTO dto, Pageable pageRequest) {
-    System.out.println(dto.getAuthor() + "" + dto.getIsbn());
-    Books filter = modelMapper.map(dto, Books.class);
-    Page<Books> result = service.find(filter, pageRequest);
-    List<BookDTO> list = result.getContent()
-        .stream()
-        .map(entity -> modelMapper.map(entity, BookDTO.class))
-        .collect(Collectors.toList());
+  public PageDTO<BookDTO> find(BookDTO dto, Pageable pageRequest) {
+    log.debug("Finding books by author {} and isbn {}", dto.getAuthor(), dto.getIsbn());
+    Books filter = mapper.toEntity(dto);
+    Page<BookDTO> result = service.find(filter, pageRequest);
+
+    return PageDTO.of(result);
+  }
+
+  //count=false: para quem não mostra "página X de Y", devolve só se há próxima página e não calcula o total
+  @GetMapping(params = {"count=false", "!cursor", "!fields"})
+  @Operation(summary = "Procura livros sem calcular o total")
+  public PageDTO<BookDTO> findWithoutCount(BookDTO dto, Pageable pageRequest) {
+    return PageDTO.of(service.findSlice(mapper.toEntity(dto), pageRequest));
+  }
+
+  //fields=id,isbn: a consulta e a resposta só trazem os campos pedidos; aceita count=false, o cursor não
+  @GetMapping(params = {"fields", "!cursor"})
+  @Operation(summary = "Procura livros trazendo só os campos pedidos")
+  public PageDTO<Map<String, Object>> findFields(BookDTO dto, Pageable pageRequest, @RequestParam String fields,
+      @RequestParam(defaultValue = "true") boolean count) {
+    List<String> selected = SparseFields.parse(fields, BooksRepository.FIELDS);
+    Books filter = mapper.toEntity(dto);
+    return count
+        ? PageDTO.of(service.findFields(filter, pageRequest, selected))
+        : PageDTO.of(service.findFieldsSlice(filter, pageRequest, selected));
+  }
+
+  //paginação por cursor (keyset) para quem percorre muitos registros: sem offset e sem total
+  @GetMapping(params = "cursor")
+  @Operation(summary = "Procura livros paginando por cursor")
+  public CursorPageDTO<BookDTO> findByCursor(BookDTO dto, @RequestParam(required = false) String cursor,
+      @RequestParam(defaultValue = "20") int size) {
+    Slice<Books> result = service.findAfter(mapper.toEntity(dto), KeysetCursor.decode(cursor), KeysetCursor.size(size));
+    return KeysetCursor.page(result, Books::getId, mapper::toDto);
+  }
+
+
+  //exportação: mesmos filtros da busca, todos os registros escritos na resposta enquanto são lidos
+  @GetMapping(value = "export", produces = "application/x-ndjson")
+  @Operation(summary = "Exporta os livros do filtro em ndjson")
+  public ResponseEntity<StreamingResponseBody> exportNdjson(BookDTO dto) {
+    Books filter = mapper.toEntity(dto);
+    return ExportWriter.<BookDTO>ndjson("books", objectMapper, action -> service.export(filter, action));
+  }
 
-    return new PageImpl<BookDTO>(list, pageRequest, result.getTotalElements());
+  @GetMapping(value = "export", produces = "text/csv")
+  @Operation(summary = "Exporta os livros do filtro em csv")
+  public ResponseEntity<StreamingResponseBody> exportCsv(BookDTO dto) {
+    Books filter = mapper.toEntity(dto);
+    return ExportWriter.<BookDTO>csv("books", Arrays.asList("id", "title", "author", "isbn"),
+        book -> Arrays.asList(book.getId(), book.getTitle(), book.getAuthor(), book.getIsbn()),
+        action -> service.export(filter, action));
   }
 
 
   @GetMapping("{id}/loans")
-  public Page<LoanDTO> loansByBook(@PathVariable Long id, Pageable pageable) {
+  public PageDTO<LoanDTO> loansByBook(@PathVariable Long id, Pageable pageable) {
 
       Books book = service.getById(id)
           .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND));
 
-     Page<Loan> result= loanService.getLoansByBook(book,pageable);
+     Page<LoanDTO> result= loanService.getLoansByBook(book,pageable);
+
+    return PageDTO.of(result);
+
+  }
+
+  @GetMapping(value = "{id}/loans", params = {"count=false", "!cursor", "!fields"})
+  public PageDTO<LoanDTO> loansByBookWithoutCount(@PathVariable Long id, Pageable pageable) {
+
+    Books book = service.getById(id)
+        .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND));
+
+    return PageDTO.of(loanService.getLoansByBookSlice(book, pageable));
+  }
 
-    List<LoanDTO> loans=result.getContent().stream()
-        .map(entity->{
-          Books loanBook=entity.getBook();
-          BookDTO bookDTO=modelMapper.map(loanBook,BookDTO.class);//isso evita de mandar todo book , somente aquilo que é preciso
-          LoanDTO loanDTO=modelMapper.map(entity,LoanDTO.class);
-          loanDTO.setBook(bookDTO);
-          return loanDTO;
-        }).collect(Collectors.toList());
+  @GetMapping(value = "{id}/loans", params = {"fields", "!cursor"})
+  public PageDTO<Map<String, Object>> loansByBookFields(@PathVariable Long id, Pageable pageable,
+      @RequestParam String fields, @RequestParam(defaultValue = "true") boolean count) {
 
-    return new PageImpl<LoanDTO>(loans,pageable, result.getTotalElements());
+    List<String> selected = SparseFields.parse(fields, LoanRepository.FIELDS);
+    Books book = service.getById(id)
+        .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND));
+
+    return count
+        ? PageDTO.of(loanService.getLoansByBookFields(book, pageable, selected))
+        : PageDTO.of(loanService.getLoansByBookFieldsSlice(book, pageable, selected));
+  }
+
+  @GetMapping(value = "{id}/loans", params = "cursor")
+  public CursorPageDTO<LoanDTO> loansByBookByCursor(@PathVariable Long id, @RequestParam(required = false) String cursor,
+      @RequestParam(defaultValue = "20") int size) {
+
+    Books book = service.getById(id)
+        .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND));
 
+    Slice<Loan> result = loanService.getLoansByBookAfter(book, KeysetCursor.decode(cursor), KeysetCursor.size(size));
+    return KeysetCursor.page(result, Loan::getId, mapper::toDto);
   }
 
 
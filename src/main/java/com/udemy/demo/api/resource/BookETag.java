@@ -0,0 +1,39 @@
+package com.udemy.demo.api.resource;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * ETag do livro a partir da versão (Books.version). O GET devolve o ETag e o spring responde 304
+ * ao If-None-Match igual; o PUT exige If-Match e responde 412 quando o livro mudou desde a leitura.
+ */
+final class BookETag {
+
+  static final String CHANGED = "Book was changed by another request";
+
+  private BookETag() {
+  }
+
+  static String of(Long version) {
+    return "\"" + version + "\"";
+  }
+
+  /** 428 quando o cliente não informa a versão que leu */
+  static void require(String ifMatch) {
+    if (ifMatch == null || ifMatch.isBlank()) {
+      throw new ResponseStatusException(HttpStatus.PRECONDITION_REQUIRED, "If-Match header is required");
+    }
+  }
+
+  /** 412 quando nenhum ETag do If-Match é o da versão atual; "*" aceita qualquer versão */
+  static void check(String ifMatch, Long version) {
+    String current = of(version);
+    for (String etag : ifMatch.split(",")) {
+      String value = etag.trim();
+      if (value.equals("*") || value.equals(current)) {
+        return;
+      }
+    }
+    throw new ResponseStatusException(HttpStatus.PRECONDITION_FAILED, CHANGED);
+  }
+}
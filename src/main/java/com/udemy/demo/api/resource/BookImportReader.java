@@ -0,0 +1,174 @@
+package com.udemy.demo.api.resource;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.udemy.demo.api.dto.BookDTO;
+import com.udemy.demo.api.mapper.DtoMapper;
+import com.udemy.demo.service.BookImportRow;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.stream.Collectors;
+import jakarta.validation.Validator;
+
+/**
+ * Lê o corpo da importação linha a linha, sem carregar o arquivo inteiro. Cada linha vira
+ * um {@link BookImportRow} com o livro ou com o erro de leitura/validação daquela linha.
+ *
+ * <p>CSV: a primeira linha pode ser o cabeçalho (title,author,isbn em qualquer ordem);
+ * sem cabeçalho as colunas são title,author,isbn. Campos entre aspas aceitam vírgula e
+ * aspas duplicadas (""), mas não quebra de linha.
+ *
+ * <p>NDJSON: um objeto json por linha com title, author e isbn.
+ */
+abstract class BookImportReader implements Iterator<BookImportRow> {
+
+  private final BufferedReader reader;
+  private final Validator validator;
+  private final DtoMapper mapper;
+  private long lineNumber;
+  private BookImportRow next;
+
+  private BookImportReader(InputStream body, Validator validator, DtoMapper mapper) {
+    this.reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8));
+    this.validator = validator;
+    this.mapper = mapper;
+  }
+
+  static BookImportReader csv(InputStream body, Validator validator, DtoMapper mapper) {
+    return new BookImportReader(body, validator, mapper) {
+      private int[] columns = {0, 1, 2};
+      private boolean first = true;
+
+      @Override
+      protected BookDTO parse(String line) {
+        List<String> fields = splitCsv(line);
+        if (first) {
+          first = false;
+          List<String> header = fields.stream().map(f -> f.trim().toLowerCase()).collect(Collectors.toList());
+          if (header.contains("isbn")) {
+            columns = new int[]{header.indexOf("title"), header.indexOf("author"), header.indexOf("isbn")};
+            return null;
+          }
+        }
+        return new BookDTO(null, field(fields, columns[0]), field(fields, columns[1]), field(fields, columns[2]));
+      }
+    };
+  }
+
+  static BookImportReader ndjson(InputStream body, ObjectMapper objectMapper, Validator validator, DtoMapper mapper) {
+    return new BookImportReader(body, validator, mapper) {
+      @Override
+      protected BookDTO parse(String line) {
+        try {
+          return objectMapper.readValue(line, BookDTO.class);
+        } catch (JsonProcessingException e) {
+          throw new IllegalArgumentException("Json inválido: " + e.getOriginalMessage());
+        }
+      }
+    };
+  }
+
+  /**
+   * Converte uma linha não vazia; retorna null para linhas que não são livros (cabeçalho).
+   * Erros de formato são lançados como {@link IllegalArgumentException}.
+   */
+  protected abstract BookDTO parse(String line);
+
+  @Override
+  public boolean hasNext() {
+    while (next == null) {
+      String line = readLine();
+      if (line == null) {
+        return false;
+      }
+      lineNumber++;
+      if (!line.trim().isEmpty()) {
+        next = toRow(line);
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public BookImportRow next() {
+    if (!hasNext()) {
+      throw new NoSuchElementException();
+    }
+    BookImportRow row = next;
+    next = null;
+    return row;
+  }
+
+  private BookImportRow toRow(String line) {
+    BookDTO dto;
+    try {
+      dto = parse(line);
+    } catch (IllegalArgumentException e) {
+      return BookImportRow.invalid(lineNumber, e.getMessage());
+    }
+    if (dto == null) {
+      return null;
+    }
+    String violations = validator.validate(dto).stream()
+        .map(v -> v.getPropertyPath() + ": " + v.getMessage())
+        .sorted()
+        .collect(Collectors.joining("; "));
+    if (!violations.isEmpty()) {
+      return BookImportRow.invalid(lineNumber, violations);
+    }
+    dto.setId(null);
+    return BookImportRow.of(lineNumber, mapper.toEntity(dto));
+  }
+
+  private String readLine() {
+    try {
+      return reader.readLine();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private static String field(List<String> fields, int column) {
+    return column >= 0 && column < fields.size() ? fields.get(column).trim() : null;
+  }
+
+  static List<String> splitCsv(String line) {
+    List<String> fields = new ArrayList<>();
+    StringBuilder field = new StringBuilder();
+    boolean quoted = false;
+    for (int i = 0; i < line.length(); i++) {
+      char c = line.charAt(i);
+      if (quoted) {
+        if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+          field.append('"');
+          i++;
+        } else if (c == '"') {
+          quoted = false;
+        } else {
+          field.append(c);
+        }
+      } else if (c == '"') {
+        quoted = true;
+      } else if (c == ',') {
+        fields.add(field.toString());
+        field.setLength(0);
+      } else {
+        field.append(c);
+      }
+    }
+    if (quoted) {
+      throw new IllegalArgumentException("Aspas não fechadas na linha");
+    }
+    fields.add(field.toString());
+    return fields;
+  }
+
+}
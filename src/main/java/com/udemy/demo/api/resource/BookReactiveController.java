@@ -0,0 +1,96 @@
+package com.udemy.demo.api.resource;
+
+import com.udemy.demo.api.dto.BookDTO;
+import com.udemy.demo.api.dto.LoanDTO;
+import com.udemy.demo.api.dto.PageDTO;
+import com.udemy.demo.api.mapper.DtoMapper;
+import com.udemy.demo.service.BookReactiveService;
+import com.udemy.demo.service.LoanReactiveService;
+import jakarta.validation.Valid;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Mono;
+
+//mesmas rotas e contratos de BookController no profile reactive; importação, exportação e
+//as listagens com count=false e cursor ficam só na api do mvc
+@RestController
+@RequestMapping("/api/books")
+@RequiredArgsConstructor
+@Profile("reactive")
+@Slf4j
+public class BookReactiveController {
+
+  private final BookReactiveService service;
+  private final LoanReactiveService loanService;
+  private final DtoMapper mapper;
+
+  @PostMapping
+  @ResponseStatus(HttpStatus.CREATED)
+  public Mono<BookDTO> create(@RequestBody @Valid BookDTO dto) {
+    log.info("Create a book for isbn: {}",dto.getIsbn());
+    return service.save(mapper.toRow(dto)).map(mapper::toDto);
+  }
+
+  @GetMapping("{id}")
+  public Mono<ResponseEntity<BookDTO>> get(@PathVariable Long id) {
+    return service.getById(id)
+        .map(book -> ResponseEntity.ok().eTag(BookETag.of(book.getVersion())).body(mapper.toDto(book)))
+        .switchIfEmpty(Mono.error(() -> new ResponseStatusException(HttpStatus.NOT_FOUND)));
+  }
+
+  @DeleteMapping("{id}")
+  @ResponseStatus(HttpStatus.NO_CONTENT)
+  public Mono<Void> delete(@PathVariable Long id) {
+    return service.getById(id)
+        .switchIfEmpty(Mono.error(() -> new ResponseStatusException(HttpStatus.NOT_FOUND)))
+        .flatMap(service::delete);
+  }
+
+  @PutMapping("{id}")
+  public Mono<ResponseEntity<BookDTO>> update(@PathVariable Long id, @RequestBody @Valid BookDTO dto,
+      @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+    BookETag.require(ifMatch);
+    return service.getById(id)
+        .switchIfEmpty(Mono.error(() -> new ResponseStatusException(HttpStatus.NOT_FOUND)))
+        .flatMap(book -> {
+          BookETag.check(ifMatch, book.getVersion());
+          book.setAuthor(dto.getAuthor());
+          book.setTitle(dto.getTitle());
+          return service.update(book);
+        })
+        .onErrorMap(OptimisticLockingFailureException.class,
+            e -> new ResponseStatusException(HttpStatus.PRECONDITION_FAILED, BookETag.CHANGED))
+        .map(book -> ResponseEntity.ok().eTag(BookETag.of(book.getVersion())).body(mapper.toDto(book)));
+  }
+
+  @GetMapping
+  public Mono<PageDTO<BookDTO>> find(BookDTO dto, Pageable pageRequest) {
+    return service.find(mapper.toEntity(dto), pageRequest)
+        .map(page -> PageDTO.of(page.map(mapper::toDto)));
+  }
+
+  @GetMapping("{id}/loans")
+  public Mono<PageDTO<LoanDTO>> loansByBook(@PathVariable Long id, Pageable pageable) {
+    return service.getById(id)
+        .switchIfEmpty(Mono.error(() -> new ResponseStatusException(HttpStatus.NOT_FOUND)))
+        .flatMap(book -> loanService.getLoansByBook(book.getId(), pageable))
+        .map(page -> PageDTO.of(page.map(mapper::toDto)));
+  }
+}
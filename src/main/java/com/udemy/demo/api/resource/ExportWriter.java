@@ -0,0 +1,100 @@
+package com.udemy.demo.api.resource;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+/**
+ * Escreve a exportação direto na resposta enquanto os registros são lidos da base.
+ * A leitura roda na thread do {@link StreamingResponseBody}, fora da thread da requisição;
+ * se o cliente desconectar a escrita falha e a leitura é interrompida.
+ */
+final class ExportWriter {
+
+  static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
+  static final MediaType CSV = MediaType.parseMediaType("text/csv");
+
+  private ExportWriter() {
+  }
+
+  /**
+   * {@code source} recebe quem escreve cada registro e deve chamá-lo para todos os registros. Os registros
+   * vão por um único gerador do jackson direto na saída da resposta, sem montar uma String por registro.
+   */
+  static <T> ResponseEntity<StreamingResponseBody> ndjson(String name, ObjectMapper objectMapper,
+      Consumer<Consumer<T>> source) {
+    ObjectWriter json = objectMapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+    return response(name + ".ndjson", NDJSON, out -> {
+      JsonGenerator generator = json.createGenerator(out);
+      generator.setRootValueSeparator(null);
+      source.accept(item -> {
+        try {
+          json.writeValue(generator, item);
+          generator.writeRaw('\n');
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+      });
+      generator.flush();
+    });
+  }
+
+  static <T> ResponseEntity<StreamingResponseBody> csv(String name, List<String> header,
+      Function<T, List<Object>> columns, Consumer<Consumer<T>> source) {
+    return response(name + ".csv", CSV, out -> {
+      Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+      line(writer, header);
+      source.accept(item -> line(writer, columns.apply(item)));
+      writer.flush();
+    });
+  }
+
+  private static ResponseEntity<StreamingResponseBody> response(String fileName, MediaType type, StreamingResponseBody body) {
+    StreamingResponseBody stream = out -> {
+      try {
+        body.writeTo(out);
+      } catch (UncheckedIOException e) {
+        throw e.getCause();
+      }
+    };
+    return ResponseEntity.ok()
+        .contentType(type)
+        .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=" + fileName)
+        .body(stream);
+  }
+
+  private static void line(Writer writer, List<?> values) {
+    try {
+      writer.write(values.stream().map(ExportWriter::csvField).collect(Collectors.joining(",")));
+      writer.write('\n');
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  static String csvField(Object value) {
+    if (value == null) {
+      return "";
+    }
+    String text = value.toString();
+    if (text.contains(",") || text.contains("\"") || text.contains("\n") || text.contains("\r")) {
+      return '"' + text.replace("\"", "\"\"") + '"';
+    }
+    return text;
+  }
+}
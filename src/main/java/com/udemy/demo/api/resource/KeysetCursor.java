@@ -0,0 +1,60 @@
+package com.udemy.demo.api.resource;
+
+import com.udemy.demo.api.dto.CursorPageDTO;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+import java.util.stream.Collectors;
+import org.springframework.data.domain.Slice;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * Cursor opaco da paginação por chave (keyset): guarda o último id retornado,
+ * a próxima página busca os registros com id maior que ele.
+ */
+final class KeysetCursor {
+
+  static final int MAX_SIZE = 1000;
+
+  private static final String PREFIX = "id:";
+
+  private KeysetCursor() {
+  }
+
+  static String encode(long lastId) {
+    return Base64.getUrlEncoder().withoutPadding()
+        .encodeToString((PREFIX + lastId).getBytes(StandardCharsets.UTF_8));
+  }
+
+  /** cursor vazio é a primeira página */
+  static long decode(String cursor) {
+    if (cursor == null || cursor.isEmpty()) {
+      return 0L;
+    }
+    try {
+      String value = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+      if (!value.startsWith(PREFIX)) {
+        throw new IllegalArgumentException(value);
+      }
+      return Long.parseLong(value.substring(PREFIX.length()));
+    } catch (IllegalArgumentException e) {
+      throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid cursor");
+    }
+  }
+
+  static int size(int size) {
+    return Math.max(1, Math.min(size, MAX_SIZE));
+  }
+
+  static <E, D> CursorPageDTO<D> page(Slice<E> slice, ToLongFunction<E> id, Function<E, D> mapper) {
+    List<E> content = slice.getContent();
+    List<D> dtos = content.stream().map(mapper).collect(Collectors.toList());
+    String next = slice.hasNext() && !content.isEmpty()
+        ? encode(id.applyAsLong(content.get(content.size() - 1)))
+        : null;
+    return new CursorPageDTO<>(dtos, slice.getSize(), next);
+  }
+}
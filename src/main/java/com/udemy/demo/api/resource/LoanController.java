@@ -1,40 +1,55 @@
 package com.udemy.demo.api.resource;
 
-import com.udemy.demo.api.dto.BookDTO;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.udemy.demo.api.dto.CursorPageDTO;
+import com.udemy.demo.api.dto.LoanBatchResultDTO;
 import com.udemy.demo.api.dto.LoanDTO;
 import com.udemy.demo.api.dto.LoanFilterDTO;
+import com.udemy.demo.api.dto.LoanReturnDTO;
+import com.udemy.demo.api.dto.PageDTO;
 import com.udemy.demo.api.dto.ReturnedLoanDTO;
+import com.udemy.demo.api.mapper.DtoMapper;
 import com.udemy.demo.api.model.entity.Books;
 import com.udemy.demo.api.model.entity.Loan;
+import com.udemy.demo.model.repository.LoanRepository;
 import com.udemy.demo.service.BookService;
+import com.udemy.demo.service.LoanBatchService;
 import com.udemy.demo.service.LoanService;
 import java.time.LocalDate;
+import java.util.Arrays;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Map;
 import lombok.RequiredArgsConstructor;
-import org.modelmapper.ModelMapper;
+import org.springframework.context.annotation.Profile;
 import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PatchMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+//api do mvc, o profile reactive troca pela LoanReactiveController
 @RestController
+@Profile("!reactive")
 @RequestMapping("/api/loans")
 @RequiredArgsConstructor
 public class LoanController {
   private final LoanService service;
   private final BookService bookService;
-  private final ModelMapper modelMapper;
+  private final LoanBatchService batchService;
+  private final DtoMapper mapper;
+  private final ObjectMapper objectMapper;
 
   @PostMapping
   @ResponseStatus(HttpStatus.CREATED)
@@ -47,26 +62,69 @@ public class LoanController {
     return entity.getId();
   }
 
+  //um update direto pelo id; com version no corpo, 409 se o empréstimo mudou depois da leitura
   @PatchMapping("{id}")
   public void returnBook(@PathVariable Long id, @RequestBody ReturnedLoanDTO dto){
-      Loan loan=service.getById(id).orElseThrow(()->new ResponseStatusException(HttpStatus.NOT_FOUND));
-      loan.setReturned(dto.getReturned());
-      service.update(loan);
+      if(!service.returnLoan(id,dto.getReturned(),dto.getVersion())){
+        throw new ResponseStatusException(HttpStatus.NOT_FOUND);
+      }
+  }
+
+  //lotes dos terminais: cada item tem o seu status (CREATED, UPDATED, INVALID, NOT_FOUND, CONFLICT),
+  //então um item recusado não derruba o lote
+  @PostMapping("batch")
+  public List<LoanBatchResultDTO> createBatch(@RequestBody List<LoanDTO> dtos){
+    return batchService.createAll(dtos);
+  }
+
+  @PatchMapping("batch")
+  public List<LoanBatchResultDTO> returnBatch(@RequestBody List<LoanReturnDTO> dtos){
+    return batchService.returnAll(dtos);
   }
 
 
   @GetMapping
-  public Page<LoanDTO> find(LoanFilterDTO dto, Pageable pageRequest){
+  public PageDTO<LoanDTO> find(LoanFilterDTO dto, Pageable pageRequest){
     Page<Loan> result=service.find(dto,pageRequest);
-    List<LoanDTO> loans=result.getContent().stream()
-        .map(entity->{
-              Books book=entity.getBook();
-              BookDTO bookDTO=modelMapper.map(book,BookDTO.class);//isso evita de mandar todo book , somente aquilo que é preciso
-              LoanDTO loanDTO=modelMapper.map(entity,LoanDTO.class);
-              loanDTO.setBook(bookDTO);
-              return loanDTO;
-    }).collect(Collectors.toList());
+    return PageDTO.of(result.map(mapper::toDto));
+  }
+
+  //count=false: devolve só se há próxima página e não calcula o total
+  @GetMapping(params = {"count=false", "!cursor", "!fields"})
+  public PageDTO<LoanDTO> findWithoutCount(LoanFilterDTO dto, Pageable pageRequest){
+    return PageDTO.of(service.findSlice(dto,pageRequest).map(mapper::toDto));
+  }
+
+  //fields=id,isbn: a consulta e a resposta só trazem os campos pedidos, o livro só quando pedido (fields=book
+  //ou book.title); aceita count=false, o cursor não
+  @GetMapping(params = {"fields", "!cursor"})
+  public PageDTO<Map<String, Object>> findFields(LoanFilterDTO dto, Pageable pageRequest, @RequestParam String fields,
+      @RequestParam(defaultValue = "true") boolean count){
+    List<String> selected=SparseFields.parse(fields,LoanRepository.FIELDS);
+    return count
+        ? PageDTO.of(service.findFields(dto,pageRequest,selected))
+        : PageDTO.of(service.findFieldsSlice(dto,pageRequest,selected));
+  }
+
+  //paginação por cursor (keyset) para quem percorre muitos registros: sem offset e sem total
+  @GetMapping(params = "cursor")
+  public CursorPageDTO<LoanDTO> findByCursor(LoanFilterDTO dto, @RequestParam(required = false) String cursor,
+      @RequestParam(defaultValue = "20") int size){
+    Slice<Loan> result=service.findAfter(dto,KeysetCursor.decode(cursor),KeysetCursor.size(size));
+    return KeysetCursor.page(result,Loan::getId,mapper::toDto);
+  }
+
+  //exportação: sem isbn e sem customer exporta todos os empréstimos
+  @GetMapping(value = "export", produces = "application/x-ndjson")
+  public ResponseEntity<StreamingResponseBody> exportNdjson(LoanFilterDTO dto){
+    return ExportWriter.<LoanDTO>ndjson("loans",objectMapper,action -> service.export(dto,action));
+  }
 
-    return new PageImpl<LoanDTO>(loans,pageRequest, result.getTotalElements());
+  @GetMapping(value = "export", produces = "text/csv")
+  public ResponseEntity<StreamingResponseBody> exportCsv(LoanFilterDTO dto){
+    return ExportWriter.<LoanDTO>csv("loans",Arrays.asList("id","isbn","customer","email","title","author"),
+        loan -> Arrays.asList(loan.getId(),loan.getIsbn(),loan.getCustomer(),loan.getEmail(),
+            loan.getBook().getTitle(),loan.getBook().getAuthor()),
+        action -> service.export(dto,action));
   }
 }
@@ -0,0 +1,59 @@
+package com.udemy.demo.api.resource;
+
+import com.udemy.demo.api.dto.LoanDTO;
+import com.udemy.demo.api.dto.LoanFilterDTO;
+import com.udemy.demo.api.dto.PageDTO;
+import com.udemy.demo.api.dto.ReturnedLoanDTO;
+import com.udemy.demo.api.mapper.DtoMapper;
+import com.udemy.demo.api.model.entity.LoanRow;
+import com.udemy.demo.service.BookReactiveService;
+import com.udemy.demo.service.LoanReactiveService;
+import java.time.LocalDate;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PatchMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Mono;
+
+//mesmas rotas e contratos de LoanController no profile reactive; a listagem é sempre em ordem de id
+@RestController
+@RequestMapping("/api/loans")
+@RequiredArgsConstructor
+@Profile("reactive")
+public class LoanReactiveController {
+  private final LoanReactiveService service;
+  private final BookReactiveService bookService;
+  private final DtoMapper mapper;
+
+  @PostMapping
+  @ResponseStatus(HttpStatus.CREATED)
+  public Mono<Long> create(@RequestBody LoanDTO dto){
+    return bookService.getByIsbn(dto.getIsbn())
+        .switchIfEmpty(Mono.error(() -> new ResponseStatusException(HttpStatus.BAD_REQUEST,"Book not found for passed isbn")))
+        .flatMap(book -> service.save(LoanRow.builder().bookId(book.getId()).customer(dto.getCustomer()).loanDate(LocalDate.now()).build()))
+        .map(LoanRow::getId);
+  }
+
+  @PatchMapping("{id}")
+  public Mono<Void> returnBook(@PathVariable Long id, @RequestBody ReturnedLoanDTO dto){
+    return service.returnLoan(id,dto.getReturned(),dto.getVersion())
+        .filter(Boolean::booleanValue)
+        .switchIfEmpty(Mono.error(() -> new ResponseStatusException(HttpStatus.NOT_FOUND)))
+        .then();
+  }
+
+  @GetMapping
+  public Mono<PageDTO<LoanDTO>> find(LoanFilterDTO dto, Pageable pageRequest){
+    return service.find(dto,pageRequest)
+        .map(page -> PageDTO.of(page.map(mapper::toDto)));
+  }
+}
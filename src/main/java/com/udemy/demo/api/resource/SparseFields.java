@@ -0,0 +1,41 @@
+package com.udemy.demo.api.resource;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * Parâmetro fields das listagens: nomes de campos separados por vírgula (fields=id,isbn). Um nome sem ponto
+ * também escolhe os campos aninhados dele, então fields=book traz book.id, book.title, book.author e book.isbn.
+ * Os campos voltam na ordem da lista de permitidos, e não na ordem pedida, para a resposta ter sempre a mesma forma.
+ */
+final class SparseFields {
+
+  private SparseFields() {
+  }
+
+  static List<String> parse(String fields, List<String> allowed) {
+    Set<String> requested = Arrays.stream(fields.split(","))
+        .map(String::trim)
+        .filter(name -> !name.isEmpty())
+        .collect(Collectors.toSet());
+    if (requested.isEmpty()) {
+      throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Empty fields");
+    }
+    for (String name : requested) {
+      if (allowed.stream().noneMatch(field -> selects(name, field))) {
+        throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid field: " + name);
+      }
+    }
+    return allowed.stream()
+        .filter(field -> requested.stream().anyMatch(name -> selects(name, field)))
+        .collect(Collectors.toList());
+  }
+
+  private static boolean selects(String name, String field) {
+    return field.equals(name) || field.startsWith(name + ".");
+  }
+}
@@ -0,0 +1,23 @@
+package com.udemy.demo.config;
+
+import com.fasterxml.jackson.databind.Module;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.fasterxml.jackson.module.blackbird.BlackbirdModule;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.NativeDetector;
+
+/**
+ * Serialização das respostas: o Blackbird troca a reflexão dos getters e setters por acessores gerados
+ * em tempo de execução, usados pelo MVC, pelo WebFlux e pela exportação em ndjson.
+ */
+@Configuration
+public class JacksonConfig {
+
+  //na imagem nativa não há geração de classes em tempo de execução, então lá o jackson continua na reflexão;
+  //a verificação fica no bean e não numa condição porque as condições são avaliadas no build aot
+  @Bean
+  public Module blackbirdModule() {
+    return NativeDetector.inNativeImage() ? new SimpleModule("blackbird-disabled") : new BlackbirdModule();
+  }
+}
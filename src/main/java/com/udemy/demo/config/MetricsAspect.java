@@ -0,0 +1,100 @@
+package com.udemy.demo.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.aop.framework.AopProxyUtils;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Tempo de cada chamada dos serviços e dos repositories, com histograma para os percentis.
+ *
+ * <ul>
+ *   <li>{@code library.service}: métodos públicos dos {@code @Service} do pacote service,
+ *   com as tags {@code class}, {@code method} e {@code exception};</li>
+ *   <li>{@code library.repository}: métodos dos repositories do spring data e dos repositories
+ *   reativos do pacote model.repository, com as tags {@code repository}, {@code method} e {@code exception}.</li>
+ * </ul>
+ *
+ * As rotas http já são medidas pelo actuator em {@code http.server.requests}.
+ */
+@Aspect
+@Component
+public class MetricsAspect {
+
+  static final String SERVICE_TIMER = "library.service";
+  static final String REPOSITORY_TIMER = "library.repository";
+
+  private final MeterRegistry registry;
+
+  //o proxy do spring data é uma classe gerada, o nome do repository vem da interface da aplicação
+  private final Map<Class<?>, String> repositoryNames = new ConcurrentHashMap<>();
+
+  public MetricsAspect(MeterRegistry registry) {
+    this.registry = registry;
+  }
+
+  @Around("within(com.udemy.demo.service..*) && @within(org.springframework.stereotype.Service) && execution(public * *(..))")
+  public Object timeService(ProceedingJoinPoint joinPoint) throws Throwable {
+    Class<?> type = AopProxyUtils.ultimateTargetClass(joinPoint.getTarget());
+    return time(joinPoint, Timer.builder(SERVICE_TIMER)
+        .description("Tempo de cada método dos serviços")
+        .tag("class", type.getSimpleName()));
+  }
+
+  @Around("execution(public * org.springframework.data.repository.Repository+.*(..)) || "+
+      "(within(com.udemy.demo.model.repository..*) && @within(org.springframework.stereotype.Repository) && execution(public * *(..)))")
+  public Object timeRepository(ProceedingJoinPoint joinPoint) throws Throwable {
+    String repository = repositoryNames.computeIfAbsent(joinPoint.getTarget().getClass(), MetricsAspect::repositoryName);
+    return time(joinPoint, Timer.builder(REPOSITORY_TIMER)
+        .description("Tempo de cada consulta dos repositories")
+        .tag("repository", repository));
+  }
+
+  private Object time(ProceedingJoinPoint joinPoint, Timer.Builder timer) throws Throwable {
+    Timer.Sample sample = Timer.start(registry);
+    Object result;
+    try {
+      result = joinPoint.proceed();
+    } catch (Throwable e) {
+      stop(sample, joinPoint, timer, e);
+      throw e;
+    }
+    //no profile reactive o método só monta o Mono/Flux: o tempo vai até o fim da execução
+    if (result instanceof Mono<?> mono) {
+      return mono
+          .doOnSuccess(value -> stop(sample, joinPoint, timer, null))
+          .doOnError(e -> stop(sample, joinPoint, timer, e));
+    }
+    if (result instanceof Flux<?> flux) {
+      return flux
+          .doOnComplete(() -> stop(sample, joinPoint, timer, null))
+          .doOnError(e -> stop(sample, joinPoint, timer, e));
+    }
+    stop(sample, joinPoint, timer, null);
+    return result;
+  }
+
+  private void stop(Timer.Sample sample, ProceedingJoinPoint joinPoint, Timer.Builder timer, Throwable exception) {
+    sample.stop(timer
+        .tag("method", joinPoint.getSignature().getName())
+        .tag("exception", exception == null ? "none" : exception.getClass().getSimpleName())
+        .publishPercentileHistogram()
+        .register(registry));
+  }
+
+  private static String repositoryName(Class<?> proxyType) {
+    return Arrays.stream(proxyType.getInterfaces())
+        .filter(type -> type.getName().startsWith("com.udemy.demo."))
+        .map(Class::getSimpleName)
+        .findFirst()
+        .orElse(proxyType.getSimpleName());
+  }
+}
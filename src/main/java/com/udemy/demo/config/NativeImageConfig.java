@@ -0,0 +1,58 @@
+package com.udemy.demo.config;
+
+import com.udemy.demo.api.dto.BookDTO;
+import com.udemy.demo.api.dto.BookImportErrorDTO;
+import com.udemy.demo.api.dto.BookImportReportDTO;
+import com.udemy.demo.api.dto.CursorPageDTO;
+import com.udemy.demo.api.dto.LateLoanDTO;
+import com.udemy.demo.api.dto.LoanBatchResultDTO;
+import com.udemy.demo.api.dto.LoanDTO;
+import com.udemy.demo.api.dto.LoanFilterDTO;
+import com.udemy.demo.api.dto.LoanReturnDTO;
+import com.udemy.demo.api.dto.ReturnedLoanDTO;
+import com.udemy.demo.api.exception.ApiErrors;
+import com.udemy.demo.api.model.entity.Books;
+import com.udemy.demo.api.model.entity.Loan;
+import org.springframework.aot.hint.MemberCategory;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.RuntimeHintsRegistrar;
+import org.springframework.aot.hint.annotation.RegisterReflectionForBinding;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.ImportRuntimeHints;
+
+/**
+ * Metadados de alcance da imagem nativa (profile native do maven).
+ *
+ * <p>O processamento aot do spring já registra as entidades do jpa, os repositories e os tipos que aparecem como
+ * corpo nas assinaturas dos controllers. Aqui entram os dtos que o jackson e o data binder usam fora delas
+ * (filtros vindos da query string, linhas do ndjson, erros) e os construtores chamados pelo hibernate nas
+ * consultas com "select new". O envio de email não precisa de nada: a Angus Mail traz a própria feature
+ * para a imagem nativa.
+ */
+@Configuration
+@RegisterReflectionForBinding({BookDTO.class, LoanDTO.class, LoanFilterDTO.class, ReturnedLoanDTO.class,
+    LoanReturnDTO.class, LoanBatchResultDTO.class, CursorPageDTO.class, LateLoanDTO.class,
+    BookImportReportDTO.class, BookImportErrorDTO.class, ApiErrors.class})
+@ImportRuntimeHints(NativeImageConfig.Hints.class)
+public class NativeImageConfig {
+
+  static class Hints implements RuntimeHintsRegistrar {
+
+    @Override
+    public void registerHints(RuntimeHints hints, ClassLoader classLoader) {
+      //projeções do jpql (BooksRepository e LoanRepository)
+      hints.reflection().registerType(BookDTO.class, MemberCategory.INVOKE_PUBLIC_CONSTRUCTORS);
+      hints.reflection().registerType(LoanDTO.class, MemberCategory.INVOKE_PUBLIC_CONSTRUCTORS);
+      hints.reflection().registerType(LateLoanDTO.class, MemberCategory.INVOKE_PUBLIC_CONSTRUCTORS);
+
+      //o hibernate lê e grava os campos e instancia as entidades pelo construtor sem argumentos
+      for (Class<?> entity : new Class<?>[] {Books.class, Loan.class}) {
+        hints.reflection().registerType(entity, MemberCategory.DECLARED_FIELDS,
+            MemberCategory.INVOKE_DECLARED_CONSTRUCTORS, MemberCategory.INVOKE_PUBLIC_METHODS);
+      }
+
+      //especificação gerada no build pelo profile fast-start, quando presente
+      hints.resources().registerPattern("static/openapi/*.json");
+    }
+  }
+}
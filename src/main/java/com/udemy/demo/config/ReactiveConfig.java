@@ -0,0 +1,49 @@
+package com.udemy.demo.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.r2dbc.spi.ConnectionFactory;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.web.embedded.netty.NettyReactiveWebServerFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.context.annotation.Profile;
+import org.springframework.r2dbc.core.DatabaseClient;
+
+/**
+ * Configuração do profile reactive: api de livros e empréstimos no webflux com r2dbc.
+ *
+ * <p>O jpa continua no contexto (flyway, jobs de email e índice de busca), mas o spring boot não cria
+ * o DataSource quando existe um ConnectionFactory, então ele é declarado aqui a partir de spring.datasource.
+ * A parte web (resolvers de Pageable e Sort) fica em {@link ReactiveWebConfig}.
+ */
+@Configuration
+@Profile("reactive")
+public class ReactiveConfig {
+
+  //com o tomcat no classpath o spring boot serviria o webflux pelo tomcat; o netty fica com o event loop
+  @Bean
+  public NettyReactiveWebServerFactory nettyReactiveWebServerFactory() {
+    return new NettyReactiveWebServerFactory();
+  }
+
+  @Bean
+  @Primary
+  @ConfigurationProperties("spring.datasource")
+  public DataSourceProperties dataSourceProperties() {
+    return new DataSourceProperties();
+  }
+
+  @Bean
+  @ConfigurationProperties("spring.datasource.hikari")
+  public HikariDataSource dataSource(DataSourceProperties properties) {
+    return properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+  }
+
+  //o spring boot só cria o ConnectionFactory, o DatabaseClient viria do spring data r2dbc
+  @Bean
+  public DatabaseClient databaseClient(ConnectionFactory connectionFactory) {
+    return DatabaseClient.create(connectionFactory);
+  }
+}
@@ -0,0 +1,77 @@
+package com.udemy.demo.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import java.util.Map;
+import org.reactivestreams.Publisher;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.data.web.ReactivePageableHandlerMethodArgumentResolver;
+import org.springframework.data.web.ReactiveSortHandlerMethodArgumentResolver;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerCodecConfigurer;
+import org.springframework.http.codec.cbor.Jackson2CborDecoder;
+import org.springframework.http.codec.cbor.Jackson2CborEncoder;
+import org.springframework.http.codec.json.Jackson2JsonEncoder;
+import org.springframework.http.codec.json.Jackson2SmileDecoder;
+import org.springframework.http.codec.json.Jackson2SmileEncoder;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.util.MimeType;
+import org.springframework.web.reactive.config.WebFluxConfigurer;
+import org.springframework.web.reactive.result.method.annotation.ArgumentResolverConfigurer;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+//o spring data só registra os resolvers de Pageable e Sort no mvc
+@Configuration
+@Profile("reactive")
+public class ReactiveWebConfig implements WebFluxConfigurer {
+
+  //sem os tipos, os codecs do jackson assumem application/json
+  private static final MediaType SMILE = MediaType.parseMediaType("application/x-jackson-smile");
+
+  private final ObjectProvider<Jackson2ObjectMapperBuilder> builders;
+
+  public ReactiveWebConfig(ObjectProvider<Jackson2ObjectMapperBuilder> builders) {
+    this.builders = builders;
+  }
+
+  @Override
+  public void configureArgumentResolvers(ArgumentResolverConfigurer configurer) {
+    configurer.addCustomResolver(new ReactiveSortHandlerMethodArgumentResolver(), new ReactivePageableHandlerMethodArgumentResolver());
+  }
+
+  //mesma negociação do mvc (WebConfig). O smile já é um codec padrão do webflux, depois do json; os codecs
+  //registrados aqui entram antes dos padrões, então o json é registrado de novo na frente do cbor para
+  //continuar sendo o escolhido quando o Accept não diz o formato
+  @Override
+  public void configureHttpMessageCodecs(ServerCodecConfigurer configurer) {
+    ObjectMapper smile = builders.getObject().factory(new SmileFactory()).build();
+    configurer.defaultCodecs().jackson2SmileEncoder(new Jackson2SmileEncoder(smile, SMILE));
+    configurer.defaultCodecs().jackson2SmileDecoder(new Jackson2SmileDecoder(smile, SMILE));
+    ObjectMapper cbor = builders.getObject().factory(new CBORFactory()).build();
+    configurer.customCodecs().register(new Jackson2JsonEncoder(builders.getObject().build()));
+    configurer.customCodecs().register(new CborEncoder(cbor));
+    configurer.customCodecs().register(new Jackson2CborDecoder(cbor, MediaType.APPLICATION_CBOR));
+  }
+
+  //o Jackson2CborEncoder do spring só codifica valores isolados (encodeValue, usado pelo rsocket) e recusa o
+  //encode do webflux; as rotas reativas da api devolvem Mono, então basta codificar o único valor
+  static class CborEncoder extends Jackson2CborEncoder {
+
+    CborEncoder(ObjectMapper mapper) {
+      super(mapper, MediaType.APPLICATION_CBOR);
+    }
+
+    @Override
+    public Flux<DataBuffer> encode(Publisher<?> inputStream, DataBufferFactory bufferFactory, ResolvableType elementType,
+        MimeType mimeType, Map<String, Object> hints) {
+      return Mono.from(inputStream).map(value -> encodeValue(value, bufferFactory, elementType, mimeType, hints)).flux();
+    }
+  }
+}
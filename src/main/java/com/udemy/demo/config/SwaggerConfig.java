@@ -1,40 +1,35 @@
 package com.udemy.demo.config;
 
+import io.swagger.v3.oas.models.OpenAPI;
+import io.swagger.v3.oas.models.info.Contact;
+import io.swagger.v3.oas.models.info.Info;
+import org.springdoc.core.models.GroupedOpenApi;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import springfox.documentation.builders.ApiInfoBuilder;
-import springfox.documentation.builders.PathSelectors;
-import springfox.documentation.builders.RequestHandlerSelectors;
-import springfox.documentation.service.ApiInfo;
-import springfox.documentation.service.Contact;
-import springfox.documentation.spi.DocumentationType;
-import springfox.documentation.spring.web.plugins.Docket;
-import springfox.documentation.swagger2.annotations.EnableSwagger2;
 
-@EnableSwagger2
 @Configuration
 public class SwaggerConfig {
   @Bean
-  public Docket docket(){
-    return new Docket(DocumentationType.SWAGGER_2)
-                  .select()
-                  .apis(RequestHandlerSelectors.basePackage("com.udemy.demo.api.resource"))
-                  .paths(PathSelectors.any())
-                  .build()
-                   .apiInfo(apiInfo());
+  public GroupedOpenApi api(){
+    return GroupedOpenApi.builder()
+                  .group("library")
+                  .packagesToScan("com.udemy.demo.api.resource")
+                  .pathsToMatch("/**")
+                  .build();
 
   }
 
-  private ApiInfo apiInfo(){
-    return new ApiInfoBuilder()
-                 .title("Library Api")
-                 .description("Api do projeto de exemplo -aPI DE livros")
-                  .version("1.0")
-                  .contact(contact())
-                  .build();
+  @Bean
+  public OpenAPI apiInfo(){
+    return new OpenAPI()
+                 .info(new Info()
+                     .title("Library Api")
+                     .description("Api do projeto de exemplo -aPI DE livros")
+                     .version("1.0")
+                     .contact(contact()));
   }
 
   private Contact contact(){
-    return new Contact("Rodrigo Jardim","https://github.com/rodjle","rodjle@gmail.com");
+    return new Contact().name("Rodrigo Jardim").url("https://github.com/rodjle").email("rodjle@gmail.com");
   }
 }
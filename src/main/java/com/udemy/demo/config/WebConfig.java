@@ -0,0 +1,52 @@
+package com.udemy.demo.config;
+
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import java.util.List;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * Negociação de conteúdo da api: json por padrão, cbor (application/cbor) ou smile (application/x-jackson-smile)
+ * quando o cliente pede no Accept ou manda o corpo num desses formatos.
+ *
+ * <p>O spring já registra os conversores de cbor e smile quando os formatos estão no classpath, mas com um
+ * ObjectMapper próprio; aqui eles são trocados por conversores com o ObjectMapper configurado pelo spring boot
+ * (mesmos módulos e propriedades spring.jackson do json) e ficam logo depois do json, que continua sendo o
+ * escolhido quando o Accept não diz o formato. A variante reativa faz o mesmo em {@link ReactiveWebConfig}.
+ */
+@Configuration
+@Profile("!reactive")
+public class WebConfig implements WebMvcConfigurer {
+
+  private final ObjectProvider<Jackson2ObjectMapperBuilder> builders;
+
+  public WebConfig(ObjectProvider<Jackson2ObjectMapperBuilder> builders) {
+    this.builders = builders;
+  }
+
+  @Override
+  public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+    converters.removeIf(converter -> converter instanceof MappingJackson2CborHttpMessageConverter
+        || converter instanceof MappingJackson2SmileHttpMessageConverter);
+    int json = indexOfJson(converters);
+    converters.add(json + 1, new MappingJackson2CborHttpMessageConverter(builders.getObject().factory(new CBORFactory()).build()));
+    converters.add(json + 2, new MappingJackson2SmileHttpMessageConverter(builders.getObject().factory(new SmileFactory()).build()));
+  }
+
+  private static int indexOfJson(List<HttpMessageConverter<?>> converters) {
+    for (int i = 0; i < converters.size(); i++) {
+      if (converters.get(i) instanceof MappingJackson2HttpMessageConverter) {
+        return i;
+      }
+    }
+    return converters.size() - 1;
+  }
+}
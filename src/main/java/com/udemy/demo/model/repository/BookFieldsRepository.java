@@ -0,0 +1,20 @@
+package com.udemy.demo.model.repository;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+
+//fragmento de BooksRepository para as listagens com o parâmetro fields
+public interface BookFieldsRepository {
+
+  /** campos do {@code BookDTO} que podem ser pedidos, na ordem em que aparecem na resposta */
+  List<String> FIELDS = List.of("id", "title", "author", "isbn");
+
+  /**
+   * Lê só as colunas dos campos informados (de {@link #FIELDS}), um mapa campo -> valor por livro. Com ids
+   * restringe aos livros informados, sem ids lê todos.
+   */
+  Slice<Map<String, Object>> findFields(Collection<String> fields, Collection<Long> ids, Pageable pageable);
+}
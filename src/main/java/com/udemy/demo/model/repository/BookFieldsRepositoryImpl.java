@@ -0,0 +1,28 @@
+package com.udemy.demo.model.repository;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import java.util.Collection;
+import java.util.Map;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+
+class BookFieldsRepositoryImpl implements BookFieldsRepository {
+
+  private static final Map<String, String> PATHS = Map.of(
+      "id", "b.id",
+      "title", "b.title",
+      "author", "b.author",
+      "isbn", "b.isbn");
+
+  @PersistenceContext
+  private EntityManager entityManager;
+
+  @Override
+  public Slice<Map<String, Object>> findFields(Collection<String> fields, Collection<Long> ids, Pageable pageable) {
+    if (ids == null) {
+      return FieldsQuery.find(entityManager, PATHS, fields, "b", "from Books b", Map.of(), pageable);
+    }
+    return FieldsQuery.find(entityManager, PATHS, fields, "b", "from Books b where b.id in :ids", Map.of("ids", ids), pageable);
+  }
+}
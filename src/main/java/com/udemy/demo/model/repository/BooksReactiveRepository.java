@@ -0,0 +1,148 @@
+package com.udemy.demo.model.repository;
+
+import com.udemy.demo.api.model.entity.BookRow;
+import com.udemy.demo.api.model.entity.Books;
+import io.r2dbc.spi.Readable;
+import java.util.Collection;
+import java.util.Set;
+import java.util.stream.Collectors;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.r2dbc.core.DatabaseClient.GenericExecuteSpec;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Equivalente reativo de BooksRepository para o profile reactive, com o sql escrito sobre o
+ * DatabaseClient do spring-r2dbc.
+ */
+@Repository
+@Profile("reactive")
+public class BooksReactiveRepository {
+
+  private static final String COLUMNS = "select id, title, author, isbn, version from books ";
+
+  //propriedades aceitas no sort da listagem, que são também os nomes das colunas
+  private static final Set<String> SORTABLE = Set.of("id", "title", "author", "isbn");
+
+  private final DatabaseClient client;
+
+  public BooksReactiveRepository(DatabaseClient client) {
+    this.client = client;
+  }
+
+  public Mono<Boolean> existsByIsbn(String isbn) {
+    return NullableBind.bind(client.sql("select count(*) from books where isbn = :isbn"), "isbn", isbn, String.class)
+        .map(row -> row.get(0, Long.class) > 0)
+        .one();
+  }
+
+  public Mono<BookRow> findById(Long id) {
+    return client.sql(COLUMNS + "where id = :id")
+        .bind("id", id)
+        .map(BooksReactiveRepository::toRow)
+        .one();
+  }
+
+  public Mono<BookRow> findByIsbn(String isbn) {
+    return NullableBind.bind(client.sql(COLUMNS + "where isbn = :isbn"), "isbn", isbn, String.class)
+        .map(BooksReactiveRepository::toRow)
+        .one();
+  }
+
+  public Flux<BookRow> findAll(Pageable pageable) {
+    return client.sql(COLUMNS + "order by " + orderBy(pageable.getSort()) + limit(pageable))
+        .map(BooksReactiveRepository::toRow)
+        .all();
+  }
+
+  public Flux<BookRow> findAllById(Collection<Long> ids) {
+    return client.sql(COLUMNS + "where id in (:ids)")
+        .bind("ids", ids)
+        .map(BooksReactiveRepository::toRow)
+        .all();
+  }
+
+  public Flux<BookRow> findByIdIn(Collection<Long> ids, Pageable pageable) {
+    return client.sql(COLUMNS + "where id in (:ids) order by " + orderBy(pageable.getSort()) + limit(pageable))
+        .bind("ids", ids)
+        .map(BooksReactiveRepository::toRow)
+        .all();
+  }
+
+  public Mono<Long> count() {
+    return client.sql("select count(*) from books")
+        .map(row -> row.get(0, Long.class))
+        .one();
+  }
+
+  //o id vem da books_seq, a mesma do hibernate: cada valor lido reserva para o r2dbc o bloco que o
+  //otimizador pooled (allocationSize 50) usaria para ele, então os dois nunca geram o mesmo id
+  public Mono<BookRow> insert(BookRow book) {
+    return client.sql("select next value for books_seq")
+        .map(row -> row.get(0, Long.class))
+        .one()
+        .flatMap(id -> bindColumns(client.sql("insert into books (id, title, author, isbn) values (:id, :title, :author, :isbn)"), book)
+            .bind("id", id)
+            .then()
+            .thenReturn(BookRow.builder().id(id).title(book.getTitle()).author(book.getAuthor()).isbn(book.getIsbn())
+                .version(0L).build()));
+  }
+
+  //como o merge do jpa com Books.version: só altera o livro na versão lida e incrementa
+  public Mono<BookRow> update(BookRow book) {
+    GenericExecuteSpec spec = bindColumns(client.sql(" update books set title = :title, author = :author, isbn = :isbn, version = version + 1 "+
+                                                     " where id = :id and version = :version"), book)
+        .bind("id", book.getId());
+    return NullableBind.bind(spec, "version", book.getVersion(), Long.class)
+        .fetch()
+        .rowsUpdated()
+        .flatMap(updated -> {
+          if (updated == 0) {
+            return Mono.error(new ObjectOptimisticLockingFailureException(Books.class, book.getId()));
+          }
+          book.setVersion(book.getVersion() + 1);
+          return Mono.just(book);
+        });
+  }
+
+  public Mono<Void> deleteById(Long id) {
+    return client.sql("delete from books where id = :id")
+        .bind("id", id)
+        .then();
+  }
+
+  //propriedades fora de SORTABLE são ignoradas; o id no fim deixa a ordem estável entre as páginas
+  private static String orderBy(Sort sort) {
+    String order = sort.stream()
+        .filter(o -> SORTABLE.contains(o.getProperty()))
+        .map(o -> o.getProperty() + " " + o.getDirection().name())
+        .collect(Collectors.joining(", "));
+    return order.isEmpty() ? "id" : order + ", id";
+  }
+
+  private static String limit(Pageable pageable) {
+    return pageable.isPaged() ? " limit " + pageable.getPageSize() + " offset " + pageable.getOffset() : "";
+  }
+
+  //colunas do insert e do update
+  private static GenericExecuteSpec bindColumns(GenericExecuteSpec spec, BookRow book) {
+    spec = NullableBind.bind(spec, "title", book.getTitle(), String.class);
+    spec = NullableBind.bind(spec, "author", book.getAuthor(), String.class);
+    return NullableBind.bind(spec, "isbn", book.getIsbn(), String.class);
+  }
+
+  private static BookRow toRow(Readable row) {
+    return BookRow.builder()
+        .id(row.get("id", Long.class))
+        .title(row.get("title", String.class))
+        .author(row.get("author", String.class))
+        .isbn(row.get("isbn", String.class))
+        .version(row.get("version", Long.class))
+        .build();
+  }
+}
@@ -1,14 +1,57 @@
 package com.udemy.demo.model.repository;
 
+import com.udemy.demo.api.dto.BookDTO;
 import com.udemy.demo.api.model.entity.Books;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
+import jakarta.persistence.QueryHint;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 
-public interface BooksRepository extends JpaRepository<Books,Long> {
+public interface BooksRepository extends JpaRepository<Books,Long>, BookFieldsRepository {
+
+  //cache do total de livros, limpo pelos serviços quando um livro é incluído ou removido
+  String COUNT_CACHE = "bookCounts";
 
   boolean existsByIsbn(String isbn);
 
   Optional<Books> findByisbn(String isbn);
 
+  List<Books> findByIsbnIn(Collection<String> isbns);
+
+  @Query("select b.isbn from Books b where b.isbn in :isbns")
+  List<String> findExistingIsbns(@Param("isbns") Collection<String> isbns);
+
+  //exportação: cursor só de avanço lendo direto no dto, nada fica no contexto de persistência
+  @QueryHints(@QueryHint(name = org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+  @Query("select new com.udemy.demo.api.dto.BookDTO(b.id, b.title, b.author, b.isbn) from Books b order by b.id")
+  Stream<BookDTO> streamAll();
+
+  @Query("select new com.udemy.demo.api.dto.BookDTO(b.id, b.title, b.author, b.isbn) from Books b where b.id in :ids order by b.id")
+  List<BookDTO> findDtoByIdIn(@Param("ids") Collection<Long> ids);
+
+  //listagem: lê direto no dto, sem entidade gerenciada nem dirty checking; o total vem de countAll (em cache)
+  @Query("select new com.udemy.demo.api.dto.BookDTO(b.id, b.title, b.author, b.isbn) from Books b")
+  Slice<BookDTO> findAllDto(Pageable pageable);
+
+  //listagem ordenada da busca: recebe só os ids da página, já recortados na ordem do índice; o total vem do índice
+  @Query("select new com.udemy.demo.api.dto.BookDTO(b.id, b.title, b.author, b.isbn) from Books b where b.id in :ids")
+  Slice<BookDTO> findDtoByIdIn(@Param("ids") Collection<Long> ids, Pageable pageable);
+
+  @Cacheable(cacheNames = COUNT_CACHE, key = "'all'")
+  @Query("select count(b) from Books b")
+  long countAll();
+
+  //paginação por chave: sem offset e sem count, o Slice busca um registro a mais para saber se há próxima página;
+  //os filtros de título, autor e isbn são resolvidos no BookSearchIndex
+  @Query("select b from Books b where b.id > :lastId")
+  Slice<Books> findAfter(@Param("lastId") Long lastId, Pageable pageable);
 
 }
@@ -0,0 +1,20 @@
+package com.udemy.demo.model.repository;
+
+import com.udemy.demo.api.model.entity.DeadLetterEmail;
+import java.time.LocalDateTime;
+import java.util.List;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+public interface DeadLetterEmailRepository extends JpaRepository<DeadLetterEmail,Long> {
+
+  @Query(value=" select max(d.id) from DeadLetterEmail d ")
+  Long findMaxId();
+
+  //reenvio por bloco (keyset pelo id): só as falhas desde since que já existiam até maxId, as gravadas durante o reenvio ficam para o próximo
+  @Query(value=" select d from DeadLetterEmail d where d.failedAt >= :since and d.id > :lastId and d.id <= :maxId order by d.id ")
+  List<DeadLetterEmail> findToResend(@Param("since") LocalDateTime since, @Param("lastId") Long lastId, @Param("maxId") Long maxId, Pageable pageable);
+
+}
@@ -0,0 +1,66 @@
+package com.udemy.demo.model.repository;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.Tuple;
+import jakarta.persistence.TypedQuery;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.repository.query.QueryUtils;
+
+/**
+ * Select só com as colunas dos campos pedidos no parâmetro fields. Cada campo da api é trocado pelo caminho no jpql
+ * e cada linha vira um mapa campo -> valor, na ordem dos campos; os campos com ponto (book.title) ficam num mapa
+ * aninhado, como o livro dentro do {@code LoanDTO}. Como o Slice das consultas derivadas, busca um registro a mais
+ * para saber se há próxima página, e sem ordenação no pageable ordena por id para o offset ser estável.
+ */
+final class FieldsQuery {
+
+  private FieldsQuery() {
+  }
+
+  static Slice<Map<String, Object>> find(EntityManager entityManager, Map<String, String> paths,
+      Collection<String> fields, String alias, String from, Map<String, Object> parameters, Pageable pageable) {
+    List<String> selected = new ArrayList<>(fields);
+    String select = selected.stream().map(paths::get).collect(Collectors.joining(", "));
+    Sort sort = pageable.getSort().isSorted() ? pageable.getSort() : Sort.by("id");
+    String jpql = QueryUtils.applySorting("select " + select + " " + from, sort, alias);
+
+    TypedQuery<Tuple> query = entityManager.createQuery(jpql, Tuple.class);
+    parameters.forEach(query::setParameter);
+    if (pageable.isPaged()) {
+      query.setFirstResult((int) pageable.getOffset());
+      query.setMaxResults(pageable.getPageSize() + 1);
+    }
+    List<Tuple> rows = query.getResultList();
+    boolean hasNext = pageable.isPaged() && rows.size() > pageable.getPageSize();
+    if (hasNext) {
+      rows = rows.subList(0, pageable.getPageSize());
+    }
+    List<Map<String, Object>> content = rows.stream().map(row -> toMap(selected, row)).collect(Collectors.toList());
+    return new SliceImpl<>(content, pageable, hasNext);
+  }
+
+  @SuppressWarnings("unchecked")
+  private static Map<String, Object> toMap(List<String> fields, Tuple row) {
+    Map<String, Object> values = new LinkedHashMap<>();
+    for (int i = 0; i < fields.size(); i++) {
+      String field = fields.get(i);
+      int dot = field.indexOf('.');
+      if (dot < 0) {
+        values.put(field, row.get(i));
+      } else {
+        ((Map<String, Object>) values.computeIfAbsent(field.substring(0, dot), key -> new LinkedHashMap<>()))
+            .put(field.substring(dot + 1), row.get(i));
+      }
+    }
+    return values;
+  }
+}
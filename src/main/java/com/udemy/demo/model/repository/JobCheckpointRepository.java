@@ -0,0 +1,8 @@
+package com.udemy.demo.model.repository;
+
+import com.udemy.demo.api.model.entity.JobCheckpoint;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface JobCheckpointRepository extends JpaRepository<JobCheckpoint,String> {
+
+}
@@ -0,0 +1,14 @@
+package com.udemy.demo.model.repository;
+
+import com.udemy.demo.api.model.entity.Loan;
+import java.util.List;
+
+//fragmento de LoanRepository para os empréstimos em lote
+public interface LoanBatchRepository {
+
+  /**
+   * Insere os empréstimos num único batch jdbc e preenche o id de cada um. O id de Loan é identity,
+   * e com identity o hibernate não agrupa os inserts.
+   */
+  void insertAll(List<Loan> loans);
+}
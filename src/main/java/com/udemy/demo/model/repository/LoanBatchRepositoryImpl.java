@@ -0,0 +1,57 @@
+package com.udemy.demo.model.repository;
+
+import com.udemy.demo.api.model.entity.Loan;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.List;
+import java.util.Map;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+
+//o JdbcTemplate usa a conexão da transação jpa em andamento
+class LoanBatchRepositoryImpl implements LoanBatchRepository {
+
+  private static final String INSERT = " insert into loan (customer, customer_email, id_book, loan_date, returned, active_book_id) "+
+                                       " values (?, ?, ?, ?, ?, ?) ";
+
+  private final JdbcTemplate jdbcTemplate;
+
+  LoanBatchRepositoryImpl(JdbcTemplate jdbcTemplate) {
+    this.jdbcTemplate = jdbcTemplate;
+  }
+
+  @Override
+  public void insertAll(List<Loan> loans) {
+    if (loans.isEmpty()) {
+      return;
+    }
+    KeyHolder keys = new GeneratedKeyHolder();
+    jdbcTemplate.batchUpdate(connection -> connection.prepareStatement(INSERT, new String[] {"id"}),
+        new BatchPreparedStatementSetter() {
+          @Override
+          public void setValues(PreparedStatement ps, int i) throws SQLException {
+            Loan loan = loans.get(i);
+            ps.setString(1, loan.getCustomer());
+            ps.setString(2, loan.getCustomerEmail());
+            ps.setLong(3, loan.getBook().getId());
+            ps.setDate(4, loan.getLoanDate() == null ? null : Date.valueOf(loan.getLoanDate()));
+            ps.setObject(5, loan.getReturned(), Types.BOOLEAN);
+            ps.setObject(6, loan.getActiveBookId(), Types.BIGINT);
+          }
+
+          @Override
+          public int getBatchSize() {
+            return loans.size();
+          }
+        }, keys);
+    List<Map<String, Object>> generated = keys.getKeyList();
+    for (int i = 0; i < loans.size(); i++) {
+      loans.get(i).setId(((Number) generated.get(i).values().iterator().next()).longValue());
+      loans.get(i).setVersion(0L);
+    }
+  }
+}
@@ -0,0 +1,30 @@
+package com.udemy.demo.model.repository;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+
+//fragmento de LoanRepository para as listagens com o parâmetro fields
+public interface LoanFieldsRepository {
+
+  /**
+   * campos do {@code LoanDTO} que podem ser pedidos, na ordem em que aparecem na resposta; os do livro
+   * embutido vêm com o prefixo book.
+   */
+  List<String> FIELDS = List.of("id", "isbn", "customer", "email", "book.id", "book.title", "book.author", "book.isbn");
+
+  /**
+   * Mesmo filtro do findByBookIsbnOrCustomer, lendo só as colunas dos campos informados (de {@link #FIELDS}),
+   * um mapa campo -> valor por empréstimo.
+   */
+  Slice<Map<String, Object>> findFieldsByBookIsbnOrCustomer(Collection<String> fields, String isbn, String customer,
+      Pageable pageable);
+
+  /**
+   * Empréstimos do livro, lendo só as colunas dos campos informados. O filtro é a chave estrangeira, então o
+   * livro só entra no select quando o isbn ou algum campo dele é pedido.
+   */
+  Slice<Map<String, Object>> findFieldsByBook(Collection<String> fields, Long bookId, Pageable pageable);
+}
@@ -0,0 +1,42 @@
+package com.udemy.demo.model.repository;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+
+class LoanFieldsRepositoryImpl implements LoanFieldsRepository {
+
+  private static final Map<String, String> PATHS = Map.of(
+      "id", "l.id",
+      "isbn", "l.book.isbn",
+      "customer", "l.customer",
+      "email", "l.customerEmail",
+      "book.id", "l.book.id",
+      "book.title", "l.book.title",
+      "book.author", "l.book.author",
+      "book.isbn", "l.book.isbn");
+
+  @PersistenceContext
+  private EntityManager entityManager;
+
+  @Override
+  public Slice<Map<String, Object>> findFieldsByBookIsbnOrCustomer(Collection<String> fields, String isbn,
+      String customer, Pageable pageable) {
+    //isbn ou customer podem vir nulos, e o Map.of não aceita valor nulo
+    Map<String, Object> parameters = new HashMap<>();
+    parameters.put("isbn", isbn);
+    parameters.put("customer", customer);
+    return FieldsQuery.find(entityManager, PATHS, fields, "l",
+        "from Loan l where l.book.isbn = :isbn or l.customer = :customer", parameters, pageable);
+  }
+
+  @Override
+  public Slice<Map<String, Object>> findFieldsByBook(Collection<String> fields, Long bookId, Pageable pageable) {
+    return FieldsQuery.find(entityManager, PATHS, fields, "l", "from Loan l where l.book.id = :bookId",
+        Map.of("bookId", bookId), pageable);
+  }
+}
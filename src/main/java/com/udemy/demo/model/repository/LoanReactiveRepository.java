@@ -0,0 +1,163 @@
+package com.udemy.demo.model.repository;
+
+import com.udemy.demo.api.model.entity.Loan;
+import com.udemy.demo.api.model.entity.LoanBookRow;
+import com.udemy.demo.api.model.entity.LoanRow;
+import io.r2dbc.spi.Readable;
+import java.time.LocalDate;
+import org.springframework.context.annotation.Profile;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.r2dbc.core.DatabaseClient.GenericExecuteSpec;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Equivalente reativo de LoanRepository para o profile reactive. As listagens leem empréstimo
+ * e livro no mesmo join, em ordem de id, pelos índices da V2__loan_query_indexes.
+ */
+@Repository
+@Profile("reactive")
+public class LoanReactiveRepository {
+
+  private static final String LOAN_COLUMNS =
+      "select id, customer, customer_email, id_book, loan_date, returned, active_book_id, version from loan ";
+
+  private static final String LOAN_BOOK_COLUMNS =
+      " select l.id, b.isbn, l.customer, l.customer_email, b.id as book_id, b.title, b.author "+
+      " from loan l join books b on b.id = l.id_book ";
+
+  private final DatabaseClient client;
+
+  public LoanReactiveRepository(DatabaseClient client) {
+    this.client = client;
+  }
+
+  public Mono<LoanRow> findById(Long id) {
+    return client.sql(LOAN_COLUMNS + "where id = :id")
+        .bind("id", id)
+        .map(LoanReactiveRepository::toRow)
+        .one();
+  }
+
+  public Mono<LoanRow> insert(LoanRow loan) {
+    return bindColumns(client.sql(" insert into loan (customer, customer_email, id_book, loan_date, returned, active_book_id) "+
+                                  " values (:customer, :customerEmail, :bookId, :loanDate, :returned, :activeBookId)"), loan)
+        .filter(statement -> statement.returnGeneratedValues("id"))
+        .map(row -> row.get("id", Long.class))
+        .one()
+        .map(id -> {
+          loan.setId(id);
+          loan.setVersion(0L);
+          return loan;
+        });
+  }
+
+  //como o merge do jpa com Loan.version: só altera o empréstimo na versão lida e incrementa
+  public Mono<LoanRow> update(LoanRow loan) {
+    GenericExecuteSpec spec = bindColumns(client.sql(" update loan set customer = :customer, customer_email = :customerEmail, id_book = :bookId, "+
+                                                     " loan_date = :loanDate, returned = :returned, active_book_id = :activeBookId, version = version + 1 "+
+                                                     " where id = :id and version = :version"), loan)
+        .bind("id", loan.getId());
+    return NullableBind.bind(spec, "version", loan.getVersion(), Long.class)
+        .fetch()
+        .rowsUpdated()
+        .flatMap(updated -> {
+          if (updated == 0) {
+            return Mono.error(new ObjectOptimisticLockingFailureException(Loan.class, loan.getId()));
+          }
+          loan.setVersion(loan.getVersion() + 1);
+          return Mono.just(loan);
+        });
+  }
+
+  //mesmo update direto de LoanRepository.updateReturned; o active_book_id segue a regra de LoanRow.updateActiveBook
+  public Mono<Long> updateReturned(Long id, Boolean returned, Long version) {
+    String sql = " update loan set returned = :returned, version = version + 1, "+
+                 (Boolean.TRUE.equals(returned) ? " active_book_id = null " : " active_book_id = id_book ")+
+                 " where id = :id" + (version == null ? "" : " and version = :version");
+    GenericExecuteSpec spec = NullableBind.bind(client.sql(sql).bind("id", id), "returned", returned, Boolean.class);
+    return (version == null ? spec : spec.bind("version", version))
+        .fetch()
+        .rowsUpdated();
+  }
+
+  public Mono<Boolean> existsById(Long id) {
+    return client.sql("select 1 from loan where id = :id")
+        .bind("id", id)
+        .map(row -> true)
+        .first()
+        .hasElement();
+  }
+
+  public Flux<LoanBookRow> findByBookIsbnOrCustomer(String isbn, String customer, int limit, long offset) {
+    return bindFilter(client.sql(LOAN_BOOK_COLUMNS + " where b.isbn = :isbn or l.customer = :customer order by l.id limit :limit offset :offset"),
+        isbn, customer)
+        .bind("limit", limit)
+        .bind("offset", offset)
+        .map(LoanReactiveRepository::toLoanBookRow)
+        .all();
+  }
+
+  public Mono<Long> countByBookIsbnOrCustomer(String isbn, String customer) {
+    return bindFilter(client.sql(" select count(*) from loan l join books b on b.id = l.id_book where b.isbn = :isbn or l.customer = :customer"),
+        isbn, customer)
+        .map(row -> row.get(0, Long.class))
+        .one();
+  }
+
+  public Flux<LoanBookRow> findByBook(Long bookId, int limit, long offset) {
+    return client.sql(LOAN_BOOK_COLUMNS + " where l.id_book = :bookId order by l.id limit :limit offset :offset")
+        .bind("bookId", bookId)
+        .bind("limit", limit)
+        .bind("offset", offset)
+        .map(LoanReactiveRepository::toLoanBookRow)
+        .all();
+  }
+
+  public Mono<Long> countByBook(Long bookId) {
+    return client.sql("select count(*) from loan where id_book = :bookId")
+        .bind("bookId", bookId)
+        .map(row -> row.get(0, Long.class))
+        .one();
+  }
+
+  //colunas do insert e do update
+  private static GenericExecuteSpec bindColumns(GenericExecuteSpec spec, LoanRow loan) {
+    spec = NullableBind.bind(spec, "customer", loan.getCustomer(), String.class);
+    spec = NullableBind.bind(spec, "customerEmail", loan.getCustomerEmail(), String.class);
+    spec = NullableBind.bind(spec, "bookId", loan.getBookId(), Long.class);
+    spec = NullableBind.bind(spec, "loanDate", loan.getLoanDate(), LocalDate.class);
+    spec = NullableBind.bind(spec, "returned", loan.getReturned(), Boolean.class);
+    return NullableBind.bind(spec, "activeBookId", loan.getActiveBookId(), Long.class);
+  }
+
+  private static GenericExecuteSpec bindFilter(GenericExecuteSpec spec, String isbn, String customer) {
+    return NullableBind.bind(NullableBind.bind(spec, "isbn", isbn, String.class), "customer", customer, String.class);
+  }
+
+  private static LoanRow toRow(Readable row) {
+    return LoanRow.builder()
+        .id(row.get("id", Long.class))
+        .customer(row.get("customer", String.class))
+        .customerEmail(row.get("customer_email", String.class))
+        .bookId(row.get("id_book", Long.class))
+        .loanDate(row.get("loan_date", LocalDate.class))
+        .returned(row.get("returned", Boolean.class))
+        .activeBookId(row.get("active_book_id", Long.class))
+        .version(row.get("version", Long.class))
+        .build();
+  }
+
+  private static LoanBookRow toLoanBookRow(Readable row) {
+    return new LoanBookRow(
+        row.get("id", Long.class),
+        row.get("isbn", String.class),
+        row.get("customer", String.class),
+        row.get("customer_email", String.class),
+        row.get("book_id", Long.class),
+        row.get("title", String.class),
+        row.get("author", String.class));
+  }
+}
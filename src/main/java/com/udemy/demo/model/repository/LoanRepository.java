@@ -1,28 +1,79 @@
 package com.udemy.demo.model.repository;
 
+import com.udemy.demo.api.dto.LateLoanDTO;
+import com.udemy.demo.api.dto.LoanDTO;
 import com.udemy.demo.api.model.entity.Books;
 import com.udemy.demo.api.model.entity.Loan;
 import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
+import jakarta.persistence.QueryHint;
+import org.springframework.cache.annotation.Cacheable;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 
-public interface LoanRepository extends JpaRepository<Loan,Long> {
+public interface LoanRepository extends JpaRepository<Loan,Long>, LoanBatchRepository, LoanFieldsRepository {
+
+  //cache dos totais por filtro, limpo pelo serviço quando um empréstimo é incluído
+  String COUNT_CACHE = "loanCounts";
 
   Loan save(Loan loan);
 
-  @Query(value=" select case when (count(l.id)>0) then true else false end "+
-         " from Loan l where l.book= :book  and  ( l.returned is null or l.returned is false ) ")
-  boolean existsByBookAndNotReturned(@Param("book") Books book);
+  //livros com empréstimo ativo entre os informados, pela unique de active_book_id
+  @Query(value=" select l.activeBookId from Loan l where l.activeBookId in :bookIds ")
+  Set<Long> findActiveBookIds(@Param("bookIds") Collection<Long> bookIds);
+
+  //devolução num update só, sem ler o empréstimo: mantém a mesma regra do Loan.updateActiveBook e incrementa a versão;
+  //com version informada só altera se a linha ainda estiver nela. Devolve quantas linhas foram alteradas
+  @Modifying
+  @Query(value=" update Loan l set l.returned = :returned, "+
+         " l.activeBookId = case when :returned = true then null else l.book.id end, l.version = l.version + 1 "+
+         " where l.id = :id and ( :version is null or l.version = :version ) ")
+  int updateReturned(@Param("id") Long id, @Param("returned") Boolean returned, @Param("version") Long version);
+
+  //as listagens trazem o livro no mesmo select (join fetch / entity graph) porque o dto sempre usa o livro
+  //o total não vem junto com a página: fica em countByBookIsbnOrCustomer, em cache até o próximo empréstimo
+  @Query(value=" select l from Loan as l join fetch l.book as b where b.isbn= :isbn or l.customer = :customer")
+  Slice<Loan> findByBookIsbnOrCustomer(@Param("isbn") String isbn, @Param("customer") String customer, Pageable pageable);
+
+  @Cacheable(cacheNames = COUNT_CACHE, key = "{'filter', #isbn, #customer}")
+  @Query(value=" select count(l) from Loan as l join l.book as b where b.isbn= :isbn or l.customer = :customer")
+  long countByBookIsbnOrCustomer(@Param("isbn") String isbn, @Param("customer") String customer);
 
-  @Query(value=" select l from Loan as l join l.book as b where b.isbn= :isbn or l.customer = :customer")
-  Page<Loan> findByBookIsbnOrCustomer(@Param("isbn") String isbn, @Param("customer") String customer, Pageable pageable);
+  @Query(value=" select l from Loan as l join fetch l.book as b where l.id > :lastId and ( b.isbn= :isbn or l.customer = :customer )")
+  Slice<Loan> findByBookIsbnOrCustomerAfter(@Param("isbn") String isbn, @Param("customer") String customer, @Param("lastId") Long lastId, Pageable pageable);
 
+  //exportação: sem isbn e sem customer traz todos os empréstimos
+  @QueryHints(@QueryHint(name = org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+  @Query(value=" select new com.udemy.demo.api.dto.LoanDTO(l.id, b.isbn, l.customer, l.customerEmail, b.id, b.title, b.author) "+
+         " from Loan as l join l.book as b where ( :isbn is null and :customer is null ) or b.isbn= :isbn or l.customer = :customer "+
+         " order by l.id ")
+  Stream<LoanDTO> streamByBookIsbnOrCustomer(@Param("isbn") String isbn, @Param("customer") String customer);
+
+  @EntityGraph(attributePaths = "book")
   Page<Loan> findByBook(Books book, Pageable pageable);
 
-  @Query (" select l  from Loan l where l.loanDate<= :threeDaysAgo  and ( l.returned is null or l.returned is false )  ")
-  List<Loan> findByLoanDateLessThanAndNotReturned(@Param("threeDaysAgo") LocalDate threeDaysAgo);
+  @Query(value=" select new com.udemy.demo.api.dto.LoanDTO(l.id, b.isbn, l.customer, l.customerEmail, b.id, b.title, b.author) "+
+         " from Loan as l join l.book as b where b = :book ")
+  Slice<LoanDTO> findDtoByBook(@Param("book") Books book, Pageable pageable);
+
+  @Cacheable(cacheNames = COUNT_CACHE, key = "{'book', #book.id}")
+  long countByBook(Books book);
+
+  @EntityGraph(attributePaths = "book")
+  Slice<Loan> findByBookAndIdGreaterThan(Books book, Long lastId, Pageable pageable);
+
+  //lê os atrasados em blocos a partir do último id, trazendo só o que o envio de email precisa
+  @Query (" select new com.udemy.demo.api.dto.LateLoanDTO(l.id, l.customer, l.customerEmail) from Loan l "+
+          " where l.id > :lastId and l.loanDate<= :threeDaysAgo  and ( l.returned is null or l.returned is false ) order by l.id ")
+  List<LateLoanDTO> findLateLoansAfter(@Param("threeDaysAgo") LocalDate threeDaysAgo, @Param("lastId") Long lastId, Pageable pageable);
 }
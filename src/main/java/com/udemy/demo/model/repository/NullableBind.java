@@ -0,0 +1,17 @@
+package com.udemy.demo.model.repository;
+
+import org.springframework.r2dbc.core.DatabaseClient.GenericExecuteSpec;
+
+/**
+ * Bind dos parâmetros que podem vir nulos nos repositórios reativos: o r2dbc precisa do tipo para
+ * o null, então o valor nulo vai com bindNull e os outros com bind.
+ */
+final class NullableBind {
+
+  private NullableBind() {
+  }
+
+  static GenericExecuteSpec bind(GenericExecuteSpec spec, String name, Object value, Class<?> type) {
+    return value == null ? spec.bindNull(name, type) : spec.bind(name, value);
+  }
+}
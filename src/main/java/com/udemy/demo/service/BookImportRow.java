@@ -0,0 +1,22 @@
+package com.udemy.demo.service;
+
+import com.udemy.demo.api.model.entity.Books;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+//linha lida do arquivo de importação: traz o livro ou o erro de leitura/validação
+@Data
+@AllArgsConstructor
+public class BookImportRow {
+  private long line;
+  private Books book;
+  private String error;
+
+  public static BookImportRow of(long line, Books book) {
+    return new BookImportRow(line, book, null);
+  }
+
+  public static BookImportRow invalid(long line, String error) {
+    return new BookImportRow(line, null, error);
+  }
+}
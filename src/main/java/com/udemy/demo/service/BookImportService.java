@@ -0,0 +1,9 @@
+package com.udemy.demo.service;
+
+import com.udemy.demo.api.dto.BookImportReportDTO;
+import java.util.Iterator;
+
+public interface BookImportService {
+
+  BookImportReportDTO importBooks(Iterator<BookImportRow> rows);
+}
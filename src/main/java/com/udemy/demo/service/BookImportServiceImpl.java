@@ -0,0 +1,128 @@
+package com.udemy.demo.service;
+
+import com.udemy.demo.api.dto.BookImportErrorDTO;
+import com.udemy.demo.api.dto.BookImportReportDTO;
+import com.udemy.demo.api.model.entity.Books;
+import com.udemy.demo.model.repository.BooksRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import jakarta.persistence.EntityManager;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Importa livros em lotes: cada lote confere os isbns já cadastrados numa única consulta
+ * e grava os livros numa transação própria, com os inserts agrupados pelo hibernate
+ * (hibernate.jdbc.batch_size). Um lote com erro não desfaz os lotes anteriores.
+ */
+@Service
+@Slf4j
+public class BookImportServiceImpl implements BookImportService {
+
+  static final int MAX_REPORTED_ERRORS = 1000;
+
+  private final BooksRepository repository;
+  private final BookSearchIndex searchIndex;
+  private final EntityManager entityManager;
+  private final TransactionTemplate transactionTemplate;
+  private final int batchSize;
+  private final Counter isbnDuplicates;
+
+  public BookImportServiceImpl(BooksRepository repository, BookSearchIndex searchIndex,
+      EntityManager entityManager, PlatformTransactionManager transactionManager, MeterRegistry registry,
+      @Value("${application.books.import.batch-size:1000}") int batchSize) {
+    this.repository = repository;
+    this.searchIndex = searchIndex;
+    this.entityManager = entityManager;
+    this.transactionTemplate = new TransactionTemplate(transactionManager);
+    this.batchSize = batchSize;
+    this.isbnDuplicates = registry.counter(BooksServiceImpl.ISBN_DUPLICATES_COUNTER, "source", "import");
+  }
+
+  @Override
+  @CacheEvict(cacheNames = BooksRepository.COUNT_CACHE, allEntries = true)
+  public BookImportReportDTO importBooks(Iterator<BookImportRow> rows) {
+    BookImportReportDTO report = new BookImportReportDTO();
+    List<BookImportRow> batch = new ArrayList<>(batchSize);
+    while (rows.hasNext()) {
+      BookImportRow row = rows.next();
+      report.setReceived(report.getReceived() + 1);
+      if (row.getError() != null) {
+        reject(report, row, row.getError());
+        continue;
+      }
+      batch.add(row);
+      if (batch.size() == batchSize) {
+        importBatch(report, batch);
+        batch.clear();
+      }
+    }
+    if (!batch.isEmpty()) {
+      importBatch(report, batch);
+    }
+    log.info("Book import finished: {} received, {} imported, {} failed",
+        report.getReceived(), report.getImported(), report.getFailed());
+    return report;
+  }
+
+  private void importBatch(BookImportReportDTO report, List<BookImportRow> batch) {
+    Map<String, BookImportRow> byIsbn = new LinkedHashMap<>();
+    for (BookImportRow row : batch) {
+      if (byIsbn.putIfAbsent(row.getBook().getIsbn(), row) != null) {
+        isbnDuplicates.increment();
+        reject(report, row, "Isbn duplicado na importação");
+      }
+    }
+    Set<String> existing = new HashSet<>(repository.findExistingIsbns(byIsbn.keySet()));
+    List<Books> books = new ArrayList<>(byIsbn.size());
+    for (BookImportRow row : byIsbn.values()) {
+      if (existing.contains(row.getBook().getIsbn())) {
+        isbnDuplicates.increment();
+        reject(report, row, "Isbn Já Cadastrado");
+      } else {
+        books.add(row.getBook());
+      }
+    }
+    if (books.isEmpty()) {
+      return;
+    }
+    try {
+      transactionTemplate.executeWithoutResult(status -> {
+        repository.saveAll(books);
+        repository.flush();
+        //sem isso o contexto de persistência da requisição (open-in-view) guardaria todos os livros importados
+        entityManager.clear();
+      });
+    } catch (DataAccessException e) {
+      log.warn("Book import batch of {} rows failed", books.size(), e);
+      for (BookImportRow row : byIsbn.values()) {
+        if (!existing.contains(row.getBook().getIsbn())) {
+          reject(report, row, "Falha ao gravar o lote: " + e.getMostSpecificCause().getMessage());
+        }
+      }
+      return;
+    }
+    books.forEach(searchIndex::add);
+    report.setImported(report.getImported() + books.size());
+  }
+
+  private void reject(BookImportReportDTO report, BookImportRow row, String message) {
+    report.setFailed(report.getFailed() + 1);
+    if (report.getErrors().size() < MAX_REPORTED_ERRORS) {
+      String isbn = row.getBook() == null ? null : row.getBook().getIsbn();
+      report.getErrors().add(new BookImportErrorDTO(row.getLine(), isbn, message));
+    }
+  }
+}
@@ -0,0 +1,23 @@
+package com.udemy.demo.service;
+
+import com.udemy.demo.api.model.entity.BookRow;
+import com.udemy.demo.api.model.entity.Books;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import reactor.core.publisher.Mono;
+
+/** mesmas regras de BookService sobre o r2dbc, para a api do profile reactive */
+public interface BookReactiveService {
+
+  Mono<BookRow> save(BookRow book);
+
+  Mono<BookRow> getById(Long id);
+
+  Mono<Void> delete(BookRow book);
+
+  Mono<BookRow> update(BookRow book);
+
+  Mono<Page<BookRow>> find(Books filter, Pageable pageRequest);
+
+  Mono<BookRow> getByIsbn(String isbn);
+}
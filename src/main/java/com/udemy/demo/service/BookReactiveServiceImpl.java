@@ -0,0 +1,115 @@
+package com.udemy.demo.service;
+
+import com.udemy.demo.api.model.entity.BookRow;
+import com.udemy.demo.api.model.entity.Books;
+import com.udemy.demo.exception.BusinessException;
+import com.udemy.demo.model.repository.BooksReactiveRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+@Service
+@Profile("reactive")
+public class BookReactiveServiceImpl implements BookReactiveService {
+
+  private BooksReactiveRepository repository;
+
+  private BookSearchIndex searchIndex;
+
+  private Counter isbnDuplicates;
+
+  public BookReactiveServiceImpl(BooksReactiveRepository repository, BookSearchIndex searchIndex, MeterRegistry registry) {
+    this.repository=repository;
+    this.searchIndex=searchIndex;
+    this.isbnDuplicates=registry.counter(BooksServiceImpl.ISBN_DUPLICATES_COUNTER, "source", "api");
+  }
+
+  @Override
+  public Mono<BookRow> save(BookRow book) {
+    return repository.existsByIsbn(book.getIsbn())
+        .flatMap(exists -> {
+          if (exists) {
+            isbnDuplicates.increment();
+            return Mono.<BookRow>error(new BusinessException("Isbn Já Cadastrado"));
+          }
+          return repository.insert(book);
+        })
+        .doOnNext(saved -> searchIndex.add(toBooks(saved)));
+  }
+
+  @Override
+  public Mono<BookRow> getById(Long id) {
+    return repository.findById(id);
+  }
+
+  @Override
+  public Mono<Void> delete(BookRow book) {
+    if (book==null || book.getId()==null){
+      return Mono.error(new IllegalArgumentException("Bok id can't be null"));
+    }
+    return repository.deleteById(book.getId())
+        .doOnSuccess(done -> searchIndex.remove(book.getId()));
+  }
+
+  @Override
+  public Mono<BookRow> update(BookRow book) {
+    if (book==null || book.getId()==null){
+      return Mono.error(new IllegalArgumentException("Bok id can't be null"));
+    }
+    return repository.update(book)
+        .doOnNext(updated -> searchIndex.add(toBooks(updated)));
+  }
+
+  //mesma busca de BooksServiceImpl.find: com filtro os ids vêm do índice em memória e o total é o tamanho do resultado
+  @Override
+  public Mono<Page<BookRow>> find(Books filter, Pageable pageRequest) {
+    if (!searchIndex.isFilter(filter)) {
+      return repository.findAll(pageRequest)
+          .collectList()
+          .flatMap(content -> ReactivePages.page(content, pageRequest, repository::count));
+    }
+    long[] ids = searchIndex.search(filter, pageRequest.getSort());
+    return findByIds(ids, pageRequest)
+        .map(content -> new PageImpl<>(content, pageRequest, ids.length));
+  }
+
+  //como em BooksServiceImpl: os ids vêm do índice na ordem pedida e só os da página vão à base
+  private Mono<List<BookRow>> findByIds(long[] ids, Pageable pageRequest) {
+    int from = pageRequest.isPaged() ? (int) Math.min(pageRequest.getOffset(), ids.length) : 0;
+    int to = pageRequest.isPaged() ? Math.min(from + pageRequest.getPageSize(), ids.length) : ids.length;
+    if (from == to) {
+      return Mono.just(new ArrayList<>());
+    }
+    List<Long> page = toList(Arrays.copyOfRange(ids, from, to));
+    if (pageRequest.getSort().isUnsorted()) {
+      return repository.findAllById(page)
+          .sort(Comparator.comparing(BookRow::getId))
+          .collectList();
+    }
+    return repository.findByIdIn(page, PageRequest.of(0, page.size(), pageRequest.getSort())).collectList();
+  }
+
+  @Override
+  public Mono<BookRow> getByIsbn(String isbn) {
+    return repository.findByIsbn(isbn);
+  }
+
+  private static Books toBooks(BookRow book) {
+    return Books.builder().id(book.getId()).title(book.getTitle()).author(book.getAuthor()).isbn(book.getIsbn()).build();
+  }
+
+  private static List<Long> toList(long[] ids) {
+    return Arrays.stream(ids).boxed().collect(Collectors.toList());
+  }
+}
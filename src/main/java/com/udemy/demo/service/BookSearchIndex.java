@@ -0,0 +1,260 @@
+package com.udemy.demo.service;
+
+import com.udemy.demo.api.model.entity.Books;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Component;
+
+/**
+ * Índice invertido em memória dos livros, usado na busca por título, autor e isbn
+ * no lugar do like '%x%' que varria a tabela inteira.
+ *
+ * <p>Os termos são normalizados (minúsculas e sem acento) e a busca é por prefixo:
+ * "clea cod" encontra "Clean Code". Cada termo informado precisa ser encontrado
+ * (AND), e o isbn é indexado como um termo só, sem hífens.
+ *
+ * <p>O índice guarda também título, autor e isbn de cada livro para ordenar o resultado
+ * ({@link #search(Books, Sort)}): a listagem ordenada só leva para a base os ids da página.
+ */
+@Component
+public class BookSearchIndex {
+
+  private static final Pattern DIACRITICS = Pattern.compile("\\p{M}+");
+  private static final Pattern SEPARATORS = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+  private static final String TITLE = "t:";
+  private static final String AUTHOR = "a:";
+  private static final String ISBN = "i:";
+
+  //propriedades do sort que o índice sabe ordenar, as mesmas aceitas pelo BooksReactiveRepository
+  private static final Set<String> SORTABLE = Set.of("id", "title", "author", "isbn");
+
+  private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+  private NavigableMap<String, Set<Long>> postings = new TreeMap<>();
+  private Map<Long, Entry> entries = new HashMap<>();
+
+  //alterações feitas enquanto um índice novo é montado, repetidas nele antes da troca; nulo fora da reconstrução
+  private List<Change> changes;
+
+  public boolean isFilter(Books filter) {
+    return filter != null && !(terms(TITLE, filter.getTitle()).isEmpty()
+        && terms(AUTHOR, filter.getAuthor()).isEmpty()
+        && isbnTerms(filter.getIsbn()).isEmpty());
+  }
+
+  /** ids dos livros que atendem o filtro, em ordem crescente */
+  public long[] search(Books filter) {
+    return search(filter, Sort.unsorted());
+  }
+
+  /**
+   * ids dos livros que atendem o filtro na ordem do sort, com o id como desempate como no
+   * BooksReactiveRepository; propriedades fora de id, title, author e isbn são ignoradas. Como na base,
+   * nulos vêm primeiro na ordem crescente.
+   */
+  public long[] search(Books filter, Sort sort) {
+    List<String> terms = termsOf(filter);
+    List<Sort.Order> orders = sort.stream().filter(order -> SORTABLE.contains(order.getProperty())).collect(Collectors.toList());
+    lock.readLock().lock();
+    try {
+      Set<Long> result = null;
+      for (String term : terms) {
+        Set<Long> matches = new HashSet<>();
+        postings.subMap(term, true, term + Character.MAX_VALUE, false)
+            .values()
+            .forEach(matches::addAll);
+        if (result == null) {
+          result = matches;
+        } else {
+          result.retainAll(matches);
+        }
+        if (result.isEmpty()) {
+          break;
+        }
+      }
+      if (result == null) {
+        return new long[0];
+      }
+      if (!orders.isEmpty()) {
+        return result.stream().map(entries::get).sorted(comparator(orders)).mapToLong(Entry::id).toArray();
+      }
+      long[] ids = result.stream().mapToLong(Long::longValue).toArray();
+      Arrays.sort(ids);
+      return ids;
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  public void add(Books book) {
+    lock.writeLock().lock();
+    try {
+      apply(postings, entries, new Change(book.getId(), book));
+      if (changes != null) {
+        changes.add(new Change(book.getId(), book));
+      }
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  public void remove(Long id) {
+    lock.writeLock().lock();
+    try {
+      apply(postings, entries, new Change(id, null));
+      if (changes != null) {
+        changes.add(new Change(id, null));
+      }
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Troca o índice inteiro. A busca continua usando o antigo enquanto o novo é montado, e os add e remove
+   * feitos nesse meio tempo valem nos dois: o novo recebe as mesmas alterações antes da troca. Os livros
+   * podem ser lidos aos poucos pelo iterable, só os termos ficam em memória.
+   */
+  public synchronized void rebuild(Iterable<Books> books) {
+    lock.writeLock().lock();
+    try {
+      changes = new ArrayList<>();
+    } finally {
+      lock.writeLock().unlock();
+    }
+    NavigableMap<String, Set<Long>> newPostings = new TreeMap<>();
+    Map<Long, Entry> newEntries = new HashMap<>();
+    try {
+      books.forEach(book -> index(newPostings, newEntries, book));
+      lock.writeLock().lock();
+      try {
+        changes.forEach(change -> apply(newPostings, newEntries, change));
+        postings = newPostings;
+        entries = newEntries;
+      } finally {
+        lock.writeLock().unlock();
+      }
+    } finally {
+      lock.writeLock().lock();
+      try {
+        changes = null;
+      } finally {
+        lock.writeLock().unlock();
+      }
+    }
+  }
+
+  public int size() {
+    lock.readLock().lock();
+    try {
+      return entries.size();
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  private static void index(Map<String, Set<Long>> postings, Map<Long, Entry> entries, Books book) {
+    if (book == null || book.getId() == null) {
+      return;
+    }
+    List<String> terms = termsOf(book);
+    terms.forEach(term -> postings.computeIfAbsent(term, key -> new HashSet<>()).add(book.getId()));
+    entries.put(book.getId(), new Entry(book.getId(), terms, book.getTitle(), book.getAuthor(), book.getIsbn()));
+  }
+
+  //livro nulo na alteração é remoção
+  private static void apply(NavigableMap<String, Set<Long>> postings, Map<Long, Entry> entries, Change change) {
+    removeTerms(postings, entries, change.id());
+    index(postings, entries, change.book());
+  }
+
+  private static void removeTerms(Map<String, Set<Long>> postings, Map<Long, Entry> entries, Long id) {
+    Entry entry = entries.remove(id);
+    if (entry == null) {
+      return;
+    }
+    for (String term : entry.terms()) {
+      Set<Long> ids = postings.get(term);
+      if (ids != null && ids.remove(id) && ids.isEmpty()) {
+        postings.remove(term);
+      }
+    }
+  }
+
+  private static List<String> termsOf(Books book) {
+    List<String> terms = new ArrayList<>();
+    if (book != null) {
+      terms.addAll(terms(TITLE, book.getTitle()));
+      terms.addAll(terms(AUTHOR, book.getAuthor()));
+      terms.addAll(isbnTerms(book.getIsbn()));
+    }
+    return terms;
+  }
+
+  private static List<String> terms(String field, String text) {
+    if (text == null || text.isEmpty()) {
+      return List.of();
+    }
+    Set<String> terms = new HashSet<>();
+    for (String token : SEPARATORS.split(normalize(text))) {
+      if (!token.isEmpty()) {
+        terms.add(field + token);
+      }
+    }
+    return new ArrayList<>(terms);
+  }
+
+  private static List<String> isbnTerms(String isbn) {
+    if (isbn == null) {
+      return List.of();
+    }
+    String term = SEPARATORS.matcher(normalize(isbn)).replaceAll("");
+    return term.isEmpty() ? List.of() : List.of(ISBN + term);
+  }
+
+  private static Comparator<Entry> comparator(List<Sort.Order> orders) {
+    Comparator<Entry> comparator = null;
+    for (Sort.Order order : orders) {
+      Comparator<String> values = Comparator.nullsFirst(order.isIgnoreCase() ? String.CASE_INSENSITIVE_ORDER : Comparator.naturalOrder());
+      Comparator<Entry> next = switch (order.getProperty()) {
+        case "title" -> Comparator.comparing(Entry::title, values);
+        case "author" -> Comparator.comparing(Entry::author, values);
+        case "isbn" -> Comparator.comparing(Entry::isbn, values);
+        default -> Comparator.comparing(Entry::id);
+      };
+      if (order.isDescending()) {
+        next = next.reversed();
+      }
+      comparator = comparator == null ? next : comparator.thenComparing(next);
+    }
+    return comparator.thenComparing(Entry::id);
+  }
+
+  //termos indexados do livro e os valores usados na ordenação
+  private record Entry(Long id, List<String> terms, String title, String author, String isbn) {
+  }
+
+  private record Change(Long id, Books book) {
+  }
+
+  private static String normalize(String text) {
+    String decomposed = Normalizer.normalize(text, Normalizer.Form.NFD);
+    return DIACRITICS.matcher(decomposed).replaceAll("").toLowerCase(Locale.ROOT);
+  }
+}
@@ -1,9 +1,14 @@
 package com.udemy.demo.service;
 
+import com.udemy.demo.api.dto.BookDTO;
 import com.udemy.demo.api.model.entity.Books;
+import java.util.Collection;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.Consumer;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 
 public interface BookService {
 
@@ -15,7 +20,20 @@ public interface BookService {
 
   Books update(Books book);
 
-  Page<Books> find(Books filter, Pageable pageRequest);
+  Page<BookDTO> find(Books filter, Pageable pageRequest);
+
+  /** mesma busca do find, sem calcular o total: só informa se há próxima página */
+  Slice<BookDTO> findSlice(Books filter, Pageable pageRequest);
+
+  /** mesma busca do find lendo só os campos pedidos (BookFieldsRepository.FIELDS), um mapa por livro */
+  Page<Map<String, Object>> findFields(Books filter, Pageable pageRequest, Collection<String> fields);
+
+  Slice<Map<String, Object>> findFieldsSlice(Books filter, Pageable pageRequest, Collection<String> fields);
+
+  Slice<Books> findAfter(Books filter, Long lastId, int size);
 
   Optional<Books> getByIsbn(String isbn);
+
+  /** entrega um a um todos os livros do filtro, em ordem de id, sem montar a lista em memória */
+  void export(Books filter, Consumer<BookDTO> action);
 }
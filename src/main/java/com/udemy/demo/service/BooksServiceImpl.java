@@ -1,73 +1,249 @@
 package com.udemy.demo.service;
 
+import com.udemy.demo.api.dto.BookDTO;
 import com.udemy.demo.api.model.entity.Books;
 import com.udemy.demo.exception.BusinessException;
 import com.udemy.demo.model.repository.BooksRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
-import org.apache.catalina.Store;
-import org.springframework.data.domain.Example;
-import org.springframework.data.domain.ExampleMatcher;
-import org.springframework.data.domain.ExampleMatcher.StringMatcher;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.cache.annotation.Caching;
+import org.springframework.context.event.EventListener;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.support.PageableExecutionUtils;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 @Service
+@Slf4j
 public class BooksServiceImpl implements BookService {
 
+  //caches configurados em spring.cache.cache-names (tamanho e ttl em spring.cache.caffeine.spec)
+  public static final String BOOKS_BY_ID_CACHE = "books";
+  public static final String BOOKS_BY_ISBN_CACHE = "booksByIsbn";
+
+  //isbns recusados por já existirem, com a tag source: api (cadastro) ou import (importação em lote)
+  public static final String ISBN_DUPLICATES_COUNTER = "library.books.isbn.duplicates";
+
+  private static final int INDEX_REBUILD_CHUNK = 1000;
+  private static final int EXPORT_CHUNK = 1000;
+
   private BooksRepository repository;
 
-  public BooksServiceImpl(BooksRepository repository) {
+  private BookSearchIndex searchIndex;
+
+  private Counter isbnDuplicates;
+
+  public BooksServiceImpl(BooksRepository repository, BookSearchIndex searchIndex, MeterRegistry registry) {
     this.repository=repository;
+    this.searchIndex=searchIndex;
+    this.isbnDuplicates=registry.counter(ISBN_DUPLICATES_COUNTER, "source", "api");
   }
 
   @Override
+  @Caching(evict = {
+      @CacheEvict(cacheNames = BOOKS_BY_ISBN_CACHE, key = "#book.isbn", condition = "#book.isbn != null"),
+      @CacheEvict(cacheNames = BooksRepository.COUNT_CACHE, allEntries = true)
+  })
   public Books save(Books book) {
     if (repository.existsByIsbn(book.getIsbn())) {
+      isbnDuplicates.increment();
       throw new BusinessException("Isbn Já Cadastrado");
     }
-    return repository.save(book);
+    Books saved = repository.save(book);
+    searchIndex.add(saved);
+    return saved;
   }
 
+  //livro não encontrado não fica no cache
   @Override
+  @Cacheable(cacheNames = BOOKS_BY_ID_CACHE, key = "#id", unless = "#result == null")
   public Optional<Books> getById(Long id) {
     return this.repository.findById(id);
   }
 
   @Override
+  @Caching(evict = {
+      @CacheEvict(cacheNames = BOOKS_BY_ID_CACHE, key = "#book.id"),
+      //o isbn antigo não é conhecido aqui, então o cache por isbn é limpo inteiro
+      @CacheEvict(cacheNames = BOOKS_BY_ISBN_CACHE, allEntries = true),
+      @CacheEvict(cacheNames = BooksRepository.COUNT_CACHE, allEntries = true)
+  })
   public void delete(Books book) {
     if (book==null || book.getId()==null){
       throw new IllegalArgumentException("Bok id can't be null");
     }
       this.repository.delete(book);
+      searchIndex.remove(book.getId());
 
   }
 
   @Override
+  @Caching(evict = {
+      @CacheEvict(cacheNames = BOOKS_BY_ID_CACHE, key = "#book.id"),
+      @CacheEvict(cacheNames = BOOKS_BY_ISBN_CACHE, allEntries = true)
+  })
   public Books update(Books book) {
     if (book==null || book.getId()==null){
       throw new IllegalArgumentException("Bok id can't be null");
     }
-    return this.repository.save(book);
+    Books updated = this.repository.save(book);
+    searchIndex.add(updated);
+    return updated;
+
+
+  }
+
+  //título, autor e isbn são buscados no índice em memória, a base só é consultada pelos ids da página;
+  //com filtro o total é o tamanho do resultado do índice, sem filtro vem do count em cache
+  @Override
+  @Transactional(readOnly = true)
+  public Page<BookDTO> find(Books filter, Pageable pageRequest) {
+    if (!searchIndex.isFilter(filter)) {
+      Slice<BookDTO> slice = repository.findAllDto(pageRequest);
+      return PageableExecutionUtils.getPage(slice.getContent(), pageRequest, repository::countAll);
+    }
+    long[] ids = searchIndex.search(filter, pageRequest.getSort());
+    return new PageImpl<>(findDtoByIds(ids, pageRequest).getContent(), pageRequest, ids.length);
+  }
+
+  @Override
+  @Transactional(readOnly = true)
+  public Slice<BookDTO> findSlice(Books filter, Pageable pageRequest) {
+    if (!searchIndex.isFilter(filter)) {
+      return repository.findAllDto(pageRequest);
+    }
+    return findDtoByIds(searchIndex.search(filter, pageRequest.getSort()), pageRequest);
+  }
+
+  //mesmo caminho do find (índice para os filtros, count em cache), com o select só das colunas pedidas
+  @Override
+  @Transactional(readOnly = true)
+  public Page<Map<String, Object>> findFields(Books filter, Pageable pageRequest, Collection<String> fields) {
+    if (!searchIndex.isFilter(filter)) {
+      Slice<Map<String, Object>> slice = repository.findFields(fields, null, pageRequest);
+      return PageableExecutionUtils.getPage(slice.getContent(), pageRequest, repository::countAll);
+    }
+    long[] ids = searchIndex.search(filter, pageRequest.getSort());
+    return new PageImpl<>(findFieldsByIds(ids, pageRequest, fields).getContent(), pageRequest, ids.length);
+  }
+
+  @Override
+  @Transactional(readOnly = true)
+  public Slice<Map<String, Object>> findFieldsSlice(Books filter, Pageable pageRequest, Collection<String> fields) {
+    if (!searchIndex.isFilter(filter)) {
+      return repository.findFields(fields, null, pageRequest);
+    }
+    return findFieldsByIds(searchIndex.search(filter, pageRequest.getSort()), pageRequest, fields);
+  }
 
+  private Slice<BookDTO> findDtoByIds(long[] ids, Pageable pageRequest) {
+    return findByIds(ids, pageRequest, repository::findDtoByIdIn, repository::findDtoByIdIn);
+  }
 
+  private Slice<Map<String, Object>> findFieldsByIds(long[] ids, Pageable pageRequest, Collection<String> fields) {
+    return findByIds(ids, pageRequest, page -> repository.findFields(fields, page, Pageable.unpaged()).getContent(),
+        (all, pageable) -> repository.findFields(fields, all, pageable));
+  }
+
+  //os ids já vêm do índice na ordem pedida: a página é recortada deles e só os ids dela vão à base, que
+  //ordena esses poucos registros pelo mesmo sort
+  private <T> Slice<T> findByIds(long[] ids, Pageable pageRequest, Function<List<Long>, List<T>> findPage,
+      BiFunction<List<Long>, Pageable, Slice<T>> findSorted) {
+    int from = pageRequest.isPaged() ? (int) Math.min(pageRequest.getOffset(), ids.length) : 0;
+    int to = pageRequest.isPaged() ? Math.min(from + pageRequest.getPageSize(), ids.length) : ids.length;
+    if (from == to) {
+      return new SliceImpl<>(new ArrayList<>(), pageRequest, false);
+    }
+    List<Long> page = toList(Arrays.copyOfRange(ids, from, to));
+    List<T> content = pageRequest.getSort().isUnsorted() ? findPage.apply(page)
+        : findSorted.apply(page, PageRequest.of(0, page.size(), pageRequest.getSort())).getContent();
+    return new SliceImpl<>(content, pageRequest, to < ids.length);
   }
 
   @Override
-  public Page<Books> find(Books filter, Pageable pageRequest) {
-    Example<Books> example=Example.of(filter,
-        ExampleMatcher.matching()
-        .withIgnoreCase()
-        .withIgnoreNullValues()
-        .withStringMatcher(StringMatcher.CONTAINING)
-        );
-    return repository.findAll(example,pageRequest);
+  public Slice<Books> findAfter(Books filter, Long lastId, int size) {
+    if (!searchIndex.isFilter(filter)) {
+      return repository.findAfter(lastId, PageRequest.of(0, size, Sort.by("id")));
+    }
+    long[] ids = searchIndex.search(filter);
+    int position = Arrays.binarySearch(ids, lastId);
+    int from = position >= 0 ? position + 1 : -position - 1;
+    int to = Math.min(from + size, ids.length);
+    return new SliceImpl<>(findAllById(Arrays.copyOfRange(ids, from, to)), PageRequest.of(0, size), to < ids.length);
   }
 
   @Override
+  @Cacheable(cacheNames = BOOKS_BY_ISBN_CACHE, key = "#isbn", unless = "#result == null")
   public Optional<Books> getByIsbn(String isbn) {
     return repository.findByisbn(isbn);
   }
 
+  //sem filtro lê a tabela por cursor; com filtro os ids vêm do índice e os livros são lidos em blocos
+  @Override
+  @Transactional(readOnly = true)
+  public void export(Books filter, Consumer<BookDTO> action) {
+    if (!searchIndex.isFilter(filter)) {
+      try (Stream<BookDTO> books = repository.streamAll()) {
+        books.forEach(action);
+      }
+      return;
+    }
+    long[] ids = searchIndex.search(filter);
+    for (int from = 0; from < ids.length; from += EXPORT_CHUNK) {
+      long[] chunk = Arrays.copyOfRange(ids, from, Math.min(from + EXPORT_CHUNK, ids.length));
+      repository.findDtoByIdIn(toList(chunk)).forEach(action);
+    }
+  }
+
+  //os blocos são lidos conforme o índice consome o iterable, sem transação: cada bloco é descartado depois de indexado
+  @EventListener(ApplicationReadyEvent.class)
+  public void rebuildSearchIndex() {
+    searchIndex.rebuild(() -> Stream.iterate(nextIndexChunk(0L), Objects::nonNull,
+            chunk -> chunk.hasNext() ? nextIndexChunk(chunk.getContent().get(chunk.getNumberOfElements() - 1).getId()) : null)
+        .flatMap(chunk -> chunk.getContent().stream())
+        .iterator());
+    log.info("Book search index rebuilt with {} books", searchIndex.size());
+  }
+
+  private Slice<Books> nextIndexChunk(long lastId) {
+    return repository.findAfter(lastId, PageRequest.of(0, INDEX_REBUILD_CHUNK, Sort.by("id")));
+  }
+
+  private List<Books> findAllById(long[] ids) {
+    if (ids.length == 0) {
+      return new ArrayList<>();
+    }
+    return repository.findAllById(toList(ids))
+        .stream()
+        .sorted(Comparator.comparing(Books::getId))
+        .collect(Collectors.toList());
+  }
+
+  private static List<Long> toList(long[] ids) {
+    return Arrays.stream(ids).boxed().collect(Collectors.toList());
+  }
 
 }
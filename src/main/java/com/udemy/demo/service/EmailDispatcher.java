@@ -0,0 +1,271 @@
+package com.udemy.demo.service;
+
+import com.udemy.demo.api.model.entity.DeadLetterEmail;
+import com.udemy.demo.model.repository.DeadLetterEmailRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.mail.SimpleMailMessage;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+/**
+ * Fila limitada de envio de emails atendida por um pool de workers.
+ *
+ * <ul>
+ *   <li>quando a fila está cheia quem envia espera até {@code offer-timeout} e depois recebe
+ *   {@link RejectedExecutionException} (backpressure), com o email gravado na dead letter;</li>
+ *   <li>falhas são tentadas de novo com espera exponencial até {@code max-attempts}; a nova tentativa
+ *   que encontra a fila cheia é reagendada, sem prender a thread de retry;</li>
+ *   <li>o que não foi entregue vai para a tabela {@link DeadLetterEmail}.</li>
+ * </ul>
+ *
+ * Com {@code spring.threads.virtual.enabled} os workers são virtual threads. O número de workers continua
+ * limitando os envios simultâneos: o jakarta mail envia dentro de blocos synchronized, que prendem
+ * a virtual thread à thread da plataforma enquanto espera o smtp.
+ */
+@Component
+@Slf4j
+public class EmailDispatcher {
+
+  private final JavaMailSender javaMailSender;
+  private final DeadLetterEmailRepository deadLetterRepository;
+  private final int maxAttempts;
+  private final Duration initialBackoff;
+  private final Duration offerTimeout;
+
+  private final ThreadPoolExecutor workers;
+  private final ScheduledExecutorService retries;
+  private final Set<Attempt> scheduled = ConcurrentHashMap.newKeySet();
+
+  private final Timer sendTimer;
+  private final Counter retryCounter;
+  private final Counter deadLetterCounter;
+  private final Counter rejectedCounter;
+
+  public EmailDispatcher(JavaMailSender javaMailSender, DeadLetterEmailRepository deadLetterRepository,
+      MeterRegistry registry,
+      @Value("${application.mail.queue.capacity:1000}") int capacity,
+      @Value("${application.mail.queue.workers:4}") int workerCount,
+      @Value("${application.mail.queue.max-attempts:5}") int maxAttempts,
+      @Value("${application.mail.queue.initial-backoff:1s}") Duration initialBackoff,
+      @Value("${application.mail.queue.offer-timeout:30s}") Duration offerTimeout,
+      @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+    this.javaMailSender = javaMailSender;
+    this.deadLetterRepository = deadLetterRepository;
+    this.maxAttempts = maxAttempts;
+    this.initialBackoff = initialBackoff;
+    this.offerTimeout = offerTimeout;
+
+    this.workers = new ThreadPoolExecutor(workerCount, workerCount, 0L, TimeUnit.MILLISECONDS,
+        new ArrayBlockingQueue<>(capacity), threads("email-worker-", virtualThreads), this::waitForRoom);
+    this.workers.prestartAllCoreThreads();
+    this.retries = Executors.newSingleThreadScheduledExecutor(threads("email-retry-", false));
+
+    registry.gauge("library.email.queue.depth", workers, executor -> executor.getQueue().size());
+    this.sendTimer = Timer.builder("library.email.send")
+        .description("Tempo de envio de cada email ao servidor smtp")
+        .publishPercentileHistogram()
+        .register(registry);
+    this.retryCounter = registry.counter("library.email.retries");
+    this.deadLetterCounter = registry.counter("library.email.dead.letters");
+    this.rejectedCounter = registry.counter("library.email.rejected");
+  }
+
+  /**
+   * Coloca o email na fila. O future termina quando o email for entregue, ou com erro
+   * quando ele for para a dead letter. O email recusado por falta de vaga também fica na dead letter,
+   * antes da {@link RejectedExecutionException} chegar a quem enviou.
+   */
+  public CompletableFuture<Void> submit(SimpleMailMessage message) {
+    CompletableFuture<Void> result = new CompletableFuture<>();
+    Attempt task = new Attempt(message, 1, result);
+    try {
+      workers.execute(task);
+    } catch (RejectedExecutionException e) {
+      fail(task, 0, e);
+      throw e;
+    }
+    return result;
+  }
+
+  public int queueDepth() {
+    return workers.getQueue().size();
+  }
+
+  //as novas tentativas agendadas e os emails que ficaram na fila vão para a dead letter, para nenhum future ficar aberto
+  @PreDestroy
+  public void shutdown() throws InterruptedException {
+    retries.shutdownNow();
+    for (Attempt pending : List.copyOf(scheduled)) {
+      if (scheduled.remove(pending)) {
+        fail(pending, pending.number - 1, new RejectedExecutionException("Email queue shut down before the retry"));
+      }
+    }
+    workers.shutdown();
+    if (!workers.awaitTermination(offerTimeout.toMillis(), TimeUnit.MILLISECONDS)) {
+      List<Runnable> dropped = workers.shutdownNow();
+      log.warn("Email queue shutdown with {} messages pending", dropped.size());
+      for (Runnable task : dropped) {
+        if (task instanceof Attempt pending) {
+          fail(pending, pending.number - 1, new RejectedExecutionException("Email queue shut down"));
+        }
+      }
+    }
+  }
+
+  private void attempt(Attempt task) {
+    try {
+      sendTimer.record(() -> javaMailSender.send(task.message));
+      task.result.complete(null);
+    } catch (RuntimeException e) {
+      if (task.number >= maxAttempts || retries.isShutdown()) {
+        fail(task, task.number, e);
+        return;
+      }
+      Attempt next = new Attempt(task.message, task.number + 1, task.result);
+      long delay = backoff(task.number);
+      log.warn("Email send failed (attempt {}/{}), retrying in {}ms: {}", task.number, maxAttempts, delay, e.getMessage());
+      retryCounter.increment();
+      scheduleRetry(next, delay, 0L);
+    }
+  }
+
+  //quem tirar a tentativa de scheduled é quem cuida dela: o agendamento ou o shutdown
+  private void scheduleRetry(Attempt next, long delay, long fullSince) {
+    scheduled.add(next);
+    try {
+      retries.schedule(() -> {
+        if (scheduled.remove(next)) {
+          resubmit(next, fullSince);
+        }
+      }, delay, TimeUnit.MILLISECONDS);
+    } catch (RejectedExecutionException e) {
+      if (scheduled.remove(next)) {
+        fail(next, next.number - 1, e);
+      }
+    }
+  }
+
+  //a thread de retry não espera vaga na fila: com a fila cheia a tentativa é reagendada, até offer-timeout
+  private void resubmit(Attempt next, long fullSince) {
+    if (workers.isShutdown()) {
+      fail(next, next.number - 1, new RejectedExecutionException("Email queue shut down before the retry"));
+      return;
+    }
+    //os workers são iniciados no construtor, então a tentativa posta direto na fila é atendida
+    if (workers.getQueue().offer(next)) {
+      if (workers.isShutdown() && workers.remove(next)) {
+        fail(next, next.number - 1, new RejectedExecutionException("Email queue shut down before the retry"));
+      }
+      return;
+    }
+    long now = System.nanoTime();
+    long since = fullSince == 0L ? now : fullSince;
+    if (now - since >= offerTimeout.toNanos()) {
+      rejectedCounter.increment();
+      fail(next, next.number - 1, new RejectedExecutionException("Email queue is full"));
+      return;
+    }
+    scheduleRetry(next, backoff(next.number - 1), since);
+  }
+
+  private long backoff(int attempt) {
+    return initialBackoff.toMillis() << (attempt - 1);
+  }
+
+  //o future termina com o erro do envio mesmo se a gravação da dead letter falhar
+  private void fail(Attempt task, int attempts, Exception error) {
+    try {
+      deadLetter(task.message, attempts, error);
+    } catch (RuntimeException saveError) {
+      log.error("Could not save dead letter for email to {} recipients", recipients(task.message).length, saveError);
+    } finally {
+      task.result.completeExceptionally(error);
+    }
+  }
+
+  private void deadLetter(SimpleMailMessage message, int attempts, Exception error) {
+    log.error("Email to {} recipients moved to dead letter after {} attempts", recipients(message).length, attempts, error);
+    deadLetterCounter.increment();
+    String lastError = String.valueOf(error.getMessage());
+    deadLetterRepository.save(DeadLetterEmail.builder()
+        .recipients(StringUtils.arrayToCommaDelimitedString(recipients(message)))
+        .subject(message.getSubject())
+        .text(message.getText())
+        .attempts(attempts)
+        .lastError(lastError.length() > 1000 ? lastError.substring(0, 1000) : lastError)
+        .failedAt(LocalDateTime.now())
+        .build());
+  }
+
+  private void waitForRoom(Runnable task, ThreadPoolExecutor executor) {
+    try {
+      if (executor.isShutdown() || !executor.getQueue().offer(task, offerTimeout.toMillis(), TimeUnit.MILLISECONDS)) {
+        rejectedCounter.increment();
+        throw new RejectedExecutionException("Email queue is full");
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      rejectedCounter.increment();
+      throw new RejectedExecutionException("Interrupted waiting for the email queue", e);
+    }
+  }
+
+  //os lotes vão em cópia oculta, com o remetente no To; o reenvio precisa dos clientes
+  //uma tentativa de envio; é também o que fica na fila dos workers
+  private final class Attempt implements Runnable {
+
+    private final SimpleMailMessage message;
+    private final int number;
+    private final CompletableFuture<Void> result;
+
+    private Attempt(SimpleMailMessage message, int number, CompletableFuture<Void> result) {
+      this.message = message;
+      this.number = number;
+      this.result = result;
+    }
+
+    @Override
+    public void run() {
+      attempt(this);
+    }
+  }
+
+  private static String[] recipients(SimpleMailMessage message) {
+    if (message.getBcc() != null) {
+      return message.getBcc();
+    }
+    return message.getTo() == null ? new String[0] : message.getTo();
+  }
+
+  private static ThreadFactory threads(String prefix, boolean virtual) {
+    if (virtual) {
+      return Thread.ofVirtual().name(prefix, 1).factory();
+    }
+    AtomicInteger count = new AtomicInteger();
+    return runnable -> {
+      Thread thread = new Thread(runnable, prefix + count.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    };
+  }
+}
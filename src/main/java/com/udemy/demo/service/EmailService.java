@@ -1,11 +1,17 @@
 package com.udemy.demo.service;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import org.springframework.stereotype.Service;
 
 @Service
 public interface EmailService {
 
-  public void sendEmails(String msg, List<String> mailList) ;
+  /**
+   * Coloca o email na fila de envio e retorna em seguida; o future termina quando o
+   * email for entregue ou quando desistir dele depois das novas tentativas. Os destinatários
+   * vão em cópia oculta, então nenhum deles vê o endereço dos outros.
+   */
+  public CompletableFuture<Void> sendEmailsAsync(String msg, List<String> mailList) ;
 
 }
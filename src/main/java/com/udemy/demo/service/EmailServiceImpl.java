@@ -1,28 +1,33 @@
 package com.udemy.demo.service;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import lombok.RequiredArgsConstructor;
-import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.mail.SimpleMailMessage;
-import org.springframework.mail.javamail.JavaMailSender;
 import org.springframework.stereotype.Service;
 
 @Service
 @RequiredArgsConstructor
 public class EmailServiceImpl implements EmailService{
-  @Autowired
-private JavaMailSender javaMailSender;
+  static final String FROM = "library-api-a54154@inbox.mailtrap.io";
+
+  private final EmailDispatcher emailDispatcher;
 
   @Override
-  public void sendEmails(String msg, List<String> mailList) {
+  public CompletableFuture<Void> sendEmailsAsync(String msg, List<String> mailList) {
+    return emailDispatcher.submit(createMessage(msg, mailList));
+  }
+
+  private SimpleMailMessage createMessage(String msg, List<String> mailList) {
     String[] mails = mailList.toArray(new String[mailList.size()]);
     SimpleMailMessage mailMessage=new SimpleMailMessage();
-    mailMessage.setFrom("library-api-a54154@inbox.mailtrap.io");
+    mailMessage.setFrom(FROM);
     mailMessage.setSubject("Livro com empréstimo atrasado");
     mailMessage.setText(msg);
 
-    mailMessage.setTo(mails);
-
-    javaMailSender.send(mailMessage);
+    //o lote vai em cópia oculta: o To é o próprio remetente e o endereço de um cliente não aparece para os outros
+    mailMessage.setTo(FROM);
+    mailMessage.setBcc(mails);
+    return mailMessage;
   }
 }
@@ -0,0 +1,207 @@
+package com.udemy.demo.service;
+
+import com.udemy.demo.api.dto.LateLoanDTO;
+import com.udemy.demo.api.model.entity.DeadLetterEmail;
+import com.udemy.demo.api.model.entity.JobCheckpoint;
+import com.udemy.demo.model.repository.DeadLetterEmailRepository;
+import com.udemy.demo.model.repository.JobCheckpointRepository;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+/**
+ * Envia o aviso de empréstimo atrasado lendo os empréstimos em blocos (por id),
+ * agrupando os destinatários em lotes de tamanho limitado e colocando os lotes na fila
+ * de envio ({@link EmailDispatcher}). O último id de cada bloco só é gravado no
+ * {@link JobCheckpoint} depois que os seus envios terminam, então uma execução interrompida
+ * continua do bloco em que parou no mesmo dia (o bloco interrompido pode ser reenviado). Lotes
+ * que foram para a dead letter não seguram o checkpoint, eles ficam gravados e são reenviados
+ * por {@link #resendDeadLetters()}.
+ *
+ * <p>A execução roda na thread própria do job: {@link #run(String)} retorna na hora e nenhuma thread
+ * fica esperando o smtp, o bloco seguinte é lido quando os envios do anterior terminam.
+ */
+@Service
+@Slf4j
+public class LateLoanNotificationJob {
+
+  static final String NAME = "late-loan-notification";
+
+  private final LoanService loanService;
+  private final EmailService emailService;
+  private final JobCheckpointRepository checkpointRepository;
+  private final DeadLetterEmailRepository deadLetterRepository;
+  private final int chunkSize;
+  private final int batchSize;
+
+  private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+    Thread thread = new Thread(runnable, "late-loan-job");
+    thread.setDaemon(true);
+    return thread;
+  });
+  private final AtomicBoolean running = new AtomicBoolean();
+  private final AtomicBoolean resending = new AtomicBoolean();
+
+  public LateLoanNotificationJob(LoanService loanService, EmailService emailService,
+      JobCheckpointRepository checkpointRepository, DeadLetterEmailRepository deadLetterRepository,
+      @Value("${application.mail.lateloans.chunk-size:1000}") int chunkSize,
+      @Value("${application.mail.lateloans.batch-size:50}") int batchSize) {
+    this.loanService = loanService;
+    this.emailService = emailService;
+    this.checkpointRepository = checkpointRepository;
+    this.deadLetterRepository = deadLetterRepository;
+    this.chunkSize = chunkSize;
+    this.batchSize = batchSize;
+  }
+
+  /**
+   * Inicia a execução do dia e retorna sem esperar os envios. O future termina quando o último
+   * bloco for gravado no checkpoint; se a execução anterior ainda não terminou ele já vem completo.
+   */
+  public CompletableFuture<Void> run(String msg) {
+    if (!running.compareAndSet(false, true)) {
+      log.info("Late loan notification still running, skipping");
+      return CompletableFuture.completedFuture(null);
+    }
+    return CompletableFuture.supplyAsync(() -> start(msg), executor)
+        .thenCompose(Function.identity())
+        .whenComplete((ignored, error) -> {
+          running.set(false);
+          if (error != null) {
+            log.error("Late loan notification failed", error);
+          }
+        });
+  }
+
+  /**
+   * Reenvia os emails do dia que estão na dead letter, em blocos e na thread do job como a execução
+   * diária. Cada email reenviado sai da dead letter; se falhar de novo o dispatcher grava outro, que fica
+   * para o próximo reenvio. Falhas de dias anteriores não são reenviadas, a execução do dia já avisa de
+   * novo quem continua atrasado.
+   */
+  public CompletableFuture<Void> resendDeadLetters() {
+    if (!resending.compareAndSet(false, true)) {
+      log.info("Dead letter resend still running, skipping");
+      return CompletableFuture.completedFuture(null);
+    }
+    return CompletableFuture.supplyAsync(() -> {
+          Long maxId = deadLetterRepository.findMaxId();
+          return maxId == null ? CompletableFuture.<Void>completedFuture(null)
+              : resend(LocalDate.now().atStartOfDay(), 0L, maxId);
+        }, executor)
+        .thenCompose(Function.identity())
+        .whenComplete((ignored, error) -> {
+          resending.set(false);
+          if (error != null) {
+            log.error("Dead letter resend failed", error);
+          }
+        });
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    executor.shutdownNow();
+  }
+
+  private CompletableFuture<Void> start(String msg) {
+    LocalDate today = LocalDate.now();
+    JobCheckpoint checkpoint = checkpointRepository.findById(NAME)
+        .filter(saved -> today.equals(saved.getRunDate()))
+        .orElseGet(() -> JobCheckpoint.builder().name(NAME).runDate(today).lastId(0L).finished(false).build());
+    if (Boolean.TRUE.equals(checkpoint.getFinished())) {
+      log.info("Late loan notification already finished today");
+      return CompletableFuture.completedFuture(null);
+    }
+    if (checkpoint.getLastId() > 0) {
+      log.info("Resuming late loan notification after loan {}", checkpoint.getLastId());
+    }
+    return next(msg, checkpoint);
+  }
+
+  private CompletableFuture<Void> next(String msg, JobCheckpoint checkpoint) {
+    List<LateLoanDTO> chunk = loanService.getLateLoansAfter(checkpoint.getLastId(), chunkSize);
+    if (chunk.isEmpty()) {
+      finish(checkpoint);
+      return CompletableFuture.completedFuture(null);
+    }
+    //o checkpoint e a leitura do próximo bloco voltam para a thread do job, e não para os workers de email
+    return send(msg, chunk).thenComposeAsync(ignored -> {
+      checkpoint.setLastId(chunk.get(chunk.size() - 1).getId());
+      checkpointRepository.save(checkpoint);
+      if (chunk.size() < chunkSize) {
+        finish(checkpoint);
+        return CompletableFuture.completedFuture(null);
+      }
+      return next(msg, checkpoint);
+    }, executor);
+  }
+
+  private void finish(JobCheckpoint checkpoint) {
+    checkpoint.setFinished(true);
+    checkpointRepository.save(checkpoint);
+  }
+
+  private CompletableFuture<Void> resend(LocalDateTime since, Long lastId, Long maxId) {
+    List<DeadLetterEmail> chunk = deadLetterRepository.findToResend(since, lastId, maxId, PageRequest.of(0, chunkSize));
+    if (chunk.isEmpty()) {
+      return CompletableFuture.completedFuture(null);
+    }
+    log.info("Resending {} emails from dead letter", chunk.size());
+    List<CompletableFuture<Void>> sent = new ArrayList<>();
+    for (DeadLetterEmail deadLetter : chunk) {
+      sent.add(submit(deadLetter.getText(), Arrays.asList(deadLetter.getRecipients().split(","))));
+    }
+    //entregue ou gravado de novo na dead letter com id acima de maxId: o registro antigo sai nos dois casos
+    return CompletableFuture.allOf(sent.toArray(new CompletableFuture[0])).thenComposeAsync(ignored -> {
+      deadLetterRepository.deleteAllInBatch(chunk);
+      if (chunk.size() < chunkSize) {
+        return CompletableFuture.completedFuture(null);
+      }
+      return resend(since, chunk.get(chunk.size() - 1).getId(), maxId);
+    }, executor);
+  }
+
+  private CompletableFuture<Void> send(String msg, List<LateLoanDTO> chunk) {
+    List<String> mails = chunk.stream()
+        .map(LateLoanDTO::getEmail)
+        .filter(Objects::nonNull)
+        .distinct()
+        .collect(Collectors.toList());
+
+    //sendEmailsAsync bloqueia quando a fila está cheia, segurando a leitura do próximo bloco; o lote que
+    //continua sem vaga é recusado e vai para a dead letter como os que esgotam as tentativas, sem parar os outros
+    List<CompletableFuture<Void>> sent = new ArrayList<>();
+    for (int start = 0; start < mails.size(); start += batchSize) {
+      sent.add(submit(msg, mails.subList(start, Math.min(start + batchSize, mails.size()))));
+    }
+    return CompletableFuture.allOf(sent.toArray(new CompletableFuture[0]));
+  }
+
+  private CompletableFuture<Void> submit(String msg, List<String> batch) {
+    CompletableFuture<Void> sending;
+    try {
+      sending = emailService.sendEmailsAsync(msg, batch);
+    } catch (RejectedExecutionException e) {
+      sending = CompletableFuture.failedFuture(e);
+    }
+    return sending.exceptionally(error -> {
+      log.error("Late loan batch of {} emails moved to dead letter", batch.size());
+      return null;
+    });
+  }
+}
@@ -0,0 +1,15 @@
+package com.udemy.demo.service;
+
+import com.udemy.demo.api.dto.LoanBatchResultDTO;
+import com.udemy.demo.api.dto.LoanDTO;
+import com.udemy.demo.api.dto.LoanReturnDTO;
+import java.util.List;
+
+public interface LoanBatchService {
+
+  /** empresta os livros dos isbns informados, com um resultado por item na ordem recebida */
+  List<LoanBatchResultDTO> createAll(List<LoanDTO> loans);
+
+  /** devolve (ou reabre) os empréstimos informados, com um resultado por item na ordem recebida */
+  List<LoanBatchResultDTO> returnAll(List<LoanReturnDTO> returns);
+}
@@ -0,0 +1,199 @@
+package com.udemy.demo.service;
+
+import com.udemy.demo.api.dto.LoanBatchResultDTO;
+import com.udemy.demo.api.dto.LoanBatchStatus;
+import com.udemy.demo.api.dto.LoanDTO;
+import com.udemy.demo.api.dto.LoanReturnDTO;
+import com.udemy.demo.api.model.entity.Books;
+import com.udemy.demo.api.model.entity.Loan;
+import com.udemy.demo.exception.BusinessException;
+import com.udemy.demo.model.repository.BooksRepository;
+import com.udemy.demo.model.repository.LoanRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Empréstimos e devoluções em lote para os terminais de autoatendimento.
+ *
+ * <p>Os isbns são resolvidos numa única consulta e os empréstimos ativos são conferidos de uma vez
+ * pelos ids dos livros; os empréstimos válidos são gravados numa transação, num batch jdbc. Se outro
+ * empréstimo do mesmo livro entrar entre a conferência e o insert, a unique uk_loan_active_book
+ * derruba o batch e o lote é regravado item a item, para só o item em conflito falhar. Um item que o banco
+ * recusa por outro motivo também só falha ele, com o status ERROR.
+ */
+@Service
+@Slf4j
+public class LoanBatchServiceImpl implements LoanBatchService {
+
+  private static final String CHANGED = "Loan was changed by another request";
+
+  private final LoanRepository repository;
+  private final BooksRepository booksRepository;
+  private final LoanService loanService;
+  private final TransactionTemplate transactionTemplate;
+  private final Counter conflicts;
+  private final int maxSize;
+
+  public LoanBatchServiceImpl(LoanRepository repository, BooksRepository booksRepository, LoanService loanService,
+      PlatformTransactionManager transactionManager, MeterRegistry registry,
+      @Value("${application.loans.batch.max-size:500}") int maxSize) {
+    this.repository = repository;
+    this.booksRepository = booksRepository;
+    this.loanService = loanService;
+    this.transactionTemplate = new TransactionTemplate(transactionManager);
+    this.conflicts = registry.counter(LoanServiceImpl.CONFLICTS_COUNTER);
+    this.maxSize = maxSize;
+  }
+
+  @Override
+  @CacheEvict(cacheNames = LoanRepository.COUNT_CACHE, allEntries = true)
+  public List<LoanBatchResultDTO> createAll(List<LoanDTO> loans) {
+    checkSize(loans);
+    List<LoanBatchResultDTO> results = new ArrayList<>(loans.size());
+    Set<String> isbns = loans.stream().map(LoanDTO::getIsbn).filter(Objects::nonNull).collect(Collectors.toSet());
+    Map<String, Books> books = isbns.isEmpty() ? Map.of() : booksRepository.findByIsbnIn(isbns).stream()
+        .collect(Collectors.toMap(Books::getIsbn, Function.identity()));
+    Set<Long> loaned = books.isEmpty() ? new HashSet<>() : new HashSet<>(repository.findActiveBookIds(
+        books.values().stream().map(Books::getId).collect(Collectors.toList())));
+
+    List<PendingLoan> pending = new ArrayList<>();
+    for (int i = 0; i < loans.size(); i++) {
+      LoanDTO dto = loans.get(i);
+      LoanBatchResultDTO result = LoanBatchResultDTO.builder().index(i).isbn(dto.getIsbn()).build();
+      results.add(result);
+      Books book = dto.getIsbn() == null || dto.getIsbn().isBlank() ? null : books.get(dto.getIsbn());
+      if (dto.getIsbn() == null || dto.getIsbn().isBlank()) {
+        reject(result, LoanBatchStatus.INVALID, "Isbn is required");
+      } else if (book == null) {
+        reject(result, LoanBatchStatus.NOT_FOUND, "Book not found for passed isbn");
+      } else if (!loaned.add(book.getId())) {
+        //já emprestado, ou pedido duas vezes no mesmo lote
+        conflicts.increment();
+        reject(result, LoanBatchStatus.CONFLICT, "Book has already loaned");
+      } else {
+        pending.add(new PendingLoan(result, Loan.builder().book(book).customer(dto.getCustomer())
+            .customerEmail(dto.getEmail()).loanDate(LocalDate.now()).activeBookId(book.getId()).build()));
+      }
+    }
+    if (pending.isEmpty()) {
+      return results;
+    }
+    try {
+      transactionTemplate.executeWithoutResult(status -> repository.insertAll(
+          pending.stream().map(PendingLoan::loan).collect(Collectors.toList())));
+      pending.forEach(item -> created(item.result(), item.loan()));
+    } catch (DataIntegrityViolationException e) {
+      log.warn("Loan batch of {} items hit a constraint, saving item by item", pending.size());
+      pending.forEach(item -> createOne(item.result(), item.loan()));
+    }
+    return results;
+  }
+
+  private void createOne(LoanBatchResultDTO result, Loan loan) {
+    loan.setId(null);
+    try {
+      created(result, loanService.save(loan));
+    } catch (BusinessException e) {
+      reject(result, LoanBatchStatus.CONFLICT, e.getMessage());
+    } catch (DataIntegrityViolationException e) {
+      //só o empréstimo ativo vira BusinessException no save; o resto fica neste item e não derruba o lote
+      log.warn("Loan batch item {} rejected by the database: {}", result.getIndex(), e.getMostSpecificCause().getMessage());
+      reject(result, LoanBatchStatus.ERROR, "Loan could not be saved");
+    }
+  }
+
+  private static void created(LoanBatchResultDTO result, Loan loan) {
+    result.setId(loan.getId());
+    result.setStatus(LoanBatchStatus.CREATED);
+  }
+
+  //os empréstimos são lidos numa consulta e as alterações vão no flush do fim da transação,
+  //agrupadas pelo hibernate (hibernate.jdbc.batch_size)
+  @Override
+  public List<LoanBatchResultDTO> returnAll(List<LoanReturnDTO> returns) {
+    checkSize(returns);
+    try {
+      return transactionTemplate.execute(status -> applyReturns(returns));
+    } catch (DataIntegrityViolationException | OptimisticLockingFailureException e) {
+      //reabrir um empréstimo cujo livro já foi emprestado de novo, ou empréstimo alterado por outra requisição
+      //depois da leitura: aplica item a item
+      log.warn("Loan return batch of {} items hit a conflict, updating item by item", returns.size());
+      List<LoanBatchResultDTO> results = new ArrayList<>(returns.size());
+      for (int i = 0; i < returns.size(); i++) {
+        List<LoanReturnDTO> item = List.of(returns.get(i));
+        int index = i;
+        LoanBatchResultDTO result;
+        try {
+          result = transactionTemplate.execute(status -> applyReturns(item)).get(0);
+        } catch (DataIntegrityViolationException conflict) {
+          conflicts.increment();
+          result = LoanBatchResultDTO.builder().id(item.get(0).getId()).build();
+          reject(result, LoanBatchStatus.CONFLICT, "Book has already loaned");
+        } catch (OptimisticLockingFailureException conflict) {
+          result = LoanBatchResultDTO.builder().id(item.get(0).getId()).build();
+          reject(result, LoanBatchStatus.CONFLICT, CHANGED);
+        }
+        result.setIndex(index);
+        results.add(result);
+      }
+      return results;
+    }
+  }
+
+  private List<LoanBatchResultDTO> applyReturns(List<LoanReturnDTO> returns) {
+    Set<Long> ids = returns.stream().map(LoanReturnDTO::getId).filter(Objects::nonNull).collect(Collectors.toSet());
+    Map<Long, Loan> loans = ids.isEmpty() ? Map.of() : repository.findAllById(ids).stream()
+        .collect(Collectors.toMap(Loan::getId, Function.identity()));
+    List<LoanBatchResultDTO> results = new ArrayList<>(returns.size());
+    for (int i = 0; i < returns.size(); i++) {
+      LoanReturnDTO dto = returns.get(i);
+      LoanBatchResultDTO result = LoanBatchResultDTO.builder().index(i).id(dto.getId()).build();
+      results.add(result);
+      Loan loan = dto.getId() == null ? null : loans.get(dto.getId());
+      if (dto.getId() == null) {
+        reject(result, LoanBatchStatus.INVALID, "Loan id is required");
+      } else if (loan == null) {
+        reject(result, LoanBatchStatus.NOT_FOUND, "Loan not found");
+      } else if (dto.getVersion() != null && !dto.getVersion().equals(loan.getVersion())) {
+        reject(result, LoanBatchStatus.CONFLICT, CHANGED);
+      } else {
+        loan.setReturned(dto.getReturned());
+        result.setStatus(LoanBatchStatus.UPDATED);
+      }
+    }
+    repository.flush();
+    return results;
+  }
+
+  private void checkSize(List<?> items) {
+    if (items.size() > maxSize) {
+      throw new BusinessException("Batch with more than " + maxSize + " items");
+    }
+  }
+
+  private static void reject(LoanBatchResultDTO result, LoanBatchStatus status, String message) {
+    result.setStatus(status);
+    result.setMessage(message);
+  }
+
+  //empréstimo ainda não gravado e o resultado do item dele
+  private record PendingLoan(LoanBatchResultDTO result, Loan loan) {
+  }
+}
@@ -0,0 +1,26 @@
+package com.udemy.demo.service;
+
+import com.udemy.demo.api.dto.LoanFilterDTO;
+import com.udemy.demo.api.model.entity.LoanBookRow;
+import com.udemy.demo.api.model.entity.LoanRow;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import reactor.core.publisher.Mono;
+
+/** mesmas regras de LoanService sobre o r2dbc, para a api do profile reactive */
+public interface LoanReactiveService {
+
+  Mono<LoanRow> save(LoanRow loan);
+
+  Mono<LoanRow> getById(Long id);
+
+  Mono<LoanRow> update(LoanRow loan);
+
+  /** como LoanService.returnLoan: false se não existe empréstimo com o id, erro se a versão mudou */
+  Mono<Boolean> returnLoan(Long id, Boolean returned, Long version);
+
+  /** empréstimos do isbn ou do cliente, em ordem de id */
+  Mono<Page<LoanBookRow>> find(LoanFilterDTO filterDTO, Pageable pageable);
+
+  Mono<Page<LoanBookRow>> getLoansByBook(Long bookId, Pageable pageable);
+}
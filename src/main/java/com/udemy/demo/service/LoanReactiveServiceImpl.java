@@ -0,0 +1,85 @@
+package com.udemy.demo.service;
+
+import com.udemy.demo.api.dto.LoanFilterDTO;
+import com.udemy.demo.api.model.entity.Loan;
+import com.udemy.demo.api.model.entity.LoanBookRow;
+import com.udemy.demo.api.model.entity.LoanRow;
+import com.udemy.demo.exception.BusinessException;
+import com.udemy.demo.model.repository.LoanReactiveRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+@Service
+@Profile("reactive")
+public class LoanReactiveServiceImpl implements LoanReactiveService {
+
+  private LoanReactiveRepository repository;
+
+  private Counter conflicts;
+
+  public LoanReactiveServiceImpl(LoanReactiveRepository repository, MeterRegistry registry) {
+    this.repository = repository;
+    this.conflicts = registry.counter(LoanServiceImpl.CONFLICTS_COUNTER);
+  }
+
+  //como em LoanServiceImpl.save, o insert já é a verificação do empréstimo ativo por livro
+  @Override
+  public Mono<LoanRow> save(LoanRow loan) {
+    return repository.insert(loan.updateActiveBook())
+        .onErrorMap(LoanReactiveServiceImpl::isActiveLoanViolation, this::conflict);
+  }
+
+  private Throwable conflict(Throwable e) {
+    conflicts.increment();
+    return new BusinessException("Book has already loaned");
+  }
+
+  private static boolean isActiveLoanViolation(Throwable e) {
+    if (!(e instanceof DataIntegrityViolationException violation)) {
+      return false;
+    }
+    String message = violation.getMostSpecificCause().getMessage();
+    return message != null && message.toLowerCase().contains(Loan.ACTIVE_BOOK_CONSTRAINT);
+  }
+
+  @Override
+  public Mono<LoanRow> getById(Long id) {
+    return repository.findById(id);
+  }
+
+  @Override
+  public Mono<LoanRow> update(LoanRow loan) {
+    return repository.update(loan.updateActiveBook());
+  }
+
+  @Override
+  public Mono<Boolean> returnLoan(Long id, Boolean returned, Long version) {
+    return repository.updateReturned(id, returned, version)
+        .onErrorMap(LoanReactiveServiceImpl::isActiveLoanViolation, this::conflict)
+        .flatMap(updated -> updated > 0 || version == null ? Mono.just(updated > 0) : repository.existsById(id)
+            .flatMap(exists -> exists ? Mono.error(new ObjectOptimisticLockingFailureException(Loan.class, id)) : Mono.just(false)));
+  }
+
+  @Override
+  public Mono<Page<LoanBookRow>> find(LoanFilterDTO filterDTO, Pageable pageable) {
+    return repository.findByBookIsbnOrCustomer(filterDTO.getIsbn(), filterDTO.getCustomer(),
+            ReactivePages.limit(pageable), ReactivePages.offset(pageable))
+        .collectList()
+        .flatMap(content -> ReactivePages.page(content, pageable,
+            () -> repository.countByBookIsbnOrCustomer(filterDTO.getIsbn(), filterDTO.getCustomer())));
+  }
+
+  @Override
+  public Mono<Page<LoanBookRow>> getLoansByBook(Long bookId, Pageable pageable) {
+    return repository.findByBook(bookId, ReactivePages.limit(pageable), ReactivePages.offset(pageable))
+        .collectList()
+        .flatMap(content -> ReactivePages.page(content, pageable, () -> repository.countByBook(bookId)));
+  }
+}
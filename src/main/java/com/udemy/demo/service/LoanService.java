@@ -1,13 +1,18 @@
 package com.udemy.demo.service;
 
+import com.udemy.demo.api.dto.LateLoanDTO;
+import com.udemy.demo.api.dto.LoanDTO;
 import com.udemy.demo.api.dto.LoanFilterDTO;
 import com.udemy.demo.api.model.entity.Books;
 import com.udemy.demo.api.model.entity.Loan;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.function.Consumer;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 
 public interface LoanService {
 
@@ -18,9 +23,36 @@ public interface LoanService {
 
   Loan update(Loan loan);
 
+  /**
+   * devolve (ou reabre) o empréstimo num update direto, sem carregar a entidade; com version só altera se o
+   * empréstimo ainda estiver nessa versão. Retorna false se não existe empréstimo com o id
+   */
+  boolean returnLoan(Long id, Boolean returned, Long version);
+
   Page<Loan> find(LoanFilterDTO filterDTO, Pageable pageable);
 
-  Page<Loan> getLoansByBook(Books book, Pageable pageable);
+  /** mesma busca do find, sem calcular o total: só informa se há próxima página */
+  Slice<Loan> findSlice(LoanFilterDTO filterDTO, Pageable pageable);
+
+  Slice<Loan> findAfter(LoanFilterDTO filterDTO, Long lastId, int size);
+
+  /** mesma busca do find lendo só os campos pedidos (LoanFieldsRepository.FIELDS), um mapa por empréstimo */
+  Page<Map<String, Object>> findFields(LoanFilterDTO filterDTO, Pageable pageable, Collection<String> fields);
+
+  Slice<Map<String, Object>> findFieldsSlice(LoanFilterDTO filterDTO, Pageable pageable, Collection<String> fields);
+
+  Page<LoanDTO> getLoansByBook(Books book, Pageable pageable);
+
+  Slice<LoanDTO> getLoansByBookSlice(Books book, Pageable pageable);
+
+  Slice<Loan> getLoansByBookAfter(Books book, Long lastId, int size);
+
+  Page<Map<String, Object>> getLoansByBookFields(Books book, Pageable pageable, Collection<String> fields);
+
+  Slice<Map<String, Object>> getLoansByBookFieldsSlice(Books book, Pageable pageable, Collection<String> fields);
+
+  List<LateLoanDTO> getLateLoansAfter(Long lastId, int limit);
 
-  List<Loan> getAllLateLoans();
+  /** entrega um a um todos os empréstimos do filtro, em ordem de id, sem montar a lista em memória */
+  void export(LoanFilterDTO filterDTO, Consumer<LoanDTO> action);
 }
@@ -1,32 +1,73 @@
 package com.udemy.demo.service;
 
+import com.udemy.demo.api.dto.LateLoanDTO;
+import com.udemy.demo.api.dto.LoanDTO;
 import com.udemy.demo.api.dto.LoanFilterDTO;
 import com.udemy.demo.api.model.entity.Books;
 import com.udemy.demo.api.model.entity.Loan;
 import com.udemy.demo.exception.BusinessException;
 import com.udemy.demo.model.repository.LoanRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
 import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.support.PageableExecutionUtils;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 @Service
 public class LoanServiceImpl implements LoanService {
 
+  private static final int LOAN_DAYS = 4;
+
+  //empréstimos recusados porque o livro já estava emprestado
+  public static final String CONFLICTS_COUNTER = "library.loans.conflicts";
+
   private LoanRepository repository;
 
-  public LoanServiceImpl(LoanRepository repository) {
+  private Counter conflicts;
+
+  public LoanServiceImpl(LoanRepository repository, MeterRegistry registry) {
     this.repository = repository;
+    this.conflicts = registry.counter(CONFLICTS_COUNTER);
   }
 
   @Override
+  @CacheEvict(cacheNames = LoanRepository.COUNT_CACHE, allEntries = true)
   public Loan save(Loan loan) {
-    if(repository.existsByBookAndNotReturned(loan.getBook())){
-      throw new BusinessException("Book has already loaned");
+    //o insert já é a verificação: a constraint de empréstimo ativo por livro barra o segundo empréstimo,
+    //mesmo que duas requisições concorrentes cheguem juntas
+    try {
+      return repository.saveAndFlush(loan);
+    } catch (DataIntegrityViolationException e) {
+      throw translate(e);
     }
-    return repository.save(loan);
+  }
+
+  private RuntimeException translate(DataIntegrityViolationException e) {
+    if (isActiveLoanViolation(e)) {
+      conflicts.increment();
+      return new BusinessException("Book has already loaned");
+    }
+    return e;
+  }
+
+  private static boolean isActiveLoanViolation(DataIntegrityViolationException e) {
+    String message = e.getMostSpecificCause().getMessage();
+    return message != null && message.toLowerCase().contains(Loan.ACTIVE_BOOK_CONSTRAINT);
   }
 
   @Override
@@ -39,20 +80,104 @@ public class LoanServiceImpl implements LoanService {
     return repository.save(loan);
   }
 
+  //o caminho comum é um único update; o existsById só roda quando nenhuma linha foi alterada,
+  //para separar empréstimo inexistente de versão desatualizada
+  @Override
+  @Transactional
+  public boolean returnLoan(Long id, Boolean returned, Long version) {
+    int updated;
+    try {
+      updated = repository.updateReturned(id, returned, version);
+    } catch (DataIntegrityViolationException e) {
+      //reabrir um empréstimo cujo livro já foi emprestado de novo
+      throw translate(e);
+    }
+    if (updated == 0 && version != null && repository.existsById(id)) {
+      throw new ObjectOptimisticLockingFailureException(Loan.class, id);
+    }
+    return updated > 0;
+  }
+
+  //o total vem do count em cache por filtro, e só é consultado quando a página não define o total sozinha
   @Override
   public Page<Loan> find(LoanFilterDTO filterDTO, Pageable pageable) {
+    Slice<Loan> slice = findSlice(filterDTO, pageable);
+    return PageableExecutionUtils.getPage(slice.getContent(), pageable,
+        () -> repository.countByBookIsbnOrCustomer(filterDTO.getIsbn(),filterDTO.getCustomer()));
+  }
+
+  @Override
+  public Slice<Loan> findSlice(LoanFilterDTO filterDTO, Pageable pageable) {
     return repository.findByBookIsbnOrCustomer(filterDTO.getIsbn(),filterDTO.getCustomer(),pageable);
   }
 
   @Override
-  public Page<Loan> getLoansByBook(Books book, Pageable pageable) {
-    return repository.findByBook(book,pageable);
+  public Slice<Loan> findAfter(LoanFilterDTO filterDTO, Long lastId, int size) {
+    return repository.findByBookIsbnOrCustomerAfter(filterDTO.getIsbn(),filterDTO.getCustomer(),lastId,byId(size));
+  }
+
+  @Override
+  public Page<Map<String, Object>> findFields(LoanFilterDTO filterDTO, Pageable pageable, Collection<String> fields) {
+    Slice<Map<String, Object>> slice = findFieldsSlice(filterDTO, pageable, fields);
+    return PageableExecutionUtils.getPage(slice.getContent(), pageable,
+        () -> repository.countByBookIsbnOrCustomer(filterDTO.getIsbn(),filterDTO.getCustomer()));
+  }
+
+  @Override
+  public Slice<Map<String, Object>> findFieldsSlice(LoanFilterDTO filterDTO, Pageable pageable, Collection<String> fields) {
+    return repository.findFieldsByBookIsbnOrCustomer(fields,filterDTO.getIsbn(),filterDTO.getCustomer(),pageable);
   }
 
   @Override
-  public List<Loan> getAllLateLoans() {
-    final Integer loanDays=4;
-    LocalDate threeDaysAgo=LocalDate.now().minusDays(loanDays);
-    return repository.findByLoanDateLessThanAndNotReturned(threeDaysAgo);
+  @Transactional(readOnly = true)
+  public Page<LoanDTO> getLoansByBook(Books book, Pageable pageable) {
+    Slice<LoanDTO> slice = repository.findDtoByBook(book,pageable);
+    return PageableExecutionUtils.getPage(slice.getContent(), pageable, () -> repository.countByBook(book));
+  }
+
+  @Override
+  @Transactional(readOnly = true)
+  public Slice<LoanDTO> getLoansByBookSlice(Books book, Pageable pageable) {
+    return repository.findDtoByBook(book,pageable);
+  }
+
+  @Override
+  @Transactional(readOnly = true)
+  public Page<Map<String, Object>> getLoansByBookFields(Books book, Pageable pageable, Collection<String> fields) {
+    Slice<Map<String, Object>> slice = repository.findFieldsByBook(fields,book.getId(),pageable);
+    return PageableExecutionUtils.getPage(slice.getContent(), pageable, () -> repository.countByBook(book));
+  }
+
+  @Override
+  @Transactional(readOnly = true)
+  public Slice<Map<String, Object>> getLoansByBookFieldsSlice(Books book, Pageable pageable, Collection<String> fields) {
+    return repository.findFieldsByBook(fields,book.getId(),pageable);
+  }
+
+  @Override
+  public Slice<Loan> getLoansByBookAfter(Books book, Long lastId, int size) {
+    return repository.findByBookAndIdGreaterThan(book,lastId,byId(size));
+  }
+
+  private static Pageable byId(int size) {
+    return PageRequest.of(0,size, Sort.by("id"));
+  }
+
+  @Override
+  public List<LateLoanDTO> getLateLoansAfter(Long lastId, int limit) {
+    return repository.findLateLoansAfter(lateLoanDate(),lastId,PageRequest.of(0,limit));
+  }
+
+  //o stream mantém o cursor aberto, então precisa da transação até o fim da leitura
+  @Override
+  @Transactional(readOnly = true)
+  public void export(LoanFilterDTO filterDTO, Consumer<LoanDTO> action) {
+    try (Stream<LoanDTO> loans = repository.streamByBookIsbnOrCustomer(filterDTO.getIsbn(), filterDTO.getCustomer())) {
+      loans.forEach(action);
+    }
+  }
+
+  private static LocalDate lateLoanDate() {
+    return LocalDate.now().minusDays(LOAN_DAYS);
   }
 }
@@ -0,0 +1,34 @@
+package com.udemy.demo.service;
+
+import java.util.List;
+import java.util.function.Supplier;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import reactor.core.publisher.Mono;
+
+//montagem das páginas da variante reativa, com a mesma regra do PageableExecutionUtils:
+//o count só é feito quando a página não define o total sozinha
+final class ReactivePages {
+
+  private ReactivePages() {
+  }
+
+  static <T> Mono<Page<T>> page(List<T> content, Pageable pageable, Supplier<Mono<Long>> count) {
+    if (pageable.isUnpaged() || (pageable.getOffset() == 0 && content.size() < pageable.getPageSize())) {
+      return Mono.just(new PageImpl<>(content, pageable, content.size()));
+    }
+    if (!content.isEmpty() && content.size() < pageable.getPageSize()) {
+      return Mono.just(new PageImpl<>(content, pageable, pageable.getOffset() + content.size()));
+    }
+    return count.get().map(total -> new PageImpl<>(content, pageable, total));
+  }
+
+  static int limit(Pageable pageable) {
+    return pageable.isPaged() ? pageable.getPageSize() : Integer.MAX_VALUE;
+  }
+
+  static long offset(Pageable pageable) {
+    return pageable.isPaged() ? pageable.getOffset() : 0;
+  }
+}
@@ -1,8 +1,5 @@
 package com.udemy.demo.service;
 
-import com.udemy.demo.api.model.entity.Loan;
-import java.util.List;
-import java.util.stream.Collectors;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
@@ -10,28 +7,28 @@ import org.springframework.stereotype.Service;
 @Service
 public class ScheduleService {
   private static final String CRON_LATE_LOAN="0 0 0 1/1 * *";
+  private static final String CRON_DEAD_LETTER="0 30 * * * *";
 
-  private final LoanService loanService;
-
-  private final EmailService emailService;
+  private final LateLoanNotificationJob lateLoanNotificationJob;
 
   @Value("${applcation.mail.lateloans.message")
   private String msg;
 
-  public ScheduleService(LoanService loanService, EmailService emailService) {
-    this.loanService = loanService;
-    this.emailService = emailService;
+  public ScheduleService(LateLoanNotificationJob lateLoanNotificationJob) {
+    this.lateLoanNotificationJob = lateLoanNotificationJob;
   }
 
 
   @Scheduled(cron= CRON_LATE_LOAN)
   public void sendMailToLateLoan(){
-    List<Loan> allLateLoans=loanService.getAllLateLoans();
-    List<String> mailList=allLateLoans.stream()
-                         .map(loan-> loan.getCustomerEmail())
-                          .collect(Collectors.toList());
+    //só inicia o job, os envios seguem fora da thread do agendador
+    lateLoanNotificationJob.run(msg);
+  }
 
-    emailService.sendEmails(msg,mailList);
+  @Scheduled(cron= CRON_DEAD_LETTER)
+  public void resendDeadLetters(){
+    //reenvia a cada hora os emails do dia que foram para a dead letter
+    lateLoanNotificationJob.resendDeadLetters();
   }
 
 }
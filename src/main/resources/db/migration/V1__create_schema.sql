@@ -0,0 +1,45 @@
+-- esquema inicial: o mesmo que o hibernate gerava a partir das entidades
+
+create sequence books_seq start with 1 increment by 50;
+
+create table books (
+  id bigint not null,
+  title varchar(255),
+  author varchar(255),
+  isbn varchar(255),
+  primary key (id)
+);
+
+create unique index uk_books_isbn on books (isbn);
+
+create table loan (
+  id bigint generated by default as identity,
+  customer varchar(255),
+  customer_email varchar(255),
+  id_book bigint,
+  loan_date date,
+  returned boolean,
+  active_book_id bigint,
+  primary key (id),
+  constraint uk_loan_active_book unique (active_book_id),
+  constraint fk_loan_book foreign key (id_book) references books (id)
+);
+
+create table job_checkpoint (
+  name varchar(255) not null,
+  run_date date,
+  last_id bigint,
+  finished boolean,
+  primary key (name)
+);
+
+create table dead_letter_email (
+  id bigint generated by default as identity,
+  recipients clob,
+  subject varchar(255),
+  text clob,
+  attempts integer,
+  last_error varchar(1000),
+  failed_at timestamp,
+  primary key (id)
+);
@@ -0,0 +1,12 @@
+-- um índice por consulta do LoanRepository; as colunas filtradas vêm antes e o id no fim
+-- deixa a página ordenada por id ser lida direto do índice
+
+-- existsByBookAndNotReturned e as listagens por livro (findByBook, findDtoByBook, cursor)
+create index ix_loan_book_returned on loan (id_book, returned, id);
+
+-- empréstimos atrasados: findByLoanDateLessThanAndNotReturned e findLateLoansAfter
+create index ix_loan_date_returned on loan (loan_date, returned, id);
+
+-- busca por customer (findByBookIsbnOrCustomer e a exportação); o lado do isbn usa o uk_books_isbn,
+-- mas o OR entre as duas tabelas não é resolvido por um índice só
+create index ix_loan_customer on loan (customer, id);
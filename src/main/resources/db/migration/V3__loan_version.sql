@@ -0,0 +1,3 @@
+-- versão do empréstimo para o controle otimista (Loan.version): toda alteração incrementa, e a devolução
+-- com versão só altera a linha se ela ainda estiver na versão que o cliente leu
+alter table loan add column version bigint default 0 not null;
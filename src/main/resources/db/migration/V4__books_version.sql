@@ -0,0 +1,3 @@
+-- versão do livro para o controle otimista (Books.version), que também é o ETag de GET /api/books/{id}:
+-- o PUT só altera o livro na versão do If-Match
+alter table books add column version bigint default 0 not null;
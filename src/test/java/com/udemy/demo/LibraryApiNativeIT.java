@@ -0,0 +1,147 @@
+package com.udemy.demo;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.File;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Teste de fumaça do executável nativo: sobe o binário com o H2 em memória, cadastra um livro, empresta,
+ * lista livros e empréstimos e devolve. Imprime o tempo do lançamento até a primeira resposta e a memória
+ * residente do processo, para comparar com a JVM.
+ *
+ * <p>Roda no integration-test do profile native. O comando vem de smoke.command, então o mesmo roteiro
+ * roda contra o jar:
+ *
+ * <pre>
+ * ./mvnw -DskipTests package failsafe:integration-test failsafe:verify -Dit.test=LibraryApiNativeIT \
+ *     -Dsmoke.command="java -jar target/demo-0.0.1-SNAPSHOT.jar"
+ * </pre>
+ */
+public class LibraryApiNativeIT {
+
+  private static final Duration STARTUP_TIMEOUT = Duration.ofSeconds(120);
+
+  static final ObjectMapper json = new ObjectMapper();
+
+  static HttpClient client;
+  static Process process;
+  static String baseUrl;
+
+  @BeforeAll
+  public static void start() throws Exception {
+    int port;
+    try (ServerSocket socket = new ServerSocket(0)) {
+      port = socket.getLocalPort();
+    }
+    baseUrl = "http://localhost:" + port;
+    client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(5)).build();
+
+    //as propriedades vão logo depois do executável, o que serve tanto para o binário quanto para o java
+    List<String> command = new ArrayList<>(Arrays.asList(System.getProperty("smoke.command", "target/library-api").split("\\s+")));
+    command.addAll(1, List.of("-Dserver.port=" + port, "-Dlogging.file.name=", "-Dspring.boot.admin.client.enabled=false"));
+
+    File log = new File(System.getProperty("smoke.log", "target/native-smoke.log"));
+    long launchedAt = System.nanoTime();
+    process = new ProcessBuilder(command).redirectErrorStream(true).redirectOutput(log).start();
+
+    long deadline = launchedAt + STARTUP_TIMEOUT.toNanos();
+    while (!isUp()) {
+      assertThat(process.isAlive()).as("processo encerrou na subida, veja " + log).isTrue();
+      assertThat(System.nanoTime()).as("aplicação não respondeu em " + STARTUP_TIMEOUT).isLessThan(deadline);
+      Thread.sleep(20);
+    }
+    System.out.printf("%s: primeira resposta em %d ms, rss %s%n", command.get(0),
+        (System.nanoTime() - launchedAt) / 1_000_000, rss().orElse("?"));
+  }
+
+  @AfterAll
+  public static void stop() throws Exception {
+    if (process != null) {
+      process.destroy();
+      process.waitFor();
+    }
+  }
+
+  private static boolean isUp() {
+    try {
+      return get("/api/books?page=0&size=1").statusCode() == 200;
+    } catch (Exception e) {
+      return false;
+    }
+  }
+
+  //VmRSS do /proc, só no linux
+  private static Optional<String> rss() throws Exception {
+    Path status = Path.of("/proc", String.valueOf(process.pid()), "status");
+    if (!Files.exists(status)) {
+      return Optional.empty();
+    }
+    return Files.readAllLines(status).stream().filter(line -> line.startsWith("VmRSS:"))
+        .map(line -> line.substring("VmRSS:".length()).trim()).findFirst();
+  }
+
+  @Test
+  @DisplayName("Deve cadastrar, emprestar, listar e devolver pelo executável")
+  public void booksAndLoansTest() throws Exception {
+    String isbn = "native-" + System.nanoTime();
+
+    HttpResponse<String> created = send("POST", "/api/books",
+        "{\"title\":\"Aventuras\",\"author\":\"Autor\",\"isbn\":\"" + isbn + "\"}");
+    assertThat(created.statusCode()).isEqualTo(201);
+    long bookId = json.readTree(created.body()).get("id").asLong();
+
+    HttpResponse<String> book = get("/api/books/" + bookId);
+    assertThat(book.statusCode()).isEqualTo(200);
+    assertThat(book.headers().firstValue("ETag")).hasValue("\"0\"");
+
+    HttpResponse<String> books = get("/api/books?isbn=" + isbn + "&page=0&size=10");
+    assertThat(books.statusCode()).isEqualTo(200);
+    assertThat(json.readTree(books.body()).get("content").get(0).get("isbn").asText()).isEqualTo(isbn);
+
+    HttpResponse<String> loan = send("POST", "/api/loans",
+        "{\"isbn\":\"" + isbn + "\",\"customer\":\"Fulano\",\"email\":\"fulano@email.com\"}");
+    assertThat(loan.statusCode()).isEqualTo(201);
+    long loanId = Long.parseLong(loan.body());
+
+    HttpResponse<String> loans = get("/api/loans?isbn=" + isbn + "&customer=Fulano&page=0&size=10");
+    assertThat(loans.statusCode()).isEqualTo(200);
+    JsonNode content = json.readTree(loans.body()).get("content");
+    assertThat(content.get(0).get("id").asLong()).isEqualTo(loanId);
+    assertThat(content.get(0).get("book").get("isbn").asText()).isEqualTo(isbn);
+
+    assertThat(send("PATCH", "/api/loans/" + loanId, "{\"returned\":true}").statusCode()).isEqualTo(200);
+    assertThat(send("POST", "/api/loans",
+        "{\"isbn\":\"" + isbn + "\",\"customer\":\"Ciclano\",\"email\":\"ciclano@email.com\"}").statusCode()).isEqualTo(201);
+  }
+
+  private static HttpResponse<String> get(String path) throws Exception {
+    return client.send(HttpRequest.newBuilder(URI.create(baseUrl + path)).GET().build(),
+        HttpResponse.BodyHandlers.ofString());
+  }
+
+  private static HttpResponse<String> send(String method, String path, String body) throws Exception {
+    HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + path))
+        .header("Content-Type", "application/json")
+        .method(method, HttpRequest.BodyPublishers.ofString(body))
+        .build();
+    return client.send(request, HttpResponse.BodyHandlers.ofString());
+  }
+}
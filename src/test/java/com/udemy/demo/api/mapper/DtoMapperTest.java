@@ -0,0 +1,68 @@
+package com.udemy.demo.api.mapper;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.udemy.demo.api.dto.BookDTO;
+import com.udemy.demo.api.dto.LoanDTO;
+import com.udemy.demo.api.model.entity.Books;
+import com.udemy.demo.api.model.entity.Loan;
+import java.time.LocalDate;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.modelmapper.ModelMapper;
+
+public class DtoMapperTest {
+
+  DtoMapper mapper = new DtoMapper();
+
+  //o ModelMapper era usado antes nos controllers, o resultado deve continuar o mesmo
+  ModelMapper modelMapper = new ModelMapper();
+
+  @Test
+  @DisplayName("Deve converter o dto em livro")
+  public void bookDtoToEntityTest() {
+    BookDTO dto = BookDTO.builder().id(1l).title("Clean Code").author("Joao").isbn("123").build();
+
+    Books book = mapper.toEntity(dto);
+
+    assertThat(book).isEqualTo(modelMapper.map(dto, Books.class));
+  }
+
+  @Test
+  @DisplayName("Deve converter o livro em dto")
+  public void bookToDtoTest() {
+    Books book = createNewBook();
+
+    BookDTO dto = mapper.toDto(book);
+
+    assertThat(dto).isEqualTo(modelMapper.map(book, BookDTO.class));
+  }
+
+  @Test
+  @DisplayName("Deve converter o emprestimo em dto com o livro")
+  public void loanToDtoTest() {
+    Loan loan = Loan.builder().id(2l).book(createNewBook()).customer("Fulano")
+        .customerEmail("fulano@email.com").loanDate(LocalDate.now()).build();
+
+    LoanDTO dto = mapper.toDto(loan);
+
+    LoanDTO expected = modelMapper.map(loan, LoanDTO.class);
+    expected.setBook(modelMapper.map(loan.getBook(), BookDTO.class));
+    //o ModelMapper deixava o isbn nulo por ambiguidade, agora vem do livro
+    assertThat(expected.getIsbn()).isNull();
+    expected.setIsbn(loan.getBook().getIsbn());
+    assertThat(dto).isEqualTo(expected);
+  }
+
+  @Test
+  @DisplayName("Deve retornar nulo para entrada nula")
+  public void nullTest() {
+    assertThat(mapper.toEntity(null)).isNull();
+    assertThat(mapper.toDto((Books) null)).isNull();
+    assertThat(mapper.toDto((Loan) null)).isNull();
+  }
+
+  private Books createNewBook() {
+    return Books.builder().id(1l).isbn("123").author("Joao").title("Clean Code").build();
+  }
+}
@@ -0,0 +1,247 @@
+package com.udemy.demo.api.resource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.udemy.demo.api.dto.BookDTO;
+import com.udemy.demo.api.dto.PageDTO;
+import com.udemy.demo.api.model.entity.BookRow;
+import com.udemy.demo.api.model.entity.Books;
+import com.udemy.demo.api.model.entity.LoanBookRow;
+import com.udemy.demo.exception.BusinessException;
+import com.udemy.demo.service.BookReactiveService;
+import com.udemy.demo.service.LoanReactiveService;
+import java.util.Arrays;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.BDDMockito;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.WebFluxTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Mono;
+
+@ExtendWith(SpringExtension.class)
+@ActiveProfiles({"test", "reactive"})
+@WebFluxTest(controllers = BookReactiveController.class)
+public class BookReactiveControllerTest {
+  static String BOOK_API="/api/books";
+
+  @Autowired
+  WebTestClient client;
+
+  @MockBean
+  BookReactiveService service;
+
+  @MockBean
+  LoanReactiveService loanService;
+
+  private BookDTO createNewBook() {
+    return BookDTO.builder().author("Artur").title("As aventuras do rei").isbn("001").build();
+  }
+
+  @Test
+  @DisplayName("Criar um livro com sucesso")
+  public void createBookTest() {
+    BookRow savedBook= BookRow.builder().id(10l).author("Artur").title("As aventuras do rei").isbn("001").build();
+    BDDMockito.given(service.save(Mockito.any(BookRow.class))).willReturn(Mono.just(savedBook));
+
+    client.post().uri(BOOK_API)
+        .contentType(MediaType.APPLICATION_JSON)
+        .bodyValue(createNewBook())
+        .exchange()
+        .expectStatus().isCreated()
+        .expectBody()
+        .jsonPath("id").isEqualTo(10)
+        .jsonPath("title").isEqualTo("As aventuras do rei")
+        .jsonPath("isbn").isEqualTo("001");
+  }
+
+  @Test
+  @DisplayName("Deve lançar erro de validação quando não houve dados suficiente para criação do livro")
+  public void createInvalidBookTest() {
+    client.post().uri(BOOK_API)
+        .contentType(MediaType.APPLICATION_JSON)
+        .bodyValue(new BookDTO())
+        .exchange()
+        .expectStatus().isBadRequest()
+        .expectBody()
+        .jsonPath("errors.length()").isEqualTo(3);
+  }
+
+  @Test
+  @DisplayName("Lançar erro ao cadastrar livro com isbn duplicado")
+  public void createBookWithDuplicatedIsbn() {
+    BDDMockito.given(service.save(Mockito.any(BookRow.class)))
+        .willReturn(Mono.error(new BusinessException("Isbn Já Cadastrado")));
+
+    client.post().uri(BOOK_API)
+        .contentType(MediaType.APPLICATION_JSON)
+        .bodyValue(createNewBook())
+        .exchange()
+        .expectStatus().isBadRequest()
+        .expectBody()
+        .jsonPath("errors[0]").isEqualTo("Isbn Já Cadastrado");
+  }
+
+  @Test
+  @DisplayName("Deve retornar resource not found quando o livro procurado não existir")
+  public void bookNotFoundTest() {
+    BDDMockito.given(service.getById(Mockito.anyLong())).willReturn(Mono.empty());
+
+    client.get().uri(BOOK_API + "/1")
+        .exchange()
+        .expectStatus().isNotFound();
+  }
+
+  @Test
+  @DisplayName("Deve deletar um livro")
+  public void deleteBookTest() {
+    BookRow book = BookRow.builder().id(11l).build();
+    BDDMockito.given(service.getById(11l)).willReturn(Mono.just(book));
+    BDDMockito.given(service.delete(book)).willReturn(Mono.empty());
+
+    client.delete().uri(BOOK_API + "/11")
+        .exchange()
+        .expectStatus().isNoContent();
+
+    Mockito.verify(service).delete(book);
+  }
+
+  @Test
+  @DisplayName("Deve atualizar um livro")
+  public void updateBookTest() {
+    BookRow book = BookRow.builder().id(1l).title("some title").author("some author").isbn("321").version(4l).build();
+    BDDMockito.given(service.getById(1l)).willReturn(Mono.just(book));
+    BDDMockito.given(service.update(book)).willReturn(Mono.just(book));
+
+    client.put().uri(BOOK_API + "/1")
+        .header(HttpHeaders.IF_MATCH, "\"4\"")
+        .bodyValue(createNewBook())
+        .exchange()
+        .expectStatus().isOk()
+        .expectBody()
+        .jsonPath("title").isEqualTo("As aventuras do rei")
+        .jsonPath("author").isEqualTo("Artur")
+        .jsonPath("isbn").isEqualTo("321");
+  }
+
+  @Test
+  @DisplayName("Deve lançar erro de validação ao atualizar um livro sem os dados obrigatórios")
+  public void updateInvalidBookTest() {
+    client.put().uri(BOOK_API + "/1")
+        .header(HttpHeaders.IF_MATCH, "\"4\"")
+        .contentType(MediaType.APPLICATION_JSON)
+        .bodyValue(new BookDTO())
+        .exchange()
+        .expectStatus().isBadRequest()
+        .expectBody()
+        .jsonPath("errors.length()").isEqualTo(3);
+
+    Mockito.verify(service, Mockito.never()).update(Mockito.any(BookRow.class));
+  }
+
+  @Test
+  @DisplayName("Deve retornar 412 quando o If-Match não for a versão atual do livro")
+  public void updateBookStaleIfMatchTest() {
+    BookRow book = BookRow.builder().id(1l).title("some title").author("some author").isbn("321").version(4l).build();
+    BDDMockito.given(service.getById(1l)).willReturn(Mono.just(book));
+
+    client.put().uri(BOOK_API + "/1")
+        .header(HttpHeaders.IF_MATCH, "\"3\"")
+        .bodyValue(createNewBook())
+        .exchange()
+        .expectStatus().isEqualTo(HttpStatus.PRECONDITION_FAILED);
+
+    client.put().uri(BOOK_API + "/1")
+        .bodyValue(createNewBook())
+        .exchange()
+        .expectStatus().isEqualTo(HttpStatus.PRECONDITION_REQUIRED);
+
+    Mockito.verify(service, Mockito.never()).update(Mockito.any(BookRow.class));
+  }
+
+  @Test
+  @DisplayName("Deve retornar 304 quando o ETag do If-None-Match for o atual")
+  public void getBookNotModifiedTest() {
+    BDDMockito.given(service.getById(1l)).willReturn(Mono.just(BookRow.builder().id(1l).isbn("321").version(4l).build()));
+
+    client.get().uri(BOOK_API + "/1")
+        .exchange()
+        .expectHeader().valueEquals(HttpHeaders.ETAG, "\"4\"");
+
+    client.get().uri(BOOK_API + "/1")
+        .header(HttpHeaders.IF_NONE_MATCH, "\"4\"")
+        .exchange()
+        .expectStatus().isNotModified()
+        .expectBody().isEmpty();
+  }
+
+  @Test
+  @DisplayName("Deve filtrar livros com a página pedida")
+  public void findBooksTest() {
+    BookRow book = BookRow.builder().id(1l).author("Artur").title("As aventuras do rei").isbn("001").build();
+    BDDMockito.given(service.find(Mockito.any(Books.class), Mockito.any(Pageable.class)))
+        .willReturn(Mono.just(new PageImpl<>(Arrays.asList(book), PageRequest.of(0, 100), 1)));
+
+    client.get().uri(BOOK_API + "?title=aventuras&page=0&size=100")
+        .exchange()
+        .expectStatus().isOk()
+        .expectBody()
+        .jsonPath("content.length()").isEqualTo(1)
+        .jsonPath("totalElements").isEqualTo(1)
+        .jsonPath("size").isEqualTo(100)
+        .jsonPath("number").isEqualTo(0)
+        .jsonPath("pageable").doesNotExist();
+  }
+
+  @Test
+  @DisplayName("Deve filtrar livros respondendo a página em cbor quando o Accept pedir")
+  public void findBooksCborTest() throws Exception {
+    BookRow book = BookRow.builder().id(1l).author("Artur").title("As aventuras do rei").isbn("001").build();
+    BDDMockito.given(service.find(Mockito.any(Books.class), Mockito.any(Pageable.class)))
+        .willReturn(Mono.just(new PageImpl<>(Arrays.asList(book), PageRequest.of(0, 100), 1)));
+
+    byte[] body = client.get().uri(BOOK_API + "?page=0&size=100")
+        .accept(MediaType.APPLICATION_CBOR)
+        .exchange()
+        .expectStatus().isOk()
+        .expectHeader().contentType(MediaType.APPLICATION_CBOR)
+        .expectBody().returnResult().getResponseBody();
+
+    PageDTO<BookDTO> page = new ObjectMapper(new CBORFactory()).readValue(body, new TypeReference<PageDTO<BookDTO>>(){});
+    assertThat(page.getTotalElements()).isEqualTo(1);
+    assertThat(page.getContent()).containsExactly(new BookDTO(1l, "As aventuras do rei", "Artur", "001"));
+  }
+
+  @Test
+  @DisplayName("Deve listar os empréstimos de um livro")
+  public void loansByBookTest() {
+    BookRow book = BookRow.builder().id(1l).isbn("001").build();
+    LoanBookRow loan = new LoanBookRow(2l, "001", "Fulano", "fulano@email.com", 1l, "As aventuras do rei", "Artur");
+    BDDMockito.given(service.getById(1l)).willReturn(Mono.just(book));
+    BDDMockito.given(loanService.getLoansByBook(Mockito.eq(1l), Mockito.any(Pageable.class)))
+        .willReturn(Mono.just(new PageImpl<>(Arrays.asList(loan), PageRequest.of(0, 10), 1)));
+
+    client.get().uri(BOOK_API + "/1/loans?page=0&size=10")
+        .exchange()
+        .expectStatus().isOk()
+        .expectBody()
+        .jsonPath("content[0].id").isEqualTo(2)
+        .jsonPath("content[0].email").isEqualTo("fulano@email.com")
+        .jsonPath("content[0].book.title").isEqualTo("As aventuras do rei")
+        .jsonPath("totalElements").isEqualTo(1);
+  }
+}
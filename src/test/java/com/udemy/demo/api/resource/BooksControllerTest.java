@@ -1,22 +1,38 @@
 package com.udemy.demo.api.resource;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.hamcrest.Matchers.hasSize;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
 import com.udemy.demo.api.dto.BookDTO;
+import com.udemy.demo.api.dto.BookImportReportDTO;
 import com.udemy.demo.api.model.entity.Books;
 import com.udemy.demo.exception.BusinessException;
+import com.udemy.demo.service.BookImportRow;
+import com.udemy.demo.service.BookImportService;
 import com.udemy.demo.service.BookService;
 
 import com.udemy.demo.service.LoanService;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.Consumer;
 import org.hamcrest.Matchers;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.BDDMockito;
 import org.mockito.Mock;
 import org.mockito.Mockito;
@@ -27,10 +43,14 @@ import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 
@@ -50,6 +70,9 @@ public class BooksControllerTest {
   @MockBean //indica que vai injetar um mock lá no bookcontroller, pois depende disso la
   LoanService loanService;
 
+  @MockBean
+  BookImportService importService;
+
   @Test
   @DisplayName("Criar um livro com sucesso")
   public void createBookTest() throws Exception{
@@ -77,6 +100,10 @@ public class BooksControllerTest {
 
   }
 
+  private String json(String title) throws Exception {
+    return new ObjectMapper().writeValueAsString(BookDTO.builder().author("eu").title(title).isbn("12345").build());
+  }
+
   private BookDTO createNewBook() {
     BookDTO dto= BookDTO.builder().
                  author("Artur").title("As aventuras do rei").isbn("001").build();
@@ -128,7 +155,7 @@ public class BooksControllerTest {
     //cenário (diven)
     Long id=1l;
     Books book=Books.builder().id(id).title(createNewBook().getTitle()).author(
-        createNewBook().getAuthor()).isbn(createNewBook().getIsbn()).build();
+        createNewBook().getAuthor()).isbn(createNewBook().getIsbn()).version(3l).build();
     BDDMockito.given(service.getById(id)).willReturn(Optional.of(book));
 
     //execução
@@ -140,6 +167,7 @@ public class BooksControllerTest {
     mvc
          .perform(request)
         .andExpect(status().isOk())
+        .andExpect(header().string(HttpHeaders.ETAG,"\"3\""))
         .andExpect(jsonPath("id").value(id))
         .andExpect(jsonPath("title").value(createNewBook().getTitle()))
         .andExpect(jsonPath("author").value(createNewBook().getAuthor()))
@@ -148,6 +176,73 @@ public class BooksControllerTest {
   }
 
 
+  @Test
+  @DisplayName("Deve buscar um livro em cbor quando o Accept pedir")
+  public void getBookCborTest() throws Exception {
+    Books book=Books.builder().id(1l).title(createNewBook().getTitle()).author(
+        createNewBook().getAuthor()).isbn(createNewBook().getIsbn()).version(3l).build();
+    BDDMockito.given(service.getById(1l)).willReturn(Optional.of(book));
+
+    MvcResult result=mvc
+        .perform(MockMvcRequestBuilders.get(BOOK_API.concat("/1")).accept(MediaType.APPLICATION_CBOR))
+        .andExpect(status().isOk())
+        .andExpect(content().contentType(MediaType.APPLICATION_CBOR))
+        .andExpect(header().string(HttpHeaders.ETAG,"\"3\""))
+        .andReturn();
+
+    BookDTO dto=new ObjectMapper(new CBORFactory()).readValue(result.getResponse().getContentAsByteArray(), BookDTO.class);
+    assertThat(dto).isEqualTo(new BookDTO(1l,createNewBook().getTitle(),createNewBook().getAuthor(),createNewBook().getIsbn()));
+  }
+
+  @Test
+  @DisplayName("Deve responder em json quando o Accept aceitar qualquer formato")
+  public void getBookDefaultJsonTest() throws Exception {
+    Books book=Books.builder().id(1l).title(createNewBook().getTitle()).author(
+        createNewBook().getAuthor()).isbn(createNewBook().getIsbn()).version(0l).build();
+    BDDMockito.given(service.getById(1l)).willReturn(Optional.of(book));
+
+    mvc
+        .perform(MockMvcRequestBuilders.get(BOOK_API.concat("/1")).accept(MediaType.ALL))
+        .andExpect(status().isOk())
+        .andExpect(content().contentType(MediaType.APPLICATION_JSON))
+        .andExpect(jsonPath("isbn").value(createNewBook().getIsbn()));
+  }
+
+  @Test
+  @DisplayName("Deve criar um livro enviado e respondido em smile")
+  public void createBookSmileTest() throws Exception {
+    MediaType smile=MediaType.parseMediaType("application/x-jackson-smile");
+    ObjectMapper smileMapper=new ObjectMapper(new SmileFactory());
+    Books savedBook=Books.builder().id(10l).author("Artur").title("As aventuras do rei").isbn("001").build();
+    BDDMockito.given(service.save(Mockito.any(Books.class))).willReturn(savedBook);
+
+    MvcResult result=mvc
+        .perform(MockMvcRequestBuilders.post(BOOK_API)
+            .contentType(smile)
+            .accept(smile)
+            .content(smileMapper.writeValueAsBytes(createNewBook())))
+        .andExpect(status().isCreated())
+        .andExpect(content().contentType(smile))
+        .andReturn();
+
+    BookDTO dto=smileMapper.readValue(result.getResponse().getContentAsByteArray(), BookDTO.class);
+    assertThat(dto.getId()).isEqualTo(10l);
+    assertThat(dto.getIsbn()).isEqualTo("001");
+  }
+
+  @Test
+  @DisplayName("Deve retornar 304 sem corpo quando o ETag do If-None-Match for o atual")
+  public void getBookNotModifiedTest() throws Exception {
+    Books book=Books.builder().id(1l).title("Meu Livro").author("Autor").isbn("123456").version(3l).build();
+    BDDMockito.given(service.getById(1l)).willReturn(Optional.of(book));
+
+    mvc
+        .perform(MockMvcRequestBuilders.get(BOOK_API.concat("/1")).header(HttpHeaders.IF_NONE_MATCH,"\"3\""))
+        .andExpect(status().isNotModified())
+        .andExpect(content().string(""))
+    ;
+  }
+
   @Test
   @DisplayName("Deve retornar not found quando o livro procurado não existir")
   public void getBookNotFoundTest() throws Exception {
@@ -208,16 +303,17 @@ public class BooksControllerTest {
     //cenário (given)
     Long id=1l;
 
-    Books updatingBook=Books.builder().id(id).title("some title").isbn("12345").author("eu").build();
-    Books updatedBook=Books.builder().id(id).title(createNewBook().getTitle()).isbn(createNewBook().getIsbn()).author(createNewBook().getAuthor()).build();
+    Books updatingBook=Books.builder().id(id).title("some title").isbn("12345").author("eu").version(1l).build();
+    Books updatedBook=Books.builder().id(id).title(createNewBook().getTitle()).isbn(createNewBook().getIsbn()).author(createNewBook().getAuthor()).version(2l).build();
     BDDMockito.given(service.getById(id)).willReturn(Optional.of(updatingBook));
-    BDDMockito.given(service.update(updatingBook)).willReturn(updatedBook);
+    BDDMockito.given(service.update(Mockito.any(Books.class))).willReturn(updatedBook);
 
 
     String json=new ObjectMapper().writeValueAsString(createNewBook());
 
     MockHttpServletRequestBuilder request=MockMvcRequestBuilders
         .put(BOOK_API.concat("/"+id))
+        .header(HttpHeaders.IF_MATCH,"\"1\"")
         .contentType(MediaType.APPLICATION_JSON)
         .accept(MediaType.APPLICATION_JSON)
         .content(json);
@@ -225,11 +321,32 @@ public class BooksControllerTest {
     mvc
         .perform(request)
         .andExpect(status().isOk())
+        .andExpect(header().string(HttpHeaders.ETAG,"\"2\""))
         .andExpect(jsonPath("id").value(id))
         .andExpect(jsonPath("title").value(createNewBook().getTitle()))
         .andExpect(jsonPath("author").value(createNewBook().getAuthor()))
         .andExpect(jsonPath("isbn").value(createNewBook().getIsbn()))
     ;
+
+    //título e autor vêm do corpo; o isbn e a versão continuam os do livro lido
+    ArgumentCaptor<Books> changed=ArgumentCaptor.forClass(Books.class);
+    Mockito.verify(service).update(changed.capture());
+    assertThat(changed.getValue().getTitle()).isEqualTo(createNewBook().getTitle());
+    assertThat(changed.getValue().getAuthor()).isEqualTo(createNewBook().getAuthor());
+    assertThat(changed.getValue().getIsbn()).isEqualTo("12345");
+    assertThat(changed.getValue().getVersion()).isEqualTo(1l);
+  }
+
+  @Test
+  @DisplayName("Deve lançar erro de validação ao atualizar um livro sem os dados obrigatórios")
+  public void updateInvalidBook() throws Exception {
+    mvc
+        .perform(MockMvcRequestBuilders.put(BOOK_API.concat("/1")).header(HttpHeaders.IF_MATCH,"\"1\"")
+            .contentType(MediaType.APPLICATION_JSON).content(new ObjectMapper().writeValueAsString(new BookDTO())))
+        .andExpect(status().isBadRequest())
+        .andExpect(jsonPath("errors", hasSize(3)));
+
+    Mockito.verify(service,Mockito.never()).update(Mockito.any(Books.class));
   }
 
 
@@ -243,6 +360,7 @@ public class BooksControllerTest {
 
     MockHttpServletRequestBuilder request=MockMvcRequestBuilders
         .put(BOOK_API.concat("/"+1))
+        .header(HttpHeaders.IF_MATCH,"\"1\"")
         .contentType(MediaType.APPLICATION_JSON)
         .accept(MediaType.APPLICATION_JSON)
         .content(json);
@@ -252,6 +370,48 @@ public class BooksControllerTest {
         .andExpect(status().isNotFound());
   }
 
+  @Test
+  @DisplayName("Deve exigir If-Match para atualizar um livro")
+  public void updateBookWithoutIfMatch() throws Exception {
+    mvc
+        .perform(MockMvcRequestBuilders.put(BOOK_API.concat("/1")).contentType(MediaType.APPLICATION_JSON).content(json("Outro")))
+        .andExpect(status().isPreconditionRequired())
+        .andExpect(jsonPath("errors[0]").value("If-Match header is required"));
+
+    Mockito.verify(service,Mockito.never()).update(Mockito.any(Books.class));
+  }
+
+  @Test
+  @DisplayName("Deve retornar 412 quando o If-Match não for a versão atual do livro")
+  public void updateBookStaleIfMatch() throws Exception {
+    Books book=Books.builder().id(1l).title("some title").isbn("12345").author("eu").version(2l).build();
+    BDDMockito.given(service.getById(1l)).willReturn(Optional.of(book));
+
+    mvc
+        .perform(MockMvcRequestBuilders.put(BOOK_API.concat("/1")).header(HttpHeaders.IF_MATCH,"\"1\"").contentType(MediaType.APPLICATION_JSON).content(json("Outro")))
+        .andExpect(status().isPreconditionFailed())
+        .andExpect(jsonPath("errors[0]").value("Book was changed by another request"));
+
+    Mockito.verify(service,Mockito.never()).update(Mockito.any(Books.class));
+    assertThat(book.getTitle()).isEqualTo("some title");
+  }
+
+  @Test
+  @DisplayName("Deve retornar 412 quando outra requisição alterar o livro entre a leitura e o update")
+  public void updateBookConcurrentChange() throws Exception {
+    Books book=Books.builder().id(1l).title("some title").isbn("12345").author("eu").version(1l).build();
+    BDDMockito.given(service.getById(1l)).willReturn(Optional.of(book));
+    BDDMockito.given(service.update(Mockito.any(Books.class)))
+        .willThrow(new ObjectOptimisticLockingFailureException(Books.class,1l));
+
+    mvc
+        .perform(MockMvcRequestBuilders.put(BOOK_API.concat("/1")).header(HttpHeaders.IF_MATCH,"\"1\"").contentType(MediaType.APPLICATION_JSON).content(json("Outro")))
+        .andExpect(status().isPreconditionFailed());
+
+    //o livro do cache não foi alterado
+    assertThat(book.getTitle()).isEqualTo("some title");
+  }
+
 
   @Test
   @DisplayName("Deve filtrar livros")
@@ -263,7 +423,7 @@ public class BooksControllerTest {
 
     //busca qualquer livro, passando qualquer página e deve retorna um pagina de livros 0-100
     BDDMockito.given(service.find(Mockito.any(Books.class), Mockito.any(Pageable.class)))
-        .willReturn(new PageImpl<Books>(Arrays.asList(book), PageRequest.of(0,100),1));
+        .willReturn(new PageImpl<BookDTO>(Arrays.asList(new BookDTO(id,book.getTitle(),book.getAuthor(),book.getIsbn())), PageRequest.of(0,100),1));
 
     String queryString=String.format("?title=%s&author=%s&page=0&size=100",book.getTitle(),book.getAuthor());
 
@@ -271,7 +431,7 @@ public class BooksControllerTest {
 
     //execução
     MockHttpServletRequestBuilder request=MockMvcRequestBuilders
-        .get(BOOK_API.concat("/"+queryString))
+        .get(BOOK_API.concat(queryString))
         .accept(MediaType.APPLICATION_JSON);
 
     //verificação
@@ -280,12 +440,229 @@ public class BooksControllerTest {
         .andExpect(status().isOk())
         .andExpect(jsonPath("content", Matchers.hasSize(1)))
         .andExpect(jsonPath("totalElements").value(1))
-        .andExpect(jsonPath("pageable.pageSize").value(100))
-        .andExpect(jsonPath("pageable.pageNumber").value(0))
+        .andExpect(jsonPath("totalPages").value(1))
+        .andExpect(jsonPath("size").value(100))
+        .andExpect(jsonPath("number").value(0))
+        .andExpect(jsonPath("last").value(true))
+        .andExpect(jsonPath("pageable").doesNotExist())
+        .andExpect(jsonPath("sort").doesNotExist())
+    ;
+  }
+
+
+
+
+  @Test
+  @DisplayName("Deve filtrar livros sem calcular o total quando count=false")
+  public void findBookWithoutCountTest() throws Exception{
+    BDDMockito.given(service.findSlice(Mockito.any(Books.class), Mockito.any(Pageable.class)))
+        .willReturn(new SliceImpl<BookDTO>(Arrays.asList(new BookDTO(1l,"Clean Code","Joao","123")), PageRequest.of(0,10),true));
+
+    MockHttpServletRequestBuilder request=MockMvcRequestBuilders
+        .get(BOOK_API.concat("?title=Clean&count=false&page=0&size=10"))
+        .accept(MediaType.APPLICATION_JSON);
+
+    mvc
+        .perform(request)
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("content", Matchers.hasSize(1)))
+        .andExpect(jsonPath("last").value(false))
+        .andExpect(jsonPath("totalElements").doesNotExist())
+        .andExpect(jsonPath("totalPages").doesNotExist())
     ;
+    Mockito.verify(service,Mockito.never()).find(Mockito.any(Books.class), Mockito.any(Pageable.class));
   }
 
+  @Test
+  @DisplayName("Deve filtrar livros trazendo só os campos pedidos em fields")
+  public void findBookFieldsTest() throws Exception{
+    Map<String,Object> book=Map.of("id",1l,"isbn","123");
+    BDDMockito.given(service.findFields(Mockito.any(Books.class), Mockito.any(Pageable.class), Mockito.anyList()))
+        .willReturn(new PageImpl<Map<String,Object>>(Arrays.asList(book), PageRequest.of(0,10),1));
 
+    MockHttpServletRequestBuilder request=MockMvcRequestBuilders
+        .get(BOOK_API.concat("?title=Clean&fields=isbn,id&page=0&size=10"))
+        .accept(MediaType.APPLICATION_JSON);
 
+    mvc
+        .perform(request)
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("content", Matchers.hasSize(1)))
+        .andExpect(jsonPath("content[0].isbn").value("123"))
+        .andExpect(jsonPath("content[0].title").doesNotExist())
+        .andExpect(jsonPath("totalElements").value(1))
+    ;
+    //os campos seguem a ordem do BookDTO, não a da query string
+    Mockito.verify(service).findFields(Mockito.any(Books.class), Mockito.any(Pageable.class),
+        Mockito.eq(Arrays.asList("id","isbn")));
+  }
+
+  @Test
+  @DisplayName("Deve retornar bad request quando fields tiver um campo inexistente")
+  public void findBookInvalidFieldTest() throws Exception{
+    MockHttpServletRequestBuilder request=MockMvcRequestBuilders
+        .get(BOOK_API.concat("?fields=id,price"))
+        .accept(MediaType.APPLICATION_JSON);
+
+    mvc
+        .perform(request)
+        .andExpect(status().isBadRequest())
+        .andExpect(jsonPath("errors[0]").value("Invalid field: price"))
+    ;
+    Mockito.verifyNoInteractions(service);
+  }
+
+  @Test
+  @DisplayName("Deve listar os empréstimos do livro só com os campos pedidos, sem calcular o total")
+  public void loansByBookFieldsTest() throws Exception{
+    Books book=Books.builder().id(1l).isbn("123").build();
+    BDDMockito.given(service.getById(1l)).willReturn(Optional.of(book));
+    BDDMockito.given(loanService.getLoansByBookFieldsSlice(Mockito.eq(book), Mockito.any(Pageable.class), Mockito.anyList()))
+        .willReturn(new SliceImpl<Map<String,Object>>(Arrays.asList(Map.of("id",3l,"customer","Fulano")), PageRequest.of(0,10),false));
+
+    MockHttpServletRequestBuilder request=MockMvcRequestBuilders
+        .get(BOOK_API.concat("/1/loans?fields=id,customer&count=false"))
+        .accept(MediaType.APPLICATION_JSON);
+
+    mvc
+        .perform(request)
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("content[0].id").value(3))
+        .andExpect(jsonPath("content[0].customer").value("Fulano"))
+        .andExpect(jsonPath("content[0].book").doesNotExist())
+        .andExpect(jsonPath("totalElements").doesNotExist())
+    ;
+    Mockito.verify(loanService).getLoansByBookFieldsSlice(Mockito.eq(book), Mockito.any(Pageable.class),
+        Mockito.eq(Arrays.asList("id","customer")));
+  }
+
+  @Test
+  @DisplayName("Deve filtrar livros paginando por cursor")
+  public void findBookByCursorTest() throws Exception{
+    Books book= Books.builder().id(7l).title(createNewBook().getTitle()).author(
+        createNewBook().getAuthor()).isbn(createNewBook().getIsbn()).build();
+
+    //primeira página (cursor vazio) começa depois do id 0
+    BDDMockito.given(service.findAfter(Mockito.any(Books.class), Mockito.eq(0l), Mockito.eq(10)))
+        .willReturn(new SliceImpl<Books>(Arrays.asList(book), PageRequest.of(0,10),true));
+
+    MockHttpServletRequestBuilder request=MockMvcRequestBuilders
+        .get(BOOK_API.concat("?title=Clean&cursor=&size=10"))
+        .accept(MediaType.APPLICATION_JSON);
+
+    mvc
+        .perform(request)
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("content", Matchers.hasSize(1)))
+        .andExpect(jsonPath("content[0].id").value(7))
+        .andExpect(jsonPath("size").value(10))
+        .andExpect(jsonPath("nextCursor").value(KeysetCursor.encode(7l)))
+        .andExpect(jsonPath("totalElements").doesNotExist())
+    ;
+  }
+
+  @Test
+  @DisplayName("Deve retornar bad request quando o cursor for inválido")
+  public void findBookByInvalidCursorTest() throws Exception{
+    MockHttpServletRequestBuilder request=MockMvcRequestBuilders
+        .get(BOOK_API.concat("?cursor=invalido"))
+        .accept(MediaType.APPLICATION_JSON);
+
+    mvc
+        .perform(request)
+        .andExpect(status().isBadRequest())
+        .andExpect(jsonPath("errors[0]").value("Invalid cursor"))
+    ;
+  }
+
+  @Test
+  @DisplayName("Deve importar livros de um csv com cabeçalho")
+  public void importCsvTest() throws Exception{
+    List<BookImportRow> rows = captureImportedRows();
+    String csv = "isbn,title,author\n"
+        + "001,\"Aventuras, volume 1\",Artur\n"
+        + "\n"
+        + "002,,Artur\n";
+
+    MockHttpServletRequestBuilder request=MockMvcRequestBuilders
+        .post(BOOK_API.concat("/import"))
+        .contentType("text/csv")
+        .content(csv)
+        .accept(MediaType.APPLICATION_JSON);
+
+    mvc
+        .perform(request)
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("received").value(2));
+
+    assertThat(rows).hasSize(2);
+    assertThat(rows.get(0).getLine()).isEqualTo(2);
+    assertThat(rows.get(0).getBook().getTitle()).isEqualTo("Aventuras, volume 1");
+    assertThat(rows.get(0).getBook().getIsbn()).isEqualTo("001");
+    assertThat(rows.get(1).getLine()).isEqualTo(4);
+    assertThat(rows.get(1).getBook()).isNull();
+    assertThat(rows.get(1).getError()).isEqualTo("title: must not be empty");
+  }
+
+  @Test
+  @DisplayName("Deve importar livros de um ndjson informando as linhas inválidas")
+  public void importNdjsonTest() throws Exception{
+    List<BookImportRow> rows = captureImportedRows();
+    String ndjson = "{\"title\":\"Aventuras\",\"author\":\"Artur\",\"isbn\":\"001\"}\n"
+        + "{\"title\":\n";
+
+    MockHttpServletRequestBuilder request=MockMvcRequestBuilders
+        .post(BOOK_API.concat("/import"))
+        .contentType("application/x-ndjson")
+        .content(ndjson)
+        .accept(MediaType.APPLICATION_JSON);
+
+    mvc
+        .perform(request)
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("received").value(2));
+
+    assertThat(rows).hasSize(2);
+    assertThat(rows.get(0).getBook().getAuthor()).isEqualTo("Artur");
+    assertThat(rows.get(1).getLine()).isEqualTo(2);
+    assertThat(rows.get(1).getError()).startsWith("Json inválido");
+  }
+
+  @Test
+  @DisplayName("Deve exportar os livros do filtro em csv")
+  public void exportBooksCsvTest() throws Exception{
+    Mockito.doAnswer(invocation -> {
+      Consumer<BookDTO> action=invocation.getArgument(1);
+      action.accept(new BookDTO(1l,"Aventuras, volume 1","Artur","001"));
+      action.accept(new BookDTO(2l,"O \"rei\"","Artur","002"));
+      return null;
+    }).when(service).export(Mockito.eq(Books.builder().author("Artur").build()),Mockito.any());
+
+    MvcResult result=mvc
+        .perform(MockMvcRequestBuilders.get(BOOK_API.concat("/export?author=Artur")).accept("text/csv"))
+        .andExpect(request().asyncStarted())
+        .andReturn();
+
+    //o corpo é escrito depois que o controller retorna, por isso o asyncDispatch
+    mvc
+        .perform(asyncDispatch(result))
+        .andExpect(status().isOk())
+        .andExpect(header().string("Content-Disposition","attachment; filename=books.csv"))
+        .andExpect(content().string("id,title,author,isbn\n"
+            + "1,\"Aventuras, volume 1\",Artur,001\n"
+            + "2,\"O \"\"rei\"\"\",Artur,002\n"))
+    ;
+  }
+
+  //o serviço recebe um iterator ligado ao corpo da requisição, então as linhas são lidas dentro da chamada
+  private List<BookImportRow> captureImportedRows() {
+    List<BookImportRow> rows = new ArrayList<>();
+    BDDMockito.given(importService.importBooks(Mockito.any())).willAnswer(invocation -> {
+      Iterator<BookImportRow> iterator = invocation.getArgument(0);
+      iterator.forEachRemaining(rows::add);
+      return BookImportReportDTO.builder().received(rows.size()).build();
+    });
+    return rows;
+  }
 
 }
@@ -1,23 +1,37 @@
 package com.udemy.demo.api.resource;
 
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
+import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.udemy.demo.api.dto.BookDTO;
+import com.udemy.demo.api.dto.LoanBatchResultDTO;
+import com.udemy.demo.api.dto.LoanBatchStatus;
 import com.udemy.demo.api.dto.LoanDTO;
 import com.udemy.demo.api.dto.LoanFilterDTO;
+import com.udemy.demo.api.dto.LoanReturnDTO;
+import com.udemy.demo.api.dto.PageDTO;
 import com.udemy.demo.api.dto.ReturnedLoanDTO;
 import com.udemy.demo.api.model.entity.Books;
 
 import com.udemy.demo.api.model.entity.Loan;
 import com.udemy.demo.exception.BusinessException;
 import com.udemy.demo.service.BookService;
+import com.udemy.demo.service.LoanBatchService;
 import com.udemy.demo.service.LoanService;
 import java.time.LocalDate;
 import java.util.Arrays;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 import org.hamcrest.Matchers;
 import org.junit.jupiter.api.DisplayName;
@@ -32,10 +46,13 @@ import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.SliceImpl;
 import org.springframework.http.MediaType;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 
@@ -56,6 +73,9 @@ public class LoanControllerTest {
   @MockBean
   private LoanService loanService;
 
+  @MockBean
+  private LoanBatchService loanBatchService;
+
   @Test
   @DisplayName("Deve realizar um emprestimo")
   public void createLoanTest() throws Exception {
@@ -148,11 +168,8 @@ public class LoanControllerTest {
   public void returnBookTest() throws Exception {
     //cenário (returned:true)
     ReturnedLoanDTO dto= ReturnedLoanDTO.builder().returned(true).build();
-    Loan loan=Loan.builder().id(1l).build();
-    //sem essa mock lá no controler o método       Loan loan=service.getById(id).get();, nao vai retornar nada
-    //comente essa linha para ver
-    //ou senha willReturn será o retorno do service.getById(id).get()
-    BDDMockito.given(loanService.getById(Mockito.anyLong())).willReturn(Optional.of(loan));
+    //a devolução é um update direto: o controller não busca o empréstimo antes
+    BDDMockito.given(loanService.returnLoan(1l,true,null)).willReturn(true);
 
 
     String json=new ObjectMapper().writeValueAsString(dto);
@@ -164,7 +181,8 @@ public class LoanControllerTest {
             .content(json)
     ).andExpect(status().isOk());
 
-    Mockito.verify(loanService,Mockito.times(1)).update(loan);
+    Mockito.verify(loanService,Mockito.times(1)).returnLoan(1l,true,null);
+    Mockito.verify(loanService,Mockito.never()).getById(Mockito.anyLong());
   }
 
 
@@ -175,8 +193,8 @@ public class LoanControllerTest {
     ReturnedLoanDTO dto= ReturnedLoanDTO.builder().returned(true).build();
 
 
-    //aqui estou dizendo que irá retornar o vazio o Loan loan=service.getById(id).get(); em LoanController
-    BDDMockito.given(loanService.getById(Mockito.anyLong())).willReturn(Optional.empty());
+    //nenhuma linha alterada pelo update
+    BDDMockito.given(loanService.returnLoan(Mockito.anyLong(),Mockito.any(),Mockito.any())).willReturn(false);
 
 
     String json=new ObjectMapper().writeValueAsString(dto);
@@ -191,6 +209,25 @@ public class LoanControllerTest {
 
   }
 
+  @Test
+  @DisplayName("Deve retornar 409 quando a versão informada estiver desatualizada")
+  public void returnStaleVersionTest() throws Exception {
+    ReturnedLoanDTO dto= ReturnedLoanDTO.builder().returned(true).version(3l).build();
+
+    BDDMockito.given(loanService.returnLoan(1l,true,3l))
+        .willThrow(new ObjectOptimisticLockingFailureException(Loan.class,1l));
+
+    String json=new ObjectMapper().writeValueAsString(dto);
+
+    mvc.perform(
+        patch(LOAN_API.concat(("/1")))
+            .accept(MediaType.APPLICATION_JSON)
+            .contentType(MediaType.APPLICATION_JSON)
+            .content(json)
+    ).andExpect(status().isConflict())
+        .andExpect(jsonPath("errors[0]").value("Resource was changed by another request"));
+  }
+
 
   @Test
   @DisplayName("Deve filtrar empréstimos")
@@ -211,7 +248,7 @@ public class LoanControllerTest {
 
     //execução
     MockHttpServletRequestBuilder request=MockMvcRequestBuilders
-        .get(LOAN_API.concat("/"+queryString))
+        .get(LOAN_API.concat(queryString))
         .accept(MediaType.APPLICATION_JSON);
 
     //verificação
@@ -220,11 +257,180 @@ public class LoanControllerTest {
         .andExpect(status().isOk())
         .andExpect(jsonPath("content", Matchers.hasSize(1)))
         .andExpect(jsonPath("totalElements").value(1))
-        .andExpect(jsonPath("pageable.pageSize").value(10))
-        .andExpect(jsonPath("pageable.pageNumber").value(0))
+        .andExpect(jsonPath("size").value(10))
+        .andExpect(jsonPath("number").value(0))
+        .andExpect(jsonPath("pageable").doesNotExist())
+    ;
+  }
+
+
+  @Test
+  @DisplayName("Deve filtrar empréstimos respondendo a página em smile quando o Accept pedir")
+  public void filterLoansSmileTest() throws Exception{
+    MediaType smile=MediaType.parseMediaType("application/x-jackson-smile");
+    Loan loan=createLoan();
+    loan.setId(1l);
+    BDDMockito.given(loanService.find(Mockito.any(LoanFilterDTO.class), Mockito.any(Pageable.class)))
+        .willReturn(new PageImpl<Loan>(Arrays.asList(loan), PageRequest.of(0,10),1));
+
+    MvcResult result=mvc
+        .perform(MockMvcRequestBuilders.get(LOAN_API.concat("?customer=Fulano&page=0&size=10")).accept(smile))
+        .andExpect(status().isOk())
+        .andExpect(content().contentType(smile))
+        .andReturn();
+
+    PageDTO<LoanDTO> page=new ObjectMapper(new SmileFactory())
+        .readValue(result.getResponse().getContentAsByteArray(), new TypeReference<PageDTO<LoanDTO>>(){});
+    assertThat(page.getTotalElements()).isEqualTo(1);
+    assertThat(page.getContent()).hasSize(1);
+    assertThat(page.getContent().get(0).getId()).isEqualTo(1l);
+    assertThat(page.getContent().get(0).getBook().getIsbn()).isEqualTo(loan.getBook().getIsbn());
+  }
+
+  @Test
+  @DisplayName("Deve filtrar empréstimos sem calcular o total quando count=false")
+  public void filterLoansWithoutCountTest() throws Exception{
+    Loan loan=createLoan();
+    loan.setId(1l);
+
+    BDDMockito.given(loanService.findSlice(Mockito.any(LoanFilterDTO.class), Mockito.any(Pageable.class)))
+        .willReturn(new SliceImpl<Loan>(Arrays.asList(loan), PageRequest.of(0,10),false));
+
+    MockHttpServletRequestBuilder request=MockMvcRequestBuilders
+        .get(LOAN_API.concat("?customer=Fulano&count=false"))
+        .accept(MediaType.APPLICATION_JSON);
+
+    mvc
+        .perform(request)
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("content", Matchers.hasSize(1)))
+        .andExpect(jsonPath("last").value(true))
+        .andExpect(jsonPath("totalElements").doesNotExist())
+    ;
+  }
+
+  @Test
+  @DisplayName("Deve filtrar empréstimos só com os campos pedidos, com o livro inteiro em fields=book")
+  public void filterLoansFieldsTest() throws Exception{
+    Map<String,Object> loan=Map.of("id",1l,"book",Map.of("id",1l,"title","Clean Code","author","Joao","isbn","123"));
+    BDDMockito.given(loanService.findFields(Mockito.any(LoanFilterDTO.class), Mockito.any(Pageable.class), Mockito.anyList()))
+        .willReturn(new PageImpl<Map<String,Object>>(Arrays.asList(loan), PageRequest.of(0,10),1));
+
+    MockHttpServletRequestBuilder request=MockMvcRequestBuilders
+        .get(LOAN_API.concat("?customer=Fulano&fields=id,book"))
+        .accept(MediaType.APPLICATION_JSON);
+
+    mvc
+        .perform(request)
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("content[0].id").value(1))
+        .andExpect(jsonPath("content[0].book.title").value("Clean Code"))
+        .andExpect(jsonPath("content[0].customer").doesNotExist())
+        .andExpect(jsonPath("totalElements").value(1))
+    ;
+    Mockito.verify(loanService).findFields(Mockito.any(LoanFilterDTO.class), Mockito.any(Pageable.class),
+        Mockito.eq(Arrays.asList("id","book.id","book.title","book.author","book.isbn")));
+    Mockito.verify(loanService,Mockito.never()).find(Mockito.any(LoanFilterDTO.class), Mockito.any(Pageable.class));
+  }
+
+  @Test
+  @DisplayName("Deve filtrar empréstimos paginando por cursor")
+  public void filterLoansByCursorTest() throws Exception{
+    Loan loan=createLoan();
+    loan.setId(5l);
+
+    BDDMockito.given(loanService.findAfter(Mockito.any(LoanFilterDTO.class), Mockito.eq(4l), Mockito.eq(20)))
+        .willReturn(new SliceImpl<Loan>(Arrays.asList(loan), PageRequest.of(0,20),false));
+
+    String queryString=String.format("?isbn=%s&cursor=%s",loan.getBook().getIsbn(),KeysetCursor.encode(4l));
+
+    MockHttpServletRequestBuilder request=MockMvcRequestBuilders
+        .get(LOAN_API.concat(queryString))
+        .accept(MediaType.APPLICATION_JSON);
+
+    //última página: não tem próximo cursor
+    mvc
+        .perform(request)
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("content", Matchers.hasSize(1)))
+        .andExpect(jsonPath("content[0].id").value(5))
+        .andExpect(jsonPath("nextCursor").isEmpty())
+    ;
+  }
+
+
+  @Test
+  @DisplayName("Deve exportar os empréstimos do filtro em ndjson")
+  public void exportLoansNdjsonTest() throws Exception{
+    BookDTO book=new BookDTO(1l,"Clean Code","Joao","123");
+    Mockito.doAnswer(invocation -> {
+      Consumer<LoanDTO> action=invocation.getArgument(1);
+      action.accept(new LoanDTO(5l,"123","Fulano","fulano@email.com",book));
+      action.accept(new LoanDTO(6l,"123","Ciclano","ciclano@email.com",book));
+      return null;
+    }).when(loanService).export(Mockito.eq(new LoanFilterDTO("123",null)),Mockito.any());
+
+    MvcResult result=mvc
+        .perform(MockMvcRequestBuilders.get(LOAN_API.concat("/export?isbn=123")).accept("application/x-ndjson"))
+        .andExpect(request().asyncStarted())
+        .andReturn();
+
+    //o corpo é escrito depois que o controller retorna, por isso o asyncDispatch
+    mvc
+        .perform(asyncDispatch(result))
+        .andExpect(status().isOk())
+        .andExpect(header().string("Content-Disposition","attachment; filename=loans.ndjson"))
+        .andExpect(content().string(
+            "{\"id\":5,\"isbn\":\"123\",\"customer\":\"Fulano\",\"email\":\"fulano@email.com\","
+                + "\"book\":{\"id\":1,\"title\":\"Clean Code\",\"author\":\"Joao\",\"isbn\":\"123\"}}\n"
+                + "{\"id\":6,\"isbn\":\"123\",\"customer\":\"Ciclano\",\"email\":\"ciclano@email.com\","
+                + "\"book\":{\"id\":1,\"title\":\"Clean Code\",\"author\":\"Joao\",\"isbn\":\"123\"}}\n"))
     ;
   }
 
+  @Test
+  @DisplayName("Deve emprestar um lote devolvendo o status de cada item")
+  public void createLoanBatchTest() throws Exception{
+    String json=new ObjectMapper().writeValueAsString(Arrays.asList(
+        LoanDTO.builder().isbn("123").customer("Fulano").build(),
+        LoanDTO.builder().isbn("456").customer("Fulano").build()));
+
+    BDDMockito.given(loanBatchService.createAll(Mockito.anyList()))
+        .willReturn(Arrays.asList(
+            LoanBatchResultDTO.builder().index(0).id(1l).isbn("123").status(LoanBatchStatus.CREATED).build(),
+            LoanBatchResultDTO.builder().index(1).isbn("456").status(LoanBatchStatus.CONFLICT).message("Book has already loaned").build()));
+
+    MockHttpServletRequestBuilder request=MockMvcRequestBuilders
+        .post(LOAN_API.concat("/batch"))
+        .contentType(MediaType.APPLICATION_JSON)
+        .accept(MediaType.APPLICATION_JSON)
+        .content(json);
+
+    mvc
+        .perform(request)
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$", Matchers.hasSize(2)))
+        .andExpect(jsonPath("[0].status").value("CREATED"))
+        .andExpect(jsonPath("[0].id").value(1))
+        .andExpect(jsonPath("[1].status").value("CONFLICT"))
+        .andExpect(jsonPath("[1].message").value("Book has already loaned"))
+    ;
+  }
+
+  @Test
+  @DisplayName("Deve devolver um lote de empréstimos")
+  public void returnLoanBatchTest() throws Exception{
+    String json=new ObjectMapper().writeValueAsString(Arrays.asList(new LoanReturnDTO(1l, true, null)));
+
+    BDDMockito.given(loanBatchService.returnAll(Mockito.anyList()))
+        .willReturn(Arrays.asList(LoanBatchResultDTO.builder().index(0).id(1l).status(LoanBatchStatus.UPDATED).build()));
+
+    mvc
+        .perform(patch(LOAN_API.concat("/batch")).contentType(MediaType.APPLICATION_JSON).content(json))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("[0].status").value("UPDATED"))
+    ;
+  }
 
   public Loan createLoan(){
     Books book=createNewBook();
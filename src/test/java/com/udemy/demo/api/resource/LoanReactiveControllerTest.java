@@ -0,0 +1,144 @@
+package com.udemy.demo.api.resource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.udemy.demo.api.dto.LoanDTO;
+import com.udemy.demo.api.dto.LoanFilterDTO;
+import com.udemy.demo.api.dto.ReturnedLoanDTO;
+import com.udemy.demo.api.model.entity.BookRow;
+import com.udemy.demo.api.model.entity.LoanBookRow;
+import com.udemy.demo.api.model.entity.LoanRow;
+import com.udemy.demo.exception.BusinessException;
+import com.udemy.demo.service.BookReactiveService;
+import com.udemy.demo.service.LoanReactiveService;
+import java.time.LocalDate;
+import java.util.Arrays;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.BDDMockito;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.WebFluxTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Mono;
+
+@ExtendWith(SpringExtension.class)
+@ActiveProfiles({"test", "reactive"})
+@WebFluxTest(controllers = LoanReactiveController.class)
+public class LoanReactiveControllerTest {
+
+  static String LOAN_API="/api/loans";
+
+  @Autowired
+  WebTestClient client;
+
+  @MockBean
+  BookReactiveService bookService;
+
+  @MockBean
+  LoanReactiveService loanService;
+
+  private LoanDTO createLoan() {
+    return LoanDTO.builder().isbn("123").customer("Fulano").email("fulano@email.com").build();
+  }
+
+  @Test
+  @DisplayName("Deve realizar um emprestimo")
+  public void createLoanTest() {
+    BookRow book = BookRow.builder().id(1l).isbn("123").build();
+    BDDMockito.given(bookService.getByIsbn("123")).willReturn(Mono.just(book));
+    BDDMockito.given(loanService.save(Mockito.any(LoanRow.class)))
+        .willReturn(Mono.just(LoanRow.builder().id(1l).bookId(1l).customer("Fulano").loanDate(LocalDate.now()).build()));
+
+    client.post().uri(LOAN_API)
+        .contentType(MediaType.APPLICATION_JSON)
+        .bodyValue(createLoan())
+        .exchange()
+        .expectStatus().isCreated()
+        .expectBody(Long.class).isEqualTo(1l);
+  }
+
+  @Test
+  @DisplayName("Deve retornar erro ao tentar fazer emprestimo de um livro inexistente")
+  public void invalidIsbnCreateLoanTest() {
+    BDDMockito.given(bookService.getByIsbn("123")).willReturn(Mono.empty());
+
+    client.post().uri(LOAN_API)
+        .contentType(MediaType.APPLICATION_JSON)
+        .bodyValue(createLoan())
+        .exchange()
+        .expectStatus().isBadRequest()
+        .expectBody()
+        .jsonPath("errors[0]").isEqualTo("Book not found for passed isbn");
+  }
+
+  @Test
+  @DisplayName("Deve retornar erro ao tentar fazer emprestimo de um livro emprestado")
+  public void loanedBookErrorOnCreateLoanTest() {
+    BDDMockito.given(bookService.getByIsbn("123")).willReturn(Mono.just(BookRow.builder().id(1l).isbn("123").build()));
+    BDDMockito.given(loanService.save(Mockito.any(LoanRow.class)))
+        .willReturn(Mono.error(new BusinessException("Book has already loaned")));
+
+    client.post().uri(LOAN_API)
+        .contentType(MediaType.APPLICATION_JSON)
+        .bodyValue(createLoan())
+        .exchange()
+        .expectStatus().isBadRequest()
+        .expectBody()
+        .jsonPath("errors[0]").isEqualTo("Book has already loaned");
+  }
+
+  @Test
+  @DisplayName("Deve retornar um livro")
+  public void returnBookTest() {
+    BDDMockito.given(loanService.returnLoan(1l, true, 2l)).willReturn(Mono.just(true));
+
+    client.patch().uri(LOAN_API + "/1")
+        .contentType(MediaType.APPLICATION_JSON)
+        .bodyValue(ReturnedLoanDTO.builder().returned(true).version(2l).build())
+        .exchange()
+        .expectStatus().isOk();
+
+    Mockito.verify(loanService).returnLoan(1l, true, 2l);
+    Mockito.verify(loanService, Mockito.never()).getById(Mockito.anyLong());
+  }
+
+  @Test
+  @DisplayName("Deve retornar 404 quando tentar devolver um livro inexistente")
+  public void returnInexistentBookTest() {
+    BDDMockito.given(loanService.returnLoan(Mockito.anyLong(), Mockito.any(), Mockito.any())).willReturn(Mono.just(false));
+
+    client.patch().uri(LOAN_API + "/1")
+        .contentType(MediaType.APPLICATION_JSON)
+        .bodyValue(ReturnedLoanDTO.builder().returned(true).build())
+        .exchange()
+        .expectStatus().isNotFound();
+  }
+
+  @Test
+  @DisplayName("Deve filtrar empréstimos")
+  public void findLoansTest() {
+    LoanBookRow loan = new LoanBookRow(1l, "123", "Fulano", "fulano@email.com", 1l, "Clean Code", "Joao");
+    BDDMockito.given(loanService.find(Mockito.any(LoanFilterDTO.class), Mockito.any(Pageable.class)))
+        .willReturn(Mono.just(new PageImpl<>(Arrays.asList(loan), PageRequest.of(0, 10), 1)));
+
+    client.get().uri(LOAN_API + "?isbn=123&customer=Fulano&page=0&size=10")
+        .exchange()
+        .expectStatus().isOk()
+        .expectBody()
+        .jsonPath("content.length()").isEqualTo(1)
+        .jsonPath("content[0].isbn").isEqualTo("123")
+        .jsonPath("content[0].book.author").isEqualTo("Joao")
+        .jsonPath("totalElements").isEqualTo(1)
+        .jsonPath("size").isEqualTo(10)
+        .jsonPath("pageable").doesNotExist();
+  }
+}
@@ -0,0 +1,114 @@
+package com.udemy.demo.benchmark;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.udemy.demo.api.dto.BookDTO;
+import com.udemy.demo.api.dto.LoanDTO;
+import com.udemy.demo.api.dto.PageDTO;
+import com.udemy.demo.api.mapper.DtoMapper;
+import com.udemy.demo.model.repository.BooksRepository;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+/**
+ * Mede a codificação e a decodificação das páginas de {@code BookDTO} e {@code LoanDTO} em json, cbor e smile,
+ * os formatos que o GET /api/books e o GET /api/loans negociam pelo Accept. O tamanho de cada página no formato
+ * é impresso no setup.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BinaryFormatBenchmark {
+
+  private static final TypeReference<PageDTO<BookDTO>> BOOK_PAGE = new TypeReference<>() {};
+  private static final TypeReference<PageDTO<LoanDTO>> LOAN_PAGE = new TypeReference<>() {};
+
+  @Param({"20", "100"})
+  int pageSize;
+
+  @Param({"json", "cbor", "smile"})
+  String format;
+
+  ObjectMapper objectMapper;
+  PageDTO<BookDTO> bookPage;
+  PageDTO<LoanDTO> loanPage;
+  byte[] bookBytes;
+  byte[] loanBytes;
+
+  @Setup
+  public void setup(SeededDatabase database) throws IOException {
+    objectMapper = Jackson2ObjectMapperBuilder.json().factory(factory()).build();
+    DtoMapper mapper = database.bean(DtoMapper.class);
+    PageRequest pageRequest = PageRequest.of(0, pageSize);
+    List<BookDTO> books = database.bean(BooksRepository.class).findAll(pageRequest)
+        .stream()
+        .map(mapper::toDto)
+        .collect(Collectors.toList());
+    //mesmos clientes do seed, com o livro resumido como vem da consulta de empréstimos
+    List<LoanDTO> loans = new ArrayList<>(books.size());
+    for (int i = 0; i < books.size(); i++) {
+      BookDTO book = books.get(i);
+      loans.add(new LoanDTO((long) i + 1, book.getIsbn(), "Cliente " + i, "cliente" + i + "@email.com", book));
+    }
+    bookPage = PageDTO.of(new PageImpl<>(books, pageRequest, database.books));
+    loanPage = PageDTO.of(new PageImpl<>(loans, pageRequest, database.books));
+    bookBytes = objectMapper.writeValueAsBytes(bookPage);
+    loanBytes = objectMapper.writeValueAsBytes(loanPage);
+    System.out.printf("%n%s, página de %d: livros %d bytes, empréstimos %d bytes%n", format, pageSize,
+        bookBytes.length, loanBytes.length);
+  }
+
+  private JsonFactory factory() {
+    switch (format) {
+      case "cbor":
+        return new CBORFactory();
+      case "smile":
+        return new SmileFactory();
+      default:
+        return new JsonFactory();
+    }
+  }
+
+  @Benchmark
+  public byte[] encodeBookPage() throws IOException {
+    return objectMapper.writeValueAsBytes(bookPage);
+  }
+
+  @Benchmark
+  public PageDTO<BookDTO> decodeBookPage() throws IOException {
+    return objectMapper.readValue(bookBytes, BOOK_PAGE);
+  }
+
+  @Benchmark
+  public byte[] encodeLoanPage() throws IOException {
+    return objectMapper.writeValueAsBytes(loanPage);
+  }
+
+  @Benchmark
+  public PageDTO<LoanDTO> decodeLoanPage() throws IOException {
+    return objectMapper.readValue(loanBytes, LOAN_PAGE);
+  }
+}
@@ -0,0 +1,54 @@
+package com.udemy.demo.benchmark;
+
+import com.udemy.demo.api.dto.BookDTO;
+import com.udemy.demo.api.model.entity.Books;
+import com.udemy.demo.service.BookService;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+
+/**
+ * Mede o {@link BookService#find} com os filtros usados pela busca de livros.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BookServiceBenchmark {
+
+  BookService service;
+  Pageable pageRequest = PageRequest.of(0, 20);
+
+  @Setup
+  public void setup(SeededDatabase database) {
+    service = database.bean(BookService.class);
+  }
+
+  @Benchmark
+  public Page<BookDTO> findByTitle() {
+    return service.find(Books.builder().title("driven").build(), pageRequest);
+  }
+
+  @Benchmark
+  public Page<BookDTO> findByTitleAndAuthor() {
+    return service.find(Books.builder().title("code").author("martin").build(), pageRequest);
+  }
+
+  @Benchmark
+  public Page<BookDTO> findByIsbn() {
+    return service.find(Books.builder().isbn("0000777").build(), pageRequest);
+  }
+}
@@ -0,0 +1,83 @@
+package com.udemy.demo.benchmark;
+
+import com.udemy.demo.api.dto.BookDTO;
+import com.udemy.demo.api.dto.LoanDTO;
+import com.udemy.demo.api.mapper.DtoMapper;
+import com.udemy.demo.api.model.entity.Books;
+import com.udemy.demo.api.model.entity.Loan;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import org.modelmapper.ModelMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compara o mapeamento de uma página de livros/empréstimos feito pelo ModelMapper
+ * (como os controllers faziam) com o {@link DtoMapper}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DtoMappingBenchmark {
+
+  @Param({"20", "100"})
+  int pageSize;
+
+  ModelMapper modelMapper;
+  DtoMapper mapper;
+  List<Books> books;
+  List<Loan> loans;
+
+  @Setup
+  public void setup() {
+    modelMapper = new ModelMapper();
+    mapper = new DtoMapper();
+    books = new ArrayList<>();
+    loans = new ArrayList<>();
+    for (long i = 0; i < pageSize; i++) {
+      Books book = Books.builder().id(i).title("Clean Code " + i).author("Joao").isbn("isbn-" + i).build();
+      books.add(book);
+      loans.add(Loan.builder().id(i).book(book).customer("Fulano " + i)
+          .customerEmail("fulano" + i + "@email.com").loanDate(LocalDate.now()).build());
+    }
+  }
+
+  @Benchmark
+  public List<BookDTO> booksModelMapper() {
+    return books.stream().map(book -> modelMapper.map(book, BookDTO.class)).collect(Collectors.toList());
+  }
+
+  @Benchmark
+  public List<BookDTO> booksDtoMapper() {
+    return books.stream().map(mapper::toDto).collect(Collectors.toList());
+  }
+
+  @Benchmark
+  public List<LoanDTO> loansModelMapper() {
+    return loans.stream().map(loan -> {
+      LoanDTO dto = modelMapper.map(loan, LoanDTO.class);
+      dto.setBook(modelMapper.map(loan.getBook(), BookDTO.class));
+      return dto;
+    }).collect(Collectors.toList());
+  }
+
+  @Benchmark
+  public List<LoanDTO> loansDtoMapper() {
+    return loans.stream().map(mapper::toDto).collect(Collectors.toList());
+  }
+}
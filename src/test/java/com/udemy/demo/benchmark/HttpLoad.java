@@ -0,0 +1,116 @@
+package com.udemy.demo.benchmark;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Gerador de carga http para comparar os modos de execução da aplicação: cada conexão é uma
+ * virtual thread que repete o GET na url até acabar o tempo, e no fim são impressos a vazão,
+ * os percentis de latência e os erros.
+ *
+ * <pre>
+ * HttpLoad &lt;url&gt; [conexões=5000] [segundos=30] [aquecimento=10]
+ * </pre>
+ */
+public class HttpLoad {
+
+  public static void main(String[] args) throws Exception {
+    URI uri = URI.create(args[0]);
+    int connections = args.length > 1 ? Integer.parseInt(args[1]) : 5000;
+    Duration duration = Duration.ofSeconds(args.length > 2 ? Long.parseLong(args[2]) : 30);
+    Duration warmup = Duration.ofSeconds(args.length > 3 ? Long.parseLong(args[3]) : 10);
+
+    HttpClient client = HttpClient.newBuilder()
+        .version(HttpClient.Version.HTTP_1_1)
+        .connectTimeout(Duration.ofSeconds(30))
+        .build();
+    HttpRequest request = HttpRequest.newBuilder(uri).timeout(Duration.ofSeconds(60)).GET().build();
+
+    long start = System.nanoTime();
+    long measureFrom = start + warmup.toNanos();
+    long until = measureFrom + duration.toNanos();
+
+    List<Future<Result>> futures = new ArrayList<>(connections);
+    try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+      for (int i = 0; i < connections; i++) {
+        futures.add(executor.submit(() -> run(client, request, measureFrom, until)));
+      }
+    }
+
+    Result total = new Result();
+    for (Future<Result> future : futures) {
+      total.add(future.get());
+    }
+    long[] latencies = total.latencies();
+    Arrays.sort(latencies);
+    double seconds = duration.toNanos() / 1e9;
+    System.out.printf("%s, %d conexões, %ds%n", uri, connections, duration.getSeconds());
+    System.out.printf("requisições: %d (%.0f/s), erros: %d%n", latencies.length, latencies.length / seconds, total.errors);
+    System.out.printf("latência ms: p50 %.1f, p90 %.1f, p99 %.1f, p99.9 %.1f, max %.1f%n",
+        percentile(latencies, 50), percentile(latencies, 90), percentile(latencies, 99),
+        percentile(latencies, 99.9), percentile(latencies, 100));
+  }
+
+  private static Result run(HttpClient client, HttpRequest request, long measureFrom, long until) {
+    Result result = new Result();
+    long now;
+    while ((now = System.nanoTime()) < until) {
+      boolean ok;
+      try {
+        ok = client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode() == 200;
+      } catch (Exception e) {
+        ok = false;
+      }
+      if (now >= measureFrom) {
+        if (ok) {
+          result.record(System.nanoTime() - now);
+        } else {
+          result.errors++;
+        }
+      }
+    }
+    return result;
+  }
+
+  private static double percentile(long[] sorted, double percentile) {
+    if (sorted.length == 0) {
+      return 0;
+    }
+    int index = (int) Math.ceil(percentile / 100 * sorted.length) - 1;
+    return sorted[Math.max(0, index)] / 1e6;
+  }
+
+  //latências de uma conexão, sem sincronização: cada virtual thread tem a sua
+  private static class Result {
+    private long[] latencies = new long[1024];
+    private int count;
+    private long errors;
+
+    void record(long nanos) {
+      if (count == latencies.length) {
+        latencies = Arrays.copyOf(latencies, count * 2);
+      }
+      latencies[count++] = nanos;
+    }
+
+    void add(Result other) {
+      for (int i = 0; i < other.count; i++) {
+        record(other.latencies[i]);
+      }
+      errors += other.errors;
+    }
+
+    long[] latencies() {
+      return Arrays.copyOf(latencies, count);
+    }
+  }
+}
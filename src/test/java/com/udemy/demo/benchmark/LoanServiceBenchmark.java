@@ -0,0 +1,66 @@
+package com.udemy.demo.benchmark;
+
+import com.udemy.demo.api.model.entity.Books;
+import com.udemy.demo.api.model.entity.Loan;
+import com.udemy.demo.exception.BusinessException;
+import com.udemy.demo.service.LoanService;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * Mede o {@link LoanService#save}, incluindo a constraint de empréstimo ativo por livro.
+ * Os livros são usados em rodízio e os empréstimos são devolvidos a cada iteração;
+ * se o rodízio der a volta dentro da mesma iteração o save cai na BusinessException,
+ * que também é um caminho real da api.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LoanServiceBenchmark {
+
+  LoanService service;
+  JdbcTemplate jdbcTemplate;
+  List<Books> books;
+  AtomicInteger next = new AtomicInteger();
+
+  @Setup
+  public void setup(SeededDatabase database) {
+    service = database.bean(LoanService.class);
+    jdbcTemplate = database.bean(JdbcTemplate.class);
+    books = database.seededBooks;
+  }
+
+  @Setup(Level.Iteration)
+  public void returnAllLoans() {
+    jdbcTemplate.update("update loan set returned = true where returned is null or returned = false");
+  }
+
+  @Benchmark
+  public Object save() {
+    Books book = books.get(Math.floorMod(next.getAndIncrement(), books.size()));
+    Loan loan = Loan.builder().book(book).customer("Fulano").customerEmail("fulano@email.com")
+        .loanDate(LocalDate.now()).build();
+    try {
+      return service.save(loan);
+    } catch (BusinessException e) {
+      return e;
+    }
+  }
+}
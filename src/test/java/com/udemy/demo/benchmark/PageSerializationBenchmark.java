@@ -0,0 +1,76 @@
+package com.udemy.demo.benchmark;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.module.blackbird.BlackbirdModule;
+import com.udemy.demo.api.dto.BookDTO;
+import com.udemy.demo.api.dto.PageDTO;
+import com.udemy.demo.api.mapper.DtoMapper;
+import com.udemy.demo.model.repository.BooksRepository;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+/**
+ * Mede a serialização de uma página de {@code BookDTO}, como acontece na resposta do GET /api/books:
+ * o {@code PageImpl} de antes contra o {@code PageDTO}, com os acessores por reflexão ou gerados pelo Blackbird.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PageSerializationBenchmark {
+
+  @Param({"20", "100"})
+  int pageSize;
+
+  @Param({"reflection", "blackbird"})
+  String accessors;
+
+  ObjectMapper objectMapper;
+  PageImpl<BookDTO> page;
+  PageDTO<BookDTO> pageDto;
+
+  @Setup
+  public void setup(SeededDatabase database) {
+    Jackson2ObjectMapperBuilder builder = Jackson2ObjectMapperBuilder.json();
+    if (accessors.equals("blackbird")) {
+      builder.modulesToInstall(new BlackbirdModule());
+    }
+    objectMapper = builder.build();
+    DtoMapper mapper = database.bean(DtoMapper.class);
+    PageRequest pageRequest = PageRequest.of(0, pageSize);
+    List<BookDTO> content = database.bean(BooksRepository.class).findAll(pageRequest)
+        .stream()
+        .map(mapper::toDto)
+        .collect(Collectors.toList());
+    page = new PageImpl<>(content, pageRequest, database.books);
+    pageDto = PageDTO.of(page);
+  }
+
+  @Benchmark
+  public byte[] serializeBookPage() throws JsonProcessingException {
+    return objectMapper.writeValueAsBytes(page);
+  }
+
+  @Benchmark
+  public byte[] serializeBookPageDto() throws JsonProcessingException {
+    return objectMapper.writeValueAsBytes(pageDto);
+  }
+}
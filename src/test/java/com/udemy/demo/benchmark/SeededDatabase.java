@@ -0,0 +1,115 @@
+package com.udemy.demo.benchmark;
+
+import com.udemy.demo.LibraryApiApplication;
+import com.udemy.demo.api.model.entity.Books;
+import com.udemy.demo.api.model.entity.Loan;
+import com.udemy.demo.model.repository.BooksRepository;
+import com.udemy.demo.model.repository.LoanRepository;
+import com.udemy.demo.service.BooksServiceImpl;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Sobe a aplicação (em porta aleatória) contra um H2 em memória e popula a base
+ * com a quantidade de livros/empréstimos informada nos parâmetros do JMH.
+ */
+@State(Scope.Benchmark)
+public class SeededDatabase {
+
+  static final String[] WORDS = {"clean", "code", "java", "spring", "domain", "driven", "design",
+      "refactoring", "patterns", "microservices", "testing", "agile", "kotlin", "data", "cloud"};
+
+  static final String[] AUTHORS = {"Joao", "Maria", "Robert Martin", "Martin Fowler", "Eric Evans",
+      "Kent Beck", "Josh Long", "Vaughn Vernon"};
+
+  private static final int SEED_CHUNK = 1000;
+
+  @Param({"10000", "100000"})
+  public int books;
+
+  /** percentual de livros que já possuem empréstimo ativo */
+  @Param({"30"})
+  public int loanedPercent;
+
+  public ConfigurableApplicationContext context;
+
+  public List<Books> seededBooks;
+
+  @Setup(Level.Trial)
+  public void start() {
+    context = new SpringApplicationBuilder(LibraryApiApplication.class)
+        .properties(
+            "server.port=0",
+            "spring.datasource.url=jdbc:h2:mem:benchmark;DB_CLOSE_ON_EXIT=FALSE",
+            "spring.main.banner-mode=off",
+            "spring.boot.admin.client.enabled=false",
+            "logging.file.name=target/benchmark.log",
+            "logging.level.root=warn")
+        .run();
+    seed();
+  }
+
+  @TearDown(Level.Trial)
+  public void stop() {
+    context.close();
+  }
+
+  public <T> T bean(Class<T> type) {
+    return context.getBean(type);
+  }
+
+  private void seed() {
+    BooksRepository booksRepository = bean(BooksRepository.class);
+    LoanRepository loanRepository = bean(LoanRepository.class);
+    TransactionTemplate tx = new TransactionTemplate(bean(PlatformTransactionManager.class));
+    Random random = new Random(42);
+
+    seededBooks = new ArrayList<>(books);
+    for (int start = 0; start < books; start += SEED_CHUNK) {
+      int end = Math.min(books, start + SEED_CHUNK);
+      List<Books> chunk = new ArrayList<>(end - start);
+      for (int i = start; i < end; i++) {
+        chunk.add(Books.builder()
+            .title(word(random) + " " + word(random) + " " + word(random) + " " + i)
+            .author(AUTHORS[random.nextInt(AUTHORS.length)])
+            .isbn(String.format("978%010d", i))
+            .build());
+      }
+      seededBooks.addAll(tx.execute(status -> booksRepository.saveAll(chunk)));
+    }
+
+    int loaned = books * loanedPercent / 100;
+    for (int start = 0; start < loaned; start += SEED_CHUNK) {
+      int end = Math.min(loaned, start + SEED_CHUNK);
+      List<Loan> chunk = new ArrayList<>(end - start);
+      for (int i = start; i < end; i++) {
+        chunk.add(Loan.builder()
+            .book(seededBooks.get(i))
+            .customer("Cliente " + i)
+            .customerEmail("cliente" + i + "@email.com")
+            .loanDate(LocalDate.now().minusDays(random.nextInt(10)))
+            .build());
+      }
+      tx.execute(status -> loanRepository.saveAll(chunk));
+    }
+
+    //os livros foram inseridos direto no repository, depois do índice de busca montado na subida
+    bean(BooksServiceImpl.class).rebuildSearchIndex();
+  }
+
+  private static String word(Random random) {
+    return WORDS[random.nextInt(WORDS.length)];
+  }
+}
@@ -0,0 +1,84 @@
+package com.udemy.demo.config;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+import com.udemy.demo.api.model.entity.Books;
+import com.udemy.demo.api.model.entity.Loan;
+import com.udemy.demo.exception.BusinessException;
+import com.udemy.demo.model.repository.BooksRepository;
+import com.udemy.demo.service.LoanService;
+import com.udemy.demo.service.LoanServiceImpl;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.LocalDate;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.EnableAspectJAutoProxy;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+@ExtendWith(SpringExtension.class)
+@ActiveProfiles("test")
+@DataJpaTest
+public class MetricsAspectTest {
+
+  @TestConfiguration
+  @EnableAspectJAutoProxy(proxyTargetClass = true)
+  @Import({MetricsAspect.class, LoanServiceImpl.class})
+  static class MetricsConfig {
+    @Bean
+    public MeterRegistry meterRegistry() {
+      return new SimpleMeterRegistry();
+    }
+  }
+
+  @Autowired
+  MeterRegistry registry;
+
+  @Autowired
+  LoanService loanService;
+
+  @Autowired
+  BooksRepository booksRepository;
+
+  @Test
+  @DisplayName("Deve medir o tempo dos métodos do serviço e das consultas do repository")
+  public void timeServiceAndRepositoryTest() {
+    Books book = booksRepository.save(Books.builder().isbn("123").author("Joao").title("Clean Code").build());
+
+    loanService.save(Loan.builder().book(book).customer("Fulano").loanDate(LocalDate.now()).build());
+
+    Timer service = registry.find(MetricsAspect.SERVICE_TIMER)
+        .tags("class", "LoanServiceImpl", "method", "save", "exception", "none").timer();
+    Timer repository = registry.find(MetricsAspect.REPOSITORY_TIMER)
+        .tags("repository", "LoanRepository", "method", "saveAndFlush", "exception", "none").timer();
+    Timer booksSave = registry.find(MetricsAspect.REPOSITORY_TIMER)
+        .tags("repository", "BooksRepository", "method", "save").timer();
+    assertThat(service.count()).isEqualTo(1);
+    assertThat(repository.count()).isEqualTo(1);
+    assertThat(booksSave.count()).isEqualTo(1);
+  }
+
+  @Test
+  @DisplayName("Deve marcar com a exceção a chamada que falhou e contar o conflito de empréstimo")
+  public void timeFailedCallTest() {
+    Books book = booksRepository.save(Books.builder().isbn("123").author("Joao").title("Clean Code").build());
+    loanService.save(Loan.builder().book(book).customer("Fulano").loanDate(LocalDate.now()).build());
+
+    Throwable ex = catchThrowable(() ->
+        loanService.save(Loan.builder().book(book).customer("Ciclano").loanDate(LocalDate.now()).build()));
+
+    assertThat(ex).isInstanceOf(BusinessException.class);
+    assertThat(registry.find(MetricsAspect.SERVICE_TIMER)
+        .tags("class", "LoanServiceImpl", "method", "save", "exception", "BusinessException").timer().count()).isEqualTo(1);
+    assertThat(registry.counter(LoanServiceImpl.CONFLICTS_COUNTER).count()).isEqualTo(1);
+  }
+}
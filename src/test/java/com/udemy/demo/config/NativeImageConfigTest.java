@@ -0,0 +1,73 @@
+package com.udemy.demo.config;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.udemy.demo.api.dto.LateLoanDTO;
+import com.udemy.demo.api.dto.LoanDTO;
+import com.udemy.demo.api.model.entity.Books;
+import com.udemy.demo.api.model.entity.Loan;
+import com.udemy.demo.model.repository.BooksRepository;
+import com.udemy.demo.model.repository.LoanRepository;
+import java.lang.reflect.Method;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.aot.hint.MemberCategory;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.predicate.RuntimeHintsPredicates;
+import org.springframework.data.jpa.repository.Query;
+
+public class NativeImageConfigTest {
+
+  private static final Pattern SELECT_NEW = Pattern.compile("select new ([\\w.]+)\\(");
+
+  RuntimeHints hints;
+
+  @BeforeEach
+  public void setUp() {
+    hints = new RuntimeHints();
+    new NativeImageConfig.Hints().registerHints(hints, getClass().getClassLoader());
+  }
+
+  @Test
+  @DisplayName("Deve registrar os construtores de todas as projeções 'select new' dos repositories")
+  public void selectNewConstructorsTest() throws Exception {
+    int projections = 0;
+    for (Class<?> repository : new Class<?>[] {BooksRepository.class, LoanRepository.class}) {
+      for (Method method : repository.getDeclaredMethods()) {
+        Query query = method.getAnnotation(Query.class);
+        if (query == null) {
+          continue;
+        }
+        Matcher matcher = SELECT_NEW.matcher(query.value());
+        while (matcher.find()) {
+          Class<?> type = Class.forName(matcher.group(1));
+          assertThat(RuntimeHintsPredicates.reflection().onType(type)
+              .withMemberCategory(MemberCategory.INVOKE_PUBLIC_CONSTRUCTORS))
+              .as(method.toString()).accepts(hints);
+          projections++;
+        }
+      }
+    }
+    assertThat(projections).isPositive();
+  }
+
+  @Test
+  @DisplayName("Deve registrar o construtor usado pelas consultas de empréstimos com o livro")
+  public void loanProjectionConstructorTest() throws Exception {
+    assertThat(RuntimeHintsPredicates.reflection().onConstructor(LoanDTO.class.getConstructor(Long.class, String.class,
+        String.class, String.class, Long.class, String.class, String.class))).accepts(hints);
+    assertThat(RuntimeHintsPredicates.reflection().onConstructor(LateLoanDTO.class.getConstructor(Long.class,
+        String.class, String.class))).accepts(hints);
+  }
+
+  @Test
+  @DisplayName("Deve registrar os campos das entidades e a especificação openapi gerada no build")
+  public void entitiesAndResourcesTest() throws Exception {
+    assertThat(RuntimeHintsPredicates.reflection().onField(Books.class.getDeclaredField("isbn"))).accepts(hints);
+    assertThat(RuntimeHintsPredicates.reflection().onField(Loan.class.getDeclaredField("version"))).accepts(hints);
+    assertThat(RuntimeHintsPredicates.resource().forResource("static/openapi/library.json")).accepts(hints);
+  }
+}
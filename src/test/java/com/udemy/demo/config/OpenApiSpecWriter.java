@@ -0,0 +1,41 @@
+package com.udemy.demo.config;
+
+import com.udemy.demo.LibraryApiApplication;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * Gera no build a especificação OpenAPI que o profile fast-start serve como arquivo estático: sobe a
+ * aplicação numa porta livre, lê o /v3/api-docs do grupo do SwaggerConfig e grava o json.
+ *
+ * <pre>
+ * OpenApiSpecWriter &lt;arquivo de saída&gt;
+ * </pre>
+ */
+public class OpenApiSpecWriter {
+
+  public static void main(String[] args) throws Exception {
+    Path output = Path.of(args[0]);
+    //o restart do devtools rodaria o main de novo numa outra thread, sem os argumentos
+    System.setProperty("spring.devtools.restart.enabled", "false");
+    try (ConfigurableApplicationContext context = new SpringApplicationBuilder(LibraryApiApplication.class)
+        .properties("server.port=0", "spring.boot.admin.client.enabled=false", "logging.file.name=")
+        .run()) {
+      int port = context.getEnvironment().getRequiredProperty("local.server.port", Integer.class);
+      HttpResponse<String> response = HttpClient.newHttpClient().send(
+          HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/v3/api-docs/library")).build(),
+          HttpResponse.BodyHandlers.ofString());
+      if (response.statusCode() != 200) {
+        throw new IllegalStateException("OpenAPI spec request failed with status " + response.statusCode());
+      }
+      Files.createDirectories(output.getParent());
+      Files.writeString(output, response.body());
+    }
+  }
+}
@@ -3,9 +3,15 @@ package com.udemy.demo.model.respository;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.InstanceOfAssertFactories.OPTIONAL;
 
+import com.udemy.demo.api.dto.BookDTO;
 import com.udemy.demo.api.model.entity.Books;
 import com.udemy.demo.model.repository.BooksRepository;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import org.assertj.core.api.Assertions;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -13,6 +19,10 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
 import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 
@@ -118,6 +128,99 @@ public class BookRepositoryTest {
 
 
 
+  @Test
+  @DisplayName("Deve incrementar a versão ao atualizar e recusar a cópia com versão antiga")
+  public void updateBookVersionTest(){
+    Books book=createNewBook("123");
+    entityManager.persist(book);
+    entityManager.flush();
+    Long version=book.getVersion();
+
+    Books changed=Books.builder().id(book.getId()).isbn("123").title("Outro").author("Fulano").version(version).build();
+    Books updated=booksRepository.saveAndFlush(changed);
+
+    assertThat(updated.getVersion()).isEqualTo(version+1);
+    Books stale=Books.builder().id(book.getId()).isbn("123").title("Antigo").author("Fulano").version(version).build();
+    Assertions.assertThatThrownBy(()->booksRepository.saveAndFlush(stale))
+        .isInstanceOf(ObjectOptimisticLockingFailureException.class);
+  }
+
+  @Test
+  @DisplayName("Deve buscar livros a partir do último id retornado")
+  public void findAfterTest(){
+    Books first=entityManager.persist(createNewBook("123"));
+    Books second=entityManager.persist(Books.builder().isbn("456").author("Maria").title("Domain Driven Design").build());
+    Books third=entityManager.persist(createNewBook("789"));
+
+    Slice<Books> page=booksRepository.findAfter(0l, PageRequest.of(0,2, Sort.by("id")));
+
+    assertThat(page.getContent()).containsExactly(first,second);
+    assertThat(page.hasNext()).isTrue();
+
+    Slice<Books> next=booksRepository.findAfter(second.getId(), PageRequest.of(0,2, Sort.by("id")));
+
+    assertThat(next.getContent()).containsExactly(third);
+    assertThat(next.hasNext()).isFalse();
+  }
+
+  @Test
+  @DisplayName("Deve retornar somente os isbns já cadastrados")
+  public void findExistingIsbnsTest(){
+    entityManager.persist(createNewBook("123"));
+    entityManager.persist(createNewBook("456"));
+
+    List<String> existing=booksRepository.findExistingIsbns(Arrays.asList("123","789","456"));
+
+    assertThat(existing).containsExactlyInAnyOrder("123","456");
+  }
+
+  @Test
+  @DisplayName("Deve ler todos os livros em ordem de id para a exportação")
+  public void streamAllTest(){
+    Books first=entityManager.persist(createNewBook("123"));
+    Books second=entityManager.persist(createNewBook("456"));
+
+    List<BookDTO> result;
+    try (Stream<BookDTO> books=booksRepository.streamAll()) {
+      result=books.collect(Collectors.toList());
+    }
+
+    assertThat(result).extracting(BookDTO::getId).containsExactly(first.getId(),second.getId());
+    assertThat(result.get(1).getIsbn()).isEqualTo("456");
+    assertThat(booksRepository.findDtoByIdIn(Arrays.asList(second.getId()))).extracting(BookDTO::getIsbn).containsExactly("456");
+  }
+
+  @Test
+  @DisplayName("Deve paginar os livros direto no dto respeitando a ordenação")
+  public void findAllDtoTest(){
+    entityManager.persist(Books.builder().isbn("123").author("Joao").title("Refactoring").build());
+    Books clean=entityManager.persist(Books.builder().isbn("456").author("Joao").title("Clean Code").build());
+
+    Slice<BookDTO> page=booksRepository.findAllDto(PageRequest.of(0,1,Sort.by("title")));
+
+    assertThat(page.hasNext()).isTrue();
+    assertThat(page.getContent()).containsExactly(new BookDTO(clean.getId(),"Clean Code","Joao","456"));
+    assertThat(booksRepository.countAll()).isEqualTo(2);
+  }
+
+  @Test
+  @DisplayName("Deve ler só as colunas dos campos pedidos, em todos os livros ou nos ids informados")
+  public void findFieldsTest(){
+    Books refactoring=entityManager.persist(Books.builder().isbn("123").author("Joao").title("Refactoring").build());
+    Books clean=entityManager.persist(Books.builder().isbn("456").author("Joao").title("Clean Code").build());
+
+    Slice<Map<String,Object>> page=booksRepository.findFields(Arrays.asList("id","isbn"),null,PageRequest.of(0,1));
+
+    assertThat(page.hasNext()).isTrue();
+    assertThat(page.getContent()).containsExactly(Map.of("id",refactoring.getId(),"isbn","123"));
+
+    Slice<Map<String,Object>> byIds=booksRepository.findFields(Arrays.asList("title"),
+        Arrays.asList(refactoring.getId(),clean.getId()),PageRequest.of(0,10,Sort.by("title")));
+
+    assertThat(byIds.hasNext()).isFalse();
+    assertThat(byIds.getContent()).containsExactly(Map.of("title","Clean Code"),Map.of("title","Refactoring"));
+  }
+
   private Books createNewBook(String isbn) {
     return Books.builder().isbn(isbn).author("Joao").title("Clean Code").build();
   }
@@ -0,0 +1,136 @@
+package com.udemy.demo.model.respository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.udemy.demo.api.dto.LateLoanDTO;
+import com.udemy.demo.api.dto.LoanDTO;
+import com.udemy.demo.api.mapper.DtoMapper;
+import com.udemy.demo.api.model.entity.Books;
+import com.udemy.demo.api.model.entity.Loan;
+import com.udemy.demo.model.repository.LoanRepository;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+//conta os comandos sql de cada listagem, o livro de cada empréstimo não pode gerar um select por linha
+@ExtendWith(SpringExtension.class)
+@ActiveProfiles("test")
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+public class LoanQueryStatementCountTest {
+
+  static final int LOANS = 10;
+
+  @Autowired
+  TestEntityManager entityManager;
+
+  @Autowired
+  LoanRepository loanRepository;
+
+  DtoMapper mapper = new DtoMapper();
+
+  Statistics statistics;
+
+  Books firstBook;
+
+  @BeforeEach
+  public void setup() {
+    for (int i = 0; i < LOANS; i++) {
+      Books book = entityManager.persist(Books.builder().isbn("isbn" + i).author("Joao").title("Livro " + i).build());
+      entityManager.persist(Loan.builder().book(book).customer("Fulano").loanDate(LocalDate.now()).build());
+      if (firstBook == null) {
+        firstBook = book;
+      }
+    }
+    //sem isso os livros viriam do contexto de persistência sem ir à base
+    entityManager.flush();
+    entityManager.clear();
+    statistics = entityManager.getEntityManager().getEntityManagerFactory()
+        .unwrap(SessionFactory.class).getStatistics();
+    statistics.clear();
+  }
+
+  @Test
+  @DisplayName("Deve listar empréstimos por isbn ou customer com um único select")
+  public void findByBookIsbnOrCustomerStatementsTest() {
+    List<LoanDTO> page = toDto(loanRepository.findByBookIsbnOrCustomer(null, "Fulano", PageRequest.of(0, LOANS)).getContent());
+
+    assertThat(page).hasSize(LOANS).allMatch(loan -> loan.getBook().getTitle() != null);
+    assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+  }
+
+  @Test
+  @DisplayName("Deve paginar empréstimos por cursor com um único select")
+  public void findByBookIsbnOrCustomerAfterStatementsTest() {
+    List<LoanDTO> page = toDto(loanRepository.findByBookIsbnOrCustomerAfter(null, "Fulano", 0l,
+        PageRequest.of(0, LOANS, Sort.by("id"))).getContent());
+
+    assertThat(page).hasSize(LOANS);
+    assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+  }
+
+  @Test
+  @DisplayName("Deve listar empréstimos do livro sem buscar o livro de novo por linha")
+  public void findByBookStatementsTest() {
+    List<LoanDTO> page = toDto(loanRepository.findByBook(firstBook, PageRequest.of(0, LOANS)).getContent());
+
+    assertThat(page).hasSize(1);
+    assertThat(statistics.getPrepareStatementCount()).isLessThanOrEqualTo(2);
+  }
+
+  @Test
+  @DisplayName("Deve listar os empréstimos do livro direto no dto sem carregar entidades")
+  public void findDtoByBookStatementsTest() {
+    List<LoanDTO> page = loanRepository.findDtoByBook(firstBook, PageRequest.of(0, LOANS)).getContent();
+
+    assertThat(page).hasSize(1);
+    assertThat(page.get(0).getBook().getTitle()).isEqualTo("Livro 0");
+    assertThat(page.get(0).getIsbn()).isEqualTo("isbn0");
+    //a primeira página veio incompleta, então o spring data nem executa o count
+    assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+    //nenhuma entidade foi carregada no contexto de persistência
+    assertThat(statistics.getEntityLoadCount()).isZero();
+  }
+
+  @Test
+  @DisplayName("Deve listar só os campos pedidos dos empréstimos do livro sem o livro no select")
+  public void findFieldsByBookStatementsTest() {
+    List<Map<String, Object>> page = loanRepository.findFieldsByBook(Arrays.asList("id", "customer"), firstBook.getId(),
+        PageRequest.of(0, LOANS)).getContent();
+
+    assertThat(page).hasSize(1);
+    assertThat(page.get(0)).containsOnlyKeys("id", "customer");
+    assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+    assertThat(statistics.getEntityLoadCount()).isZero();
+    //o filtro é a fk do empréstimo, então nada no jpql leva ao join com books
+    assertThat(statistics.getQueries()).containsExactly("select l.id, l.customer from Loan l where l.book.id = :bookId order by l.id asc");
+  }
+
+  @Test
+  @DisplayName("Deve ler um bloco de atrasados com um único select, sem carregar entidades")
+  public void findLateLoansStatementsTest() {
+    List<LateLoanDTO> late = loanRepository.findLateLoansAfter(LocalDate.now(), 0l, PageRequest.of(0, LOANS));
+
+    assertThat(late).hasSize(LOANS);
+    assertThat(statistics.getEntityLoadCount()).isZero();
+    assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+  }
+
+  private List<LoanDTO> toDto(List<Loan> loans) {
+    return loans.stream().map(mapper::toDto).collect(Collectors.toList());
+  }
+}
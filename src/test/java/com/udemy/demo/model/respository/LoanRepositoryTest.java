@@ -2,22 +2,29 @@ package com.udemy.demo.model.respository;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
+import com.udemy.demo.api.dto.LateLoanDTO;
+import com.udemy.demo.api.dto.LoanDTO;
 import com.udemy.demo.api.model.entity.Books;
 import com.udemy.demo.api.model.entity.Loan;
 import com.udemy.demo.model.repository.BooksRepository;
 import com.udemy.demo.model.repository.LoanRepository;
 import java.time.LocalDate;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import java.util.Optional;
-import org.apache.tomcat.jni.Local;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
 import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
-import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 
@@ -36,19 +43,15 @@ public class LoanRepositoryTest {
   LoanRepository loanRepository;
 
   @Test
-  @DisplayName("Deve retornar verificar se existe emprestimo não devolvido para o livro")
+  @DisplayName("Deve retornar o livro com emprestimo não devolvido pela coluna de empréstimo ativo")
   public void returnTrueWhenIsbnExists() {
     Loan loan = createAndPersistLoan(LocalDate.now());
     Books book = loan.getBook();
     //execução
-    boolean exists = loanRepository.existsByBookAndNotReturned(book);
-
-    //verificacao
-    //verifica se é verdade que emprestimo nao retornou
-    assertThat(exists).isTrue();
+    Set<Long> active = loanRepository.findActiveBookIds(Arrays.asList(book.getId(), -1l));
 
     //verificação
-    assertThat(exists).isTrue();//verdadeiro
+    assertThat(active).containsExactly(book.getId());
   }
 
   @Test
@@ -56,19 +59,61 @@ public class LoanRepositoryTest {
   public void findByBookIsbnOrCustomer() {
     Loan loan=createAndPersistLoan(LocalDate.now());
 
-    Page<Loan> result=loanRepository.findByBookIsbnOrCustomer("123","Fulano", PageRequest.of(0,10));
+    Slice<Loan> result=loanRepository.findByBookIsbnOrCustomer("123","Fulano", PageRequest.of(0,10));
 
     assertThat(result.getContent()).hasSize(1);
     assertThat(result.getContent()).contains(loan);
     assertThat(result.getPageable().getPageSize()).isEqualTo(10);
     assertThat(result.getPageable().getPageNumber()).isEqualTo(0);
-    assertThat(result.getTotalElements()).isEqualTo(1);
+    assertThat(result.hasNext()).isFalse();
+    assertThat(loanRepository.countByBookIsbnOrCustomer("123","Fulano")).isEqualTo(1);
+
+  }
+
+  @Test
+  @DisplayName("Deve buscar empréstimos pelo customer a partir do último id retornado")
+  public void findByBookIsbnOrCustomerAfter() {
+    Loan first=createAndPersistLoan(LocalDate.now(),"1");
+    Loan second=createAndPersistLoan(LocalDate.now(),"2");
+    Loan third=createAndPersistLoan(LocalDate.now(),"3");
+
+    Slice<Loan> page=loanRepository.findByBookIsbnOrCustomerAfter(null,"Fulano",0l, PageRequest.of(0,2, Sort.by("id")));
+
+    assertThat(page.getContent()).containsExactly(first,second);
+    assertThat(page.hasNext()).isTrue();
+
+    Slice<Loan> next=loanRepository.findByBookIsbnOrCustomerAfter(null,"Fulano",second.getId(), PageRequest.of(0,2, Sort.by("id")));
+
+    assertThat(next.getContent()).containsExactly(third);
+    assertThat(next.hasNext()).isFalse();
+  }
+
+  @Test
+  @DisplayName("Deve ler só os campos pedidos dos empréstimos, com os do livro num mapa aninhado")
+  public void findFieldsByBookIsbnOrCustomer() {
+    Loan first=createAndPersistLoan(LocalDate.now(),"1");
+    Loan second=createAndPersistLoan(LocalDate.now(),"2");
+
+    Slice<Map<String,Object>> page=loanRepository.findFieldsByBookIsbnOrCustomer(Arrays.asList("id","isbn","book.title"),
+        null,"Fulano",PageRequest.of(0,1));
+
+    assertThat(page.hasNext()).isTrue();
+    assertThat(page.getContent()).containsExactly(Map.of("id",first.getId(),"isbn","1","book",Map.of("title","Clean Code")));
 
+    Slice<Map<String,Object>> byBook=loanRepository.findFieldsByBook(Arrays.asList("id","customer"),
+        second.getBook().getId(),PageRequest.of(0,10));
+
+    assertThat(byBook.getContent()).containsExactly(Map.of("id",second.getId(),"customer","Fulano"));
+    assertThat(byBook.hasNext()).isFalse();
   }
 
   public Loan createAndPersistLoan(LocalDate loanDate) {
+    return createAndPersistLoan(loanDate, "123");
+  }
+
+  //o isbn é único, então cada empréstimo do mesmo teste usa um livro com isbn diferente
+  public Loan createAndPersistLoan(LocalDate loanDate, String isbn) {
     //cenário
-    String isbn = "123";
     Books book = createNewBook(isbn);
     entityManager.persist(book);
     Loan loan = Loan.builder().book(book).customer("Fulano").loanDate(loanDate).build();
@@ -81,9 +126,9 @@ public class LoanRepositoryTest {
   @DisplayName("Deve obter emprestimo cuja data do emprestimo for menor ou igual a 3 dias atras e nao retornados")
   public void findByLoanDateLessThanAndNotReturned(){
     Loan loan= createAndPersistLoan(LocalDate.now().minusDays(5));
-    List<Loan> result= loanRepository.findByLoanDateLessThanAndNotReturned(LocalDate.now().minusDays(4));
+    List<LateLoanDTO> result= loanRepository.findLateLoansAfter(LocalDate.now().minusDays(4),0l,PageRequest.of(0,10));
 
-    assertThat(result).hasSize(1).contains(loan);
+    assertThat(result).extracting(LateLoanDTO::getId).containsExactly(loan.getId());
 
   }
 
@@ -91,12 +136,83 @@ public class LoanRepositoryTest {
   @DisplayName("Deve retornar vazio quando não houver emprestimos atrasados")
   public void notFindByLoanDateLessThanAndNotReturned(){
     Loan loan= createAndPersistLoan(LocalDate.now());
-    List<Loan> result= loanRepository.findByLoanDateLessThanAndNotReturned(LocalDate.now().minusDays(4));
+    List<LateLoanDTO> result= loanRepository.findLateLoansAfter(LocalDate.now().minusDays(4),0l,PageRequest.of(0,10));
 
     assertThat(result).isEmpty();
 
   }
 
+  @Test
+  @DisplayName("Deve buscar em blocos os emails dos empréstimos atrasados a partir do último id")
+  public void findLateLoansAfter(){
+    Loan first=createAndPersistLoan(LocalDate.now().minusDays(5),"1");
+    createAndPersistLoan(LocalDate.now(),"2");
+    Loan third=createAndPersistLoan(LocalDate.now().minusDays(6),"3");
+    Loan returned=createAndPersistLoan(LocalDate.now().minusDays(6),"4");
+    returned.setReturned(true);
+    entityManager.persist(returned);
+
+    List<LateLoanDTO> result= loanRepository.findLateLoansAfter(LocalDate.now().minusDays(4),0l,PageRequest.of(0,1));
+    assertThat(result).extracting(LateLoanDTO::getId).containsExactly(first.getId());
+
+    result= loanRepository.findLateLoansAfter(LocalDate.now().minusDays(4),first.getId(),PageRequest.of(0,10));
+    assertThat(result).extracting(LateLoanDTO::getId).containsExactly(third.getId());
+  }
+
+  @Test
+  @DisplayName("Deve ler os empréstimos do filtro em ordem de id para a exportação")
+  public void streamByBookIsbnOrCustomer(){
+    Loan first=createAndPersistLoan(LocalDate.now(),"1");
+    Loan second=createAndPersistLoan(LocalDate.now(),"2");
+    second.setCustomer("Ciclano");
+    entityManager.persist(second);
+
+    List<LoanDTO> all;
+    try (Stream<LoanDTO> loans=loanRepository.streamByBookIsbnOrCustomer(null,null)) {
+      all=loans.collect(Collectors.toList());
+    }
+    List<LoanDTO> filtered;
+    try (Stream<LoanDTO> loans=loanRepository.streamByBookIsbnOrCustomer(null,"Ciclano")) {
+      filtered=loans.collect(Collectors.toList());
+    }
+
+    assertThat(all).extracting(LoanDTO::getId).containsExactly(first.getId(),second.getId());
+    assertThat(all.get(0).getBook().getTitle()).isEqualTo("Clean Code");
+    assertThat(all.get(0).getIsbn()).isEqualTo("1");
+    assertThat(filtered).extracting(LoanDTO::getId).containsExactly(second.getId());
+  }
+
+  @Test
+  @DisplayName("Deve devolver o empréstimo num update direto, liberando o livro e incrementando a versão")
+  public void updateReturned(){
+    Loan loan=createAndPersistLoan(LocalDate.now());
+    entityManager.flush();
+
+    int updated=loanRepository.updateReturned(loan.getId(),true,loan.getVersion());
+    entityManager.clear();
+
+    Loan returned=entityManager.find(Loan.class,loan.getId());
+    assertThat(updated).isEqualTo(1);
+    assertThat(returned.getReturned()).isTrue();
+    assertThat(returned.getActiveBookId()).isNull();
+    assertThat(returned.getVersion()).isEqualTo(loan.getVersion()+1);
+  }
+
+  @Test
+  @DisplayName("Não deve alterar o empréstimo com versão desatualizada ou id inexistente")
+  public void updateReturnedStaleVersion(){
+    Loan loan=createAndPersistLoan(LocalDate.now());
+    entityManager.flush();
+
+    assertThat(loanRepository.updateReturned(loan.getId(),true,loan.getVersion()+1)).isZero();
+    assertThat(loanRepository.updateReturned(-1l,true,null)).isZero();
+    entityManager.clear();
+
+    Loan notReturned=entityManager.find(Loan.class,loan.getId());
+    assertThat(notReturned.getReturned()).isNull();
+    assertThat(notReturned.getActiveBookId()).isEqualTo(loan.getBook().getId());
+  }
+
   private Books createNewBook(String isbn) {
     return Books.builder().isbn(isbn).author("Joao").title("Clean Code").build();
   }
@@ -0,0 +1,98 @@
+package com.udemy.demo.model.respository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.LocalDate;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+//confere com explain no h2 que as consultas dos repositories usam os índices criados pelas migrations;
+//o sql é o mesmo que o hibernate gera para cada consulta, só com os aliases simplificados
+@ExtendWith(SpringExtension.class)
+@ActiveProfiles("test")
+@DataJpaTest
+public class QueryIndexPlanTest {
+
+  @Autowired
+  JdbcTemplate jdbcTemplate;
+
+  @Test
+  @DisplayName("Deve buscar livro por isbn pelo índice único")
+  public void findByIsbnPlanTest() {
+    String plan = explain("select b.id, b.author, b.isbn, b.title from books b where b.isbn = ?", "123");
+
+    assertThat(plan).contains("PUBLIC.UK_BOOKS_ISBN: ISBN = ");
+  }
+
+  @Test
+  @DisplayName("Deve listar os empréstimos do livro por índice, já na ordem do id")
+  public void findByBookPlanTest() {
+    String plan = explain("select l.id, b.isbn, l.customer, l.customer_email, b.id, b.title, b.author "
+        + "from loan l inner join books b on l.id_book = b.id where l.id_book = ? and l.id > ? order by l.id limit 10", 1l, 0l);
+
+    //o h2 escolhe entre o índice da fk e o ix_loan_book_returned, os dois começam por id_book
+    assertThat(plan).containsPattern("PUBLIC\\.\\w+: ID_BOOK = ").doesNotContain("tableScan");
+  }
+
+  @Test
+  @DisplayName("Deve buscar empréstimos do customer pelo índice de customer")
+  public void findByCustomerPlanTest() {
+    String plan = explain("select l.id from loan l where l.customer = ? order by l.id limit 10", "Fulano");
+
+    assertThat(plan).contains("PUBLIC.IX_LOAN_CUSTOMER: CUSTOMER = ");
+  }
+
+  @Test
+  @DisplayName("Deve buscar os empréstimos atrasados pelo índice de data e devolução")
+  public void findLateLoansPlanTest() {
+    String plan = explain("select l.id, b.id from loan l inner join books b on l.id_book = b.id "
+        + "where l.loan_date <= ? and (l.returned is null or l.returned = false)", LocalDate.now());
+
+    assertThat(plan).contains("PUBLIC.IX_LOAN_DATE_RETURNED: LOAN_DATE <= ").doesNotContain("tableScan");
+  }
+
+  @Test
+  @DisplayName("Deve ler os empréstimos atrasados por cursor na ordem da chave primária")
+  public void findLateLoansAfterPlanTest() {
+    String plan = explain("select l.id, l.customer, l.customer_email from loan l "
+        + "where l.id > ? and l.loan_date <= ? and (l.returned is null or l.returned = false) order by l.id limit 50",
+        0l, LocalDate.now());
+
+    //a chave primária já entrega na ordem do cursor, então o h2 lê pelo id e para no limite
+    assertThat(plan).containsPattern("PUBLIC\\.PRIMARY_KEY_\\w*: ID > ").contains("index sorted");
+  }
+
+  @Test
+  @DisplayName("Deve paginar livros por cursor pela chave primária")
+  public void findBooksAfterPlanTest() {
+    String plan = explain("select b.id from books b where b.id > ? order by b.id limit 10", 0l);
+
+    assertThat(plan).containsPattern("PUBLIC\\.PRIMARY_KEY_\\w*: ID > ").contains("index sorted");
+  }
+
+  @Test
+  @DisplayName("Deve resolver os isbns do lote pelo índice único")
+  public void findByIsbnInPlanTest() {
+    String plan = explain("select b.id, b.author, b.isbn, b.title from books b where b.isbn in (?, ?)", "123", "456");
+
+    assertThat(plan).contains("PUBLIC.UK_BOOKS_ISBN: ISBN IN(");
+  }
+
+  @Test
+  @DisplayName("Deve conferir os empréstimos ativos do lote pela unique de livro ativo")
+  public void findActiveBookIdsPlanTest() {
+    String plan = explain("select l.active_book_id from loan l where l.active_book_id in (?, ?)", 1l, 2l);
+
+    assertThat(plan).containsPattern("PUBLIC\\.UK_LOAN_ACTIVE_BOOK\\w*: ACTIVE_BOOK_ID IN\\(");
+  }
+
+  private String explain(String sql, Object... args) {
+    return jdbcTemplate.queryForObject("explain " + sql, String.class, args);
+  }
+}
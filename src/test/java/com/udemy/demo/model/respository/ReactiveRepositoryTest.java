@@ -0,0 +1,194 @@
+package com.udemy.demo.model.respository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.udemy.demo.api.model.entity.BookRow;
+import com.udemy.demo.api.model.entity.LoanRow;
+import com.udemy.demo.model.repository.BooksReactiveRepository;
+import com.udemy.demo.model.repository.LoanReactiveRepository;
+import io.r2dbc.spi.ConnectionFactories;
+import io.r2dbc.spi.ConnectionFactoryOptions;
+import java.time.LocalDate;
+import java.util.Arrays;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import reactor.test.StepVerifier;
+
+//o flyway cria o esquema pelo jdbc e os repositories reativos usam a mesma base em memória pelo r2dbc,
+//como no profile reactive; sem transação do teste, cada comando é confirmado na hora
+@ExtendWith(SpringExtension.class)
+@ActiveProfiles("test")
+@JdbcTest(properties = "spring.datasource.url=jdbc:h2:mem:reactive-repository;DB_CLOSE_DELAY=-1")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class ReactiveRepositoryTest {
+
+  @Autowired
+  JdbcTemplate jdbcTemplate;
+
+  BooksReactiveRepository booksRepository;
+
+  LoanReactiveRepository loanRepository;
+
+  @BeforeEach
+  public void setup() {
+    DatabaseClient client = DatabaseClient.create(ConnectionFactories.get(
+        ConnectionFactoryOptions.parse("r2dbc:h2:mem:///reactive-repository?options=DB_CLOSE_DELAY=-1")
+            .mutate()
+            .option(ConnectionFactoryOptions.USER, "sa")
+            .build()));
+    booksRepository = new BooksReactiveRepository(client);
+    loanRepository = new LoanReactiveRepository(client);
+  }
+
+  @AfterEach
+  public void cleanup() {
+    jdbcTemplate.update("delete from loan");
+    jdbcTemplate.update("delete from books");
+  }
+
+  private BookRow createNewBook(String isbn, String title) {
+    return booksRepository.insert(BookRow.builder().isbn(isbn).author("Fulano").title(title).build()).block();
+  }
+
+  private LoanRow createNewLoan(BookRow book, String customer) {
+    return loanRepository.insert(LoanRow.builder().bookId(book.getId()).customer(customer)
+        .loanDate(LocalDate.now()).build().updateActiveBook()).block();
+  }
+
+  @Test
+  @DisplayName("Deve salvar um livro com id da sequence e encontrá-lo por id e isbn")
+  public void saveBookTest() {
+    BookRow book = createNewBook("123", "Aventuras");
+
+    assertThat(book.getId()).isNotNull();
+    StepVerifier.create(booksRepository.findById(book.getId())).expectNext(book).verifyComplete();
+    StepVerifier.create(booksRepository.findByIsbn("123")).expectNext(book).verifyComplete();
+    StepVerifier.create(booksRepository.existsByIsbn("123")).expectNext(true).verifyComplete();
+    StepVerifier.create(booksRepository.existsByIsbn("321")).expectNext(false).verifyComplete();
+  }
+
+  @Test
+  @DisplayName("Deve atualizar o livro só na versão lida, incrementando a versão")
+  public void updateBookVersionTest() {
+    BookRow book = createNewBook("123", "Aventuras");
+    BookRow stale = BookRow.builder().id(book.getId()).isbn("123").title("Antigo").version(book.getVersion()).build();
+    book.setTitle("Novas aventuras");
+
+    StepVerifier.create(booksRepository.update(book))
+        .assertNext(updated -> assertThat(updated.getVersion()).isEqualTo(1l))
+        .verifyComplete();
+    StepVerifier.create(booksRepository.update(stale))
+        .expectError(ObjectOptimisticLockingFailureException.class)
+        .verify();
+    assertThat(booksRepository.findById(book.getId()).block().getTitle()).isEqualTo("Novas aventuras");
+  }
+
+  @Test
+  @DisplayName("Deve listar os livros na página e ordem pedidas")
+  public void findAllBooksTest() {
+    BookRow c = createNewBook("1", "C");
+    BookRow a = createNewBook("2", "A");
+    BookRow b = createNewBook("3", "B");
+
+    StepVerifier.create(booksRepository.findAll(PageRequest.of(0, 2, Sort.by("title"))))
+        .expectNext(a, b)
+        .verifyComplete();
+    StepVerifier.create(booksRepository.findByIdIn(Arrays.asList(a.getId(), c.getId()), PageRequest.of(0, 10)))
+        .expectNext(c, a)
+        .verifyComplete();
+    StepVerifier.create(booksRepository.count()).expectNext(3l).verifyComplete();
+  }
+
+  @Test
+  @DisplayName("Deve barrar o segundo empréstimo ativo do livro e liberar depois da devolução")
+  public void activeLoanConstraintTest() {
+    BookRow book = createNewBook("123", "Aventuras");
+    LoanRow loan = createNewLoan(book, "Fulano");
+
+    StepVerifier.create(loanRepository.insert(LoanRow.builder().bookId(book.getId()).customer("Ciclano")
+            .loanDate(LocalDate.now()).build().updateActiveBook()))
+        .expectError(DataIntegrityViolationException.class)
+        .verify();
+
+    loan.setReturned(true);
+    loanRepository.update(loan.updateActiveBook()).block();
+
+    assertThat(createNewLoan(book, "Ciclano").getId()).isNotNull();
+  }
+
+  @Test
+  @DisplayName("Deve atualizar o empréstimo só na versão lida, incrementando a versão")
+  public void updateLoanVersionTest() {
+    BookRow book = createNewBook("789", "Aventuras");
+    LoanRow loan = createNewLoan(book, "Fulano");
+    LoanRow stale = loanRepository.findById(loan.getId()).block();
+    assertThat(stale.getVersion()).isEqualTo(0l);
+    loan.setCustomer("Ciclano");
+
+    StepVerifier.create(loanRepository.update(loan))
+        .assertNext(updated -> assertThat(updated.getVersion()).isEqualTo(1l))
+        .verifyComplete();
+    stale.setReturned(true);
+    StepVerifier.create(loanRepository.update(stale.updateActiveBook()))
+        .expectError(ObjectOptimisticLockingFailureException.class)
+        .verify();
+    LoanRow saved = loanRepository.findById(loan.getId()).block();
+    assertThat(saved.getCustomer()).isEqualTo("Ciclano");
+    assertThat(saved.getActiveBookId()).isEqualTo(book.getId());
+    assertThat(saved.getVersion()).isEqualTo(1l);
+  }
+
+  @Test
+  @DisplayName("Deve devolver o empréstimo num update direto só na versão informada")
+  public void updateReturnedTest() {
+    BookRow book = createNewBook("456", "Aventuras");
+    LoanRow loan = createNewLoan(book, "Fulano");
+
+    StepVerifier.create(loanRepository.updateReturned(loan.getId(), true, 1l)).expectNext(0l).verifyComplete();
+    StepVerifier.create(loanRepository.updateReturned(loan.getId(), true, 0l)).expectNext(1l).verifyComplete();
+    StepVerifier.create(loanRepository.updateReturned(-1l, true, null)).expectNext(0l).verifyComplete();
+
+    assertThat(loanRepository.findById(loan.getId()).block().getActiveBookId()).isNull();
+    assertThat(createNewLoan(book, "Ciclano").getId()).isNotNull();
+  }
+
+  @Test
+  @DisplayName("Deve buscar empréstimos por isbn ou cliente com o livro no mesmo join")
+  public void findByBookIsbnOrCustomerTest() {
+    BookRow book = createNewBook("123", "Aventuras");
+    BookRow other = createNewBook("456", "Outro");
+    LoanRow loan = createNewLoan(book, "Fulano");
+    LoanRow otherLoan = createNewLoan(other, "Fulano");
+
+    StepVerifier.create(loanRepository.findByBookIsbnOrCustomer("123", "Fulano", 10, 0))
+        .assertNext(row -> {
+          assertThat(row.id()).isEqualTo(loan.getId());
+          assertThat(row.isbn()).isEqualTo("123");
+          assertThat(row.title()).isEqualTo("Aventuras");
+        })
+        .assertNext(row -> assertThat(row.id()).isEqualTo(otherLoan.getId()))
+        .verifyComplete();
+    StepVerifier.create(loanRepository.countByBookIsbnOrCustomer("123", null)).expectNext(1l).verifyComplete();
+    StepVerifier.create(loanRepository.findByBook(other.getId(), 10, 0))
+        .assertNext(row -> assertThat(row.bookId()).isEqualTo(other.getId()))
+        .verifyComplete();
+    StepVerifier.create(loanRepository.countByBook(other.getId())).expectNext(1l).verifyComplete();
+  }
+}
@@ -0,0 +1,154 @@
+package com.udemy.demo.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.udemy.demo.api.dto.BookImportErrorDTO;
+import com.udemy.demo.api.dto.BookImportReportDTO;
+import com.udemy.demo.api.model.entity.Books;
+import com.udemy.demo.model.repository.BooksRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mockito;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+
+@ExtendWith(SpringExtension.class)
+@ActiveProfiles("test")
+public class BookImportServiceTest {
+
+  BookImportService service;
+
+  BookSearchIndex searchIndex;
+
+  @MockBean
+  BooksRepository repository;
+
+  @MockBean
+  EntityManager entityManager;
+
+  @MockBean
+  PlatformTransactionManager transactionManager;
+
+  List<List<Books>> savedBatches;
+
+  SimpleMeterRegistry registry;
+
+  @BeforeEach
+  public void setup() {
+    searchIndex = new BookSearchIndex();
+    //lotes de 2 linhas
+    registry = new SimpleMeterRegistry();
+    service = new BookImportServiceImpl(repository, searchIndex, entityManager, transactionManager, registry, 2);
+    savedBatches = new ArrayList<>();
+    when(repository.findExistingIsbns(Mockito.anyCollection())).thenReturn(Collections.emptyList());
+    when(repository.saveAll(Mockito.anyIterable())).thenAnswer(invocation -> {
+      List<Books> books = new ArrayList<>();
+      invocation.<Iterable<Books>>getArgument(0).forEach(books::add);
+      books.forEach(book -> book.setId(Long.valueOf(book.getIsbn())));
+      savedBatches.add(books);
+      return books;
+    });
+  }
+
+  @Test
+  @DisplayName("Deve importar os livros em lotes")
+  public void importInBatchesTest() {
+    BookImportReportDTO report = service.importBooks(rows("1", "2", "3").iterator());
+
+    assertThat(report.getReceived()).isEqualTo(3);
+    assertThat(report.getImported()).isEqualTo(3);
+    assertThat(report.getFailed()).isZero();
+    assertThat(savedBatches).hasSize(2);
+    assertThat(savedBatches.get(0)).extracting(Books::getIsbn).containsExactly("1", "2");
+    verify(repository, times(2)).findExistingIsbns(Mockito.anyCollection());
+    verify(entityManager, times(2)).clear();
+    assertThat(searchIndex.search(Books.builder().isbn("3").build())).containsExactly(3l);
+  }
+
+  @Test
+  @DisplayName("Deve informar as linhas com isbn já cadastrado ou repetido no arquivo")
+  public void duplicatedIsbnTest() {
+    //o isbn 1 já estava na base, os demais passam a existir quando o lote é gravado
+    when(repository.findExistingIsbns(Mockito.anyCollection())).thenAnswer(invocation ->
+        invocation.<Collection<String>>getArgument(0).stream()
+            .filter(isbn -> isbn.equals("1") || savedBatches.stream().flatMap(List::stream).anyMatch(b -> b.getIsbn().equals(isbn)))
+            .collect(Collectors.toList()));
+
+    BookImportReportDTO report = service.importBooks(rows("3", "3", "1", "4", "3").iterator());
+
+    assertThat(report.getImported()).isEqualTo(2);
+    assertThat(report.getFailed()).isEqualTo(3);
+    assertThat(report.getErrors())
+        .extracting(BookImportErrorDTO::getLine, BookImportErrorDTO::getMessage)
+        .containsExactly(
+            tuple(2l, "Isbn duplicado na importação"),
+            tuple(3l, "Isbn Já Cadastrado"),
+            tuple(5l, "Isbn Já Cadastrado"));
+    assertThat(registry.counter(BooksServiceImpl.ISBN_DUPLICATES_COUNTER, "source", "import").count()).isEqualTo(3);
+  }
+
+  @Test
+  @DisplayName("Deve informar as linhas inválidas sem gravá-las")
+  public void invalidRowTest() {
+    List<BookImportRow> rows = new ArrayList<>(rows("1"));
+    rows.add(BookImportRow.invalid(2, "title: must not be empty"));
+
+    BookImportReportDTO report = service.importBooks(rows.iterator());
+
+    assertThat(report.getReceived()).isEqualTo(2);
+    assertThat(report.getImported()).isEqualTo(1);
+    assertThat(report.getErrors()).containsExactly(new BookImportErrorDTO(2l, null, "title: must not be empty"));
+  }
+
+  @Test
+  @DisplayName("Deve informar as linhas do lote que falhou e continuar nos próximos lotes")
+  public void failedBatchTest() {
+    when(repository.saveAll(Mockito.anyIterable()))
+        .thenThrow(new DataIntegrityViolationException("falha"))
+        .thenAnswer(invocation -> invocation.getArgument(0));
+
+    BookImportReportDTO report = service.importBooks(rows("1", "2", "3").iterator());
+
+    assertThat(report.getImported()).isEqualTo(1);
+    assertThat(report.getFailed()).isEqualTo(2);
+    assertThat(report.getErrors()).extracting(BookImportErrorDTO::getIsbn).containsExactly("1", "2");
+  }
+
+  @Test
+  @DisplayName("Deve limitar a quantidade de erros no relatório")
+  public void errorLimitTest() {
+    List<BookImportRow> rows = IntStream.rangeClosed(1, BookImportServiceImpl.MAX_REPORTED_ERRORS + 5)
+        .mapToObj(line -> BookImportRow.invalid(line, "isbn: must not be empty"))
+        .collect(Collectors.toList());
+
+    BookImportReportDTO report = service.importBooks(rows.iterator());
+
+    assertThat(report.getFailed()).isEqualTo(BookImportServiceImpl.MAX_REPORTED_ERRORS + 5);
+    assertThat(report.getErrors()).hasSize(BookImportServiceImpl.MAX_REPORTED_ERRORS);
+  }
+
+  private List<BookImportRow> rows(String... isbns) {
+    List<BookImportRow> rows = new ArrayList<>();
+    for (int i = 0; i < isbns.length; i++) {
+      rows.add(BookImportRow.of(i + 1, Books.builder().title("Livro " + isbns[i]).author("Fulano").isbn(isbns[i]).build()));
+    }
+    return rows;
+  }
+}
@@ -0,0 +1,120 @@
+package com.udemy.demo.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.udemy.demo.api.model.entity.Books;
+import java.util.Arrays;
+import java.util.Iterator;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Sort;
+
+public class BookSearchIndexTest {
+
+  BookSearchIndex index;
+
+  @BeforeEach
+  public void setup() {
+    index = new BookSearchIndex();
+    index.rebuild(Arrays.asList(
+        Books.builder().id(1l).title("Clean Code").author("Robert Martin").isbn("978-0132350884").build(),
+        Books.builder().id(2l).title("Código Limpo").author("Robert Martin").isbn("978-8576082675").build(),
+        Books.builder().id(3l).title("Refactoring").author("Martin Fowler").isbn("978-0134757599").build()));
+  }
+
+  @Test
+  @DisplayName("Deve encontrar livros pelo prefixo das palavras do título ignorando maiúsculas")
+  public void prefixTest() {
+    assertThat(index.search(Books.builder().title("CLEA").build())).containsExactly(1l);
+    assertThat(index.search(Books.builder().title("refact").build())).containsExactly(3l);
+  }
+
+  @Test
+  @DisplayName("Deve ignorar acentos")
+  public void accentsTest() {
+    assertThat(index.search(Books.builder().title("codigo").build())).containsExactly(2l);
+    assertThat(index.search(Books.builder().title("códi").build())).containsExactly(2l);
+  }
+
+  @Test
+  @DisplayName("Deve exigir todos os termos do filtro")
+  public void allTermsTest() {
+    assertThat(index.search(Books.builder().author("martin").build())).containsExactly(1l, 2l, 3l);
+    assertThat(index.search(Books.builder().author("martin").title("c").build())).containsExactly(1l, 2l);
+    assertThat(index.search(Books.builder().author("robert martin").title("refactoring").build())).isEmpty();
+  }
+
+  @Test
+  @DisplayName("Deve buscar pelo isbn sem considerar os hífens")
+  public void isbnTest() {
+    assertThat(index.search(Books.builder().isbn("9780134").build())).containsExactly(3l);
+    assertThat(index.search(Books.builder().isbn("978-85").build())).containsExactly(2l);
+  }
+
+  @Test
+  @DisplayName("Deve substituir os termos ao atualizar e removê-los ao deletar")
+  public void updateAndRemoveTest() {
+    index.add(Books.builder().id(1l).title("Clean Architecture").author("Robert Martin").isbn("978-0134494166").build());
+
+    assertThat(index.search(Books.builder().title("code").build())).isEmpty();
+    assertThat(index.search(Books.builder().title("architecture").build())).containsExactly(1l);
+
+    index.remove(1l);
+
+    assertThat(index.search(Books.builder().title("clean").build())).isEmpty();
+    assertThat(index.size()).isEqualTo(2);
+  }
+
+  @Test
+  @DisplayName("Não deve considerar filtro vazio ou só com separadores")
+  public void emptyFilterTest() {
+    assertThat(index.isFilter(new Books())).isFalse();
+    assertThat(index.isFilter(Books.builder().title(" - ").isbn("").build())).isFalse();
+    assertThat(index.isFilter(Books.builder().author("martin").build())).isTrue();
+  }
+
+  @Test
+  @DisplayName("Deve devolver os ids na ordem pedida, com o id como desempate")
+  public void sortTest() {
+    Books filter = Books.builder().author("martin").build();
+
+    assertThat(index.search(filter, Sort.by("title"))).containsExactly(1l, 2l, 3l);
+    assertThat(index.search(filter, Sort.by(Sort.Direction.DESC, "title"))).containsExactly(3l, 2l, 1l);
+    assertThat(index.search(filter, Sort.by("author").and(Sort.by(Sort.Direction.DESC, "isbn")))).containsExactly(3l, 2l, 1l);
+    assertThat(index.search(filter, Sort.by(Sort.Direction.DESC, "author"))).containsExactly(1l, 2l, 3l);
+    //propriedade que o índice não ordena fica na ordem dos ids
+    assertThat(index.search(filter, Sort.by("version"))).containsExactly(1l, 2l, 3l);
+  }
+
+  @Test
+  @DisplayName("Deve manter no índice novo as alterações feitas durante a reconstrução")
+  public void changesDuringRebuildTest() {
+    Iterator<Books> books = Arrays.asList(
+        Books.builder().id(1l).title("Clean Code").author("Robert Martin").isbn("978-0132350884").build(),
+        Books.builder().id(3l).title("Refactoring").author("Martin Fowler").isbn("978-0134757599").build()).iterator();
+
+    index.rebuild(() -> new Iterator<Books>() {
+      @Override
+      public boolean hasNext() {
+        return books.hasNext();
+      }
+
+      @Override
+      public Books next() {
+        Books book = books.next();
+        if (book.getId() == 3l) {
+          //livro 1 já lido para o índice novo: removido e um livro novo incluído antes da troca
+          index.remove(1l);
+          index.add(Books.builder().id(4l).title("Domain Driven Design").author("Eric Evans").isbn("978-0321125217").build());
+        }
+        return book;
+      }
+    });
+
+    assertThat(index.search(Books.builder().title("clean").build())).isEmpty();
+    assertThat(index.search(Books.builder().title("domain").build())).containsExactly(4l);
+    assertThat(index.search(Books.builder().author("martin").build())).containsExactly(3l);
+    assertThat(index.size()).isEqualTo(2);
+  }
+}
@@ -0,0 +1,161 @@
+package com.udemy.demo.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.udemy.demo.api.model.entity.Books;
+import com.udemy.demo.model.repository.BooksRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.Optional;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+@ExtendWith(SpringExtension.class)
+@ActiveProfiles("test")
+public class BookServiceCacheTest {
+
+  //proxy por classe como o spring boot configura na aplicação
+  @Configuration
+  @EnableCaching(proxyTargetClass = true)
+  @Import({BooksServiceImpl.class, BookSearchIndex.class})
+  static class CacheConfig {
+    @Bean
+    public MeterRegistry meterRegistry() {
+      return new SimpleMeterRegistry();
+    }
+
+    @Bean
+    public CacheManager cacheManager() {
+      return new CaffeineCacheManager(BooksServiceImpl.BOOKS_BY_ID_CACHE, BooksServiceImpl.BOOKS_BY_ISBN_CACHE,
+          BooksRepository.COUNT_CACHE);
+    }
+  }
+
+  @Autowired
+  BookService service;
+
+  @Autowired
+  CacheManager cacheManager;
+
+  @MockBean
+  BooksRepository repository;
+
+  @BeforeEach
+  public void setup() {
+    cacheManager.getCacheNames().forEach(name -> cacheManager.getCache(name).clear());
+  }
+
+  @Test
+  @DisplayName("Deve buscar o livro por id na base uma única vez")
+  public void getByIdCachedTest() {
+    when(repository.findById(1l)).thenReturn(Optional.of(book()));
+
+    service.getById(1l);
+    Optional<Books> book = service.getById(1l);
+
+    assertThat(book).contains(book());
+    verify(repository, times(1)).findById(1l);
+  }
+
+  @Test
+  @DisplayName("Deve buscar o livro por isbn na base uma única vez")
+  public void getByIsbnCachedTest() {
+    when(repository.findByisbn("123")).thenReturn(Optional.of(book()));
+
+    service.getByIsbn("123");
+    Optional<Books> book = service.getByIsbn("123");
+
+    assertThat(book).contains(book());
+    verify(repository, times(1)).findByisbn("123");
+  }
+
+  @Test
+  @DisplayName("Não deve guardar no cache livro inexistente")
+  public void notFoundNotCachedTest() {
+    when(repository.findById(1l)).thenReturn(Optional.empty());
+
+    service.getById(1l);
+    when(repository.findById(1l)).thenReturn(Optional.of(book()));
+    Optional<Books> book = service.getById(1l);
+
+    assertThat(book).isPresent();
+    verify(repository, times(2)).findById(1l);
+  }
+
+  @Test
+  @DisplayName("Deve limpar o cache ao atualizar o livro")
+  public void evictOnUpdateTest() {
+    Books updated = Books.builder().id(1l).title("Novo título").author("Fulano").isbn("321").build();
+    when(repository.findById(1l)).thenReturn(Optional.of(book()));
+    when(repository.findByisbn("123")).thenReturn(Optional.of(book()));
+    when(repository.save(Mockito.any(Books.class))).thenReturn(updated);
+    service.getById(1l);
+    service.getByIsbn("123");
+
+    service.update(updated);
+    when(repository.findById(1l)).thenReturn(Optional.of(updated));
+    when(repository.findByisbn("123")).thenReturn(Optional.empty());
+
+    assertThat(service.getById(1l)).contains(updated);
+    assertThat(service.getByIsbn("123")).isEmpty();
+  }
+
+  @Test
+  @DisplayName("Deve limpar o cache ao deletar o livro")
+  public void evictOnDeleteTest() {
+    when(repository.findById(1l)).thenReturn(Optional.of(book()));
+    service.getById(1l);
+
+    service.delete(book());
+    when(repository.findById(1l)).thenReturn(Optional.empty());
+
+    assertThat(service.getById(1l)).isEmpty();
+  }
+
+  @Test
+  @DisplayName("Deve limpar o isbn do cache ao salvar o livro")
+  public void evictOnSaveTest() {
+    Books book = Books.builder().title("Aventuras").author("Fulano").isbn("123").build();
+    when(repository.save(book)).thenReturn(book());
+    cacheManager.getCache(BooksServiceImpl.BOOKS_BY_ISBN_CACHE).put("123", book());
+
+    service.save(book);
+
+    assertThat(cacheManager.getCache(BooksServiceImpl.BOOKS_BY_ISBN_CACHE).get("123")).isNull();
+  }
+
+  @Test
+  @DisplayName("Deve limpar o total de livros em cache ao salvar e ao deletar")
+  public void evictCountOnSaveAndDeleteTest() {
+    Books book = Books.builder().title("Aventuras").author("Fulano").isbn("123").build();
+    when(repository.save(book)).thenReturn(book());
+    cacheManager.getCache(BooksRepository.COUNT_CACHE).put("all", 1l);
+
+    service.save(book);
+    assertThat(cacheManager.getCache(BooksRepository.COUNT_CACHE).get("all")).isNull();
+
+    cacheManager.getCache(BooksRepository.COUNT_CACHE).put("all", 1l);
+    service.delete(book());
+    assertThat(cacheManager.getCache(BooksRepository.COUNT_CACHE).get("all")).isNull();
+  }
+
+  private Books book() {
+    return Books.builder().id(1l).title("Aventuras").author("Fulano").isbn("123").build();
+  }
+}
@@ -2,15 +2,23 @@ package com.udemy.demo.service;
 
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 
+import com.udemy.demo.api.dto.BookDTO;
 import com.udemy.demo.api.model.entity.Books;
 import com.udemy.demo.exception.BusinessException;
 import com.udemy.demo.model.repository.BooksRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import org.assertj.core.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
@@ -20,8 +28,11 @@ import org.mockito.Mockito;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.data.domain.Example;
 import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.domain.Sort;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 
@@ -33,9 +44,15 @@ public class BookServiceTest {
   @MockBean
   private BooksRepository repository;
 
+  BookSearchIndex searchIndex;
+
+  SimpleMeterRegistry registry;
+
   @BeforeEach
   public void setup(){
-    this.service=new BooksServiceImpl(repository);
+    this.searchIndex=new BookSearchIndex();
+    this.registry=new SimpleMeterRegistry();
+    this.service=new BooksServiceImpl(repository,searchIndex,registry);
   }
 
 
@@ -75,6 +92,7 @@ public class BookServiceTest {
 
     //verifica se nao está chamado método salvar
     verify(repository,Mockito.never()).save(book);
+    assertThat(registry.counter(BooksServiceImpl.ISBN_DUPLICATES_COUNTER,"source","api").count()).isEqualTo(1);
 
   }
 
@@ -201,20 +219,130 @@ public class BookServiceTest {
 
     //cenário
     Books book=createValidBook();
-    List<Books> lista=Arrays.asList(book);
-    Page<Books> page=new PageImpl<Books>(lista, PageRequest.of(0,10),1);
+    book.setId(1l);
+    searchIndex.add(book);
+    searchIndex.add(Books.builder().id(2l).isbn("456").author("Maria").title("Domain Driven Design").build());
+    List<BookDTO> lista=Arrays.asList(new BookDTO(1l,book.getTitle(),book.getAuthor(),book.getIsbn()));
 
-    Mockito.when(repository.findAll(Mockito.any(Example.class),Mockito.any(PageRequest.class))).thenReturn(page);
+    Mockito.when(repository.findDtoByIdIn(Arrays.asList(1l))).thenReturn(lista);
 
     //execução
-    Page<Books> result=service.find(book,PageRequest.of(0,10));
+    Page<BookDTO> result=service.find(Books.builder().title("clean").build(),PageRequest.of(0,10));
 
 
     //verificações
-    assertThat(result.getTotalElements()).isEqualTo(1);//la no cenário eu passei 1
-    assertThat(result.getContent()).isEqualTo(lista); //la no cenário eu passei uma lista
-    assertThat(result.getPageable().getPageNumber()).isEqualTo(0); //lá no cenário eu passei 0
-    assertThat(result.getPageable().getPageSize()).isEqualTo(10); //la no cenário eu passei 10
+    assertThat(result.getTotalElements()).isEqualTo(1);//só o primeiro livro tem clean no título
+    assertThat(result.getContent()).isEqualTo(lista);
+    assertThat(result.getPageable().getPageNumber()).isEqualTo(0);
+    assertThat(result.getPageable().getPageSize()).isEqualTo(10);
+    //a busca não faz like na base
+    verify(repository,Mockito.never()).findAll(Mockito.any(Example.class),Mockito.any(PageRequest.class));
+  }
+
+  @Test
+  @DisplayName("Deve ordenar a busca no índice e levar para a base só os ids da página")
+  public void findBookSortedTest() {
+    searchIndex.add(Books.builder().id(1l).isbn("1").author("Joao").title("Clean Code").build());
+    searchIndex.add(Books.builder().id(2l).isbn("2").author("Joao").title("Clean Architecture").build());
+    searchIndex.add(Books.builder().id(3l).isbn("3").author("Joao").title("Clean Agile").build());
+    List<BookDTO> lista=Arrays.asList(new BookDTO(1l,"Clean Code","Joao","1"));
+    Mockito.when(repository.findDtoByIdIn(Arrays.asList(1l),PageRequest.of(0,1,Sort.by("title"))))
+        .thenReturn(new SliceImpl<>(lista));
+
+    Page<BookDTO> result=service.find(Books.builder().title("clean").build(),PageRequest.of(2,1,Sort.by("title")));
+
+    assertThat(result.getContent()).isEqualTo(lista);
+    assertThat(result.getTotalElements()).isEqualTo(3);
+    verify(repository).findDtoByIdIn(Mockito.anyCollection(),Mockito.any(Pageable.class));
+  }
+
+  @Test
+  @DisplayName("Deve retornar página vazia sem consultar a base quando nenhum livro atender o filtro")
+  public void findBookNotIndexedTest() {
+    Page<BookDTO> result=service.find(Books.builder().title("inexistente").build(),PageRequest.of(0,10));
+
+    assertThat(result.getTotalElements()).isEqualTo(0);
+    assertThat(result.getContent()).isEmpty();
+    Mockito.verifyNoInteractions(repository);
+  }
+
+  @Test
+  @DisplayName("Deve buscar todos os livros quando não houver filtro")
+  public void findBookWithoutFilterTest() {
+    List<BookDTO> lista=Arrays.asList(new BookDTO(1l,"Clean Code","Joao","123"));
+    Mockito.when(repository.findAllDto(PageRequest.of(0,1))).thenReturn(new SliceImpl<>(lista, PageRequest.of(0,1),true));
+    Mockito.when(repository.countAll()).thenReturn(3l);
+
+    Page<BookDTO> result=service.find(new Books(),PageRequest.of(0,1));
+
+    assertThat(result.getContent()).isEqualTo(lista);
+    assertThat(result.getTotalElements()).isEqualTo(3);
+  }
+
+  @Test
+  @DisplayName("Deve buscar livros sem calcular o total quando pedido sem count")
+  public void findSliceWithoutFilterTest() {
+    Slice<BookDTO> slice=new SliceImpl<BookDTO>(Arrays.asList(new BookDTO(1l,"Clean Code","Joao","123")), PageRequest.of(0,10),false);
+    Mockito.when(repository.findAllDto(PageRequest.of(0,10))).thenReturn(slice);
+
+    Slice<BookDTO> result=service.findSlice(new Books(),PageRequest.of(0,10));
+
+    assertThat(result).isEqualTo(slice);
+    verify(repository,never()).countAll();
+  }
+
+  @Test
+  @DisplayName("Deve filtrar pelo índice lendo da base só os campos pedidos dos ids da página")
+  public void findFieldsTest() {
+    for (long id = 1; id <= 3; id++) {
+      searchIndex.add(Books.builder().id(id).title("Clean Code "+id).author("Joao").isbn(String.valueOf(id)).build());
+    }
+    List<String> fields=Arrays.asList("id","isbn");
+    List<Map<String,Object>> rows=Arrays.asList(Map.of("id",3l,"isbn","3"));
+    Mockito.when(repository.findFields(fields,Arrays.asList(3l),Pageable.unpaged()))
+        .thenReturn(new SliceImpl<>(rows));
+
+    Page<Map<String,Object>> result=service.findFields(Books.builder().title("clean").build(),PageRequest.of(1,2),fields);
+
+    assertThat(result.getContent()).isEqualTo(rows);
+    assertThat(result.getTotalElements()).isEqualTo(3);
+    verify(repository,never()).countAll();
+  }
+
+  @Test
+  @DisplayName("Deve manter o índice de busca atualizado ao salvar, atualizar e deletar")
+  public void searchIndexUpdatedTest() {
+    Books book=createNewBook();
+    Mockito.when(repository.save(book)).thenReturn(Books.builder().id(1l).author("Joao").title("Clean Code").isbn("123").build());
+
+    service.save(book);
+    assertThat(searchIndex.search(Books.builder().title("clean").build())).containsExactly(1l);
+
+    Books updating=Books.builder().id(1l).author("Joao").title("Refactoring").isbn("123").build();
+    Mockito.when(repository.save(updating)).thenReturn(updating);
+    service.update(updating);
+    assertThat(searchIndex.search(Books.builder().title("clean").build())).isEmpty();
+    assertThat(searchIndex.search(Books.builder().title("refac").build())).containsExactly(1l);
+
+    service.delete(updating);
+    assertThat(searchIndex.size()).isZero();
+  }
+
+  @Test
+  @DisplayName("Deve reconstruir o índice de busca lendo os livros em blocos por id")
+  public void rebuildSearchIndexTest() {
+    Books first=Books.builder().id(1l).author("Joao").title("Clean Code").isbn("123").build();
+    Books second=Books.builder().id(5l).author("Maria").title("Refactoring").isbn("456").build();
+    Mockito.when(repository.findAfter(Mockito.eq(0l),Mockito.any(Pageable.class)))
+        .thenReturn(new SliceImpl<>(Arrays.asList(first),PageRequest.of(0,1),true));
+    Mockito.when(repository.findAfter(Mockito.eq(1l),Mockito.any(Pageable.class)))
+        .thenReturn(new SliceImpl<>(Arrays.asList(second),PageRequest.of(0,1),false));
+
+    ((BooksServiceImpl) service).rebuildSearchIndex();
+
+    assertThat(searchIndex.size()).isEqualTo(2);
+    assertThat(searchIndex.search(Books.builder().title("refac").build())).containsExactly(5l);
+    verify(repository,times(2)).findAfter(Mockito.anyLong(),Mockito.any(Pageable.class));
   }
 
   @Test
@@ -234,4 +362,36 @@ public class BookServiceTest {
     verify(repository,times(1)).findByisbn(isbn);
   }
 
+  @Test
+  @DisplayName("Deve exportar por cursor todos os livros quando não houver filtro")
+  public void exportWithoutFilterTest() {
+    BookDTO book=new BookDTO(1l,"Clean Code","Joao","123");
+    Mockito.when(repository.streamAll()).thenReturn(Stream.of(book));
+    List<BookDTO> exported=new ArrayList<>();
+
+    service.export(new Books(),exported::add);
+
+    assertThat(exported).containsExactly(book);
+  }
+
+  @Test
+  @DisplayName("Deve exportar os livros do filtro lendo os ids do índice em blocos")
+  public void exportWithFilterTest() {
+    for (long id=1; id<=1001; id++) {
+      searchIndex.add(Books.builder().id(id).title("Clean Code "+id).author("Joao").isbn(String.valueOf(id)).build());
+    }
+    Mockito.when(repository.findDtoByIdIn(Mockito.anyCollection())).thenAnswer(invocation ->
+        invocation.<Collection<Long>>getArgument(0).stream()
+            .map(id -> new BookDTO(id,"Clean Code "+id,"Joao",String.valueOf(id)))
+            .collect(Collectors.toList()));
+    List<BookDTO> exported=new ArrayList<>();
+
+    service.export(Books.builder().title("clean").build(),exported::add);
+
+    assertThat(exported).hasSize(1001);
+    assertThat(exported.get(1000).getId()).isEqualTo(1001l);
+    verify(repository,times(2)).findDtoByIdIn(Mockito.anyCollection());
+    verify(repository,Mockito.never()).streamAll();
+  }
+
 }
@@ -0,0 +1,269 @@
+package com.udemy.demo.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import com.udemy.demo.api.model.entity.DeadLetterEmail;
+import com.udemy.demo.model.repository.DeadLetterEmailRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.SimpleMailMessage;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+@ExtendWith(SpringExtension.class)
+@ActiveProfiles("test")
+public class EmailDispatcherTest {
+
+  @MockBean
+  JavaMailSender mailSender;
+
+  @MockBean
+  DeadLetterEmailRepository deadLetterRepository;
+
+  SimpleMeterRegistry registry;
+
+  EmailDispatcher dispatcher;
+
+  @BeforeEach
+  public void setup() {
+    registry = new SimpleMeterRegistry();
+    //fila de 1 email, 1 worker, 3 tentativas com espera de 10ms e 100ms de espera por vaga
+    dispatcher = new EmailDispatcher(mailSender, deadLetterRepository, registry,
+        1, 1, 3, Duration.ofMillis(10), Duration.ofMillis(100), false);
+  }
+
+  @AfterEach
+  public void tearDown() throws InterruptedException {
+    dispatcher.shutdown();
+  }
+
+  @Test
+  @DisplayName("Deve enviar o email pela fila")
+  public void sendTest() throws Exception {
+    SimpleMailMessage message = message();
+
+    dispatcher.submit(message).get(5, TimeUnit.SECONDS);
+
+    verify(mailSender).send(message);
+    assertThat(registry.get("library.email.send").timer().count()).isEqualTo(1);
+  }
+
+  @Test
+  @DisplayName("Deve enviar o email em uma virtual thread quando habilitadas")
+  public void sendOnVirtualThreadTest() throws Exception {
+    dispatcher.shutdown();
+    dispatcher = new EmailDispatcher(mailSender, deadLetterRepository, registry,
+        1, 1, 3, Duration.ofMillis(10), Duration.ofMillis(100), true);
+    SimpleMailMessage message = message();
+    AtomicReference<Thread> sender = new AtomicReference<>();
+    doAnswer(invocation -> {
+      sender.set(Thread.currentThread());
+      return null;
+    }).when(mailSender).send(message);
+
+    dispatcher.submit(message).get(5, TimeUnit.SECONDS);
+
+    assertThat(sender.get().isVirtual()).isTrue();
+    assertThat(sender.get().getName()).isEqualTo("email-worker-1");
+  }
+
+  @Test
+  @DisplayName("Deve tentar de novo quando o envio falhar")
+  public void retryTest() throws Exception {
+    SimpleMailMessage message = message();
+    doThrow(new MailSendException("smtp fora")).doNothing().when(mailSender).send(message);
+
+    dispatcher.submit(message).get(5, TimeUnit.SECONDS);
+
+    verify(mailSender, times(2)).send(message);
+    verify(deadLetterRepository, never()).save(Mockito.any());
+    assertThat(registry.get("library.email.retries").counter().count()).isEqualTo(1);
+  }
+
+  @Test
+  @DisplayName("Deve gravar na dead letter depois de esgotar as tentativas")
+  public void deadLetterTest() {
+    SimpleMailMessage message = message();
+    doThrow(new MailSendException("smtp fora")).when(mailSender).send(message);
+
+    CompletableFuture<Void> result = dispatcher.submit(message);
+    Throwable ex = catchThrowable(() -> result.get(5, TimeUnit.SECONDS));
+
+    assertThat(ex).isInstanceOf(ExecutionException.class).hasCauseInstanceOf(MailSendException.class);
+    verify(mailSender, times(3)).send(message);
+    ArgumentCaptor<DeadLetterEmail> deadLetter = ArgumentCaptor.forClass(DeadLetterEmail.class);
+    verify(deadLetterRepository).save(deadLetter.capture());
+    assertThat(deadLetter.getValue().getRecipients()).isEqualTo("cliente@email.com");
+    assertThat(deadLetter.getValue().getAttempts()).isEqualTo(3);
+    assertThat(deadLetter.getValue().getLastError()).isEqualTo("smtp fora");
+    assertThat(registry.get("library.email.dead.letters").counter().count()).isEqualTo(1);
+  }
+
+  @Test
+  @DisplayName("Deve terminar o future com erro mesmo quando a gravação da dead letter falhar")
+  public void deadLetterSaveFailureTest() {
+    SimpleMailMessage message = message();
+    doThrow(new MailSendException("smtp fora")).when(mailSender).send(message);
+    Mockito.when(deadLetterRepository.save(Mockito.any())).thenThrow(new DataAccessResourceFailureException("base fora"));
+
+    CompletableFuture<Void> result = dispatcher.submit(message);
+    Throwable ex = catchThrowable(() -> result.get(5, TimeUnit.SECONDS));
+
+    assertThat(ex).isInstanceOf(ExecutionException.class).hasCauseInstanceOf(MailSendException.class);
+    verify(deadLetterRepository).save(Mockito.any());
+  }
+
+  @Test
+  @DisplayName("Deve reagendar a nova tentativa quando a fila estiver cheia e enviar quando abrir vaga")
+  public void retryQueueFullTest() throws Exception {
+    dispatcher.shutdown();
+    //espera por vaga de 5s, maior que o tempo com a fila cheia
+    dispatcher = new EmailDispatcher(mailSender, deadLetterRepository, registry,
+        1, 1, 3, Duration.ofMillis(50), Duration.ofSeconds(5), false);
+    SimpleMailMessage failing = message();
+    SimpleMailMessage blocked = message("outro@email.com");
+    CountDownLatch sending = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    doThrow(new MailSendException("smtp fora")).doNothing().when(mailSender).send(failing);
+    doAnswer(invocation -> {
+      sending.countDown();
+      release.await();
+      return null;
+    }).when(mailSender).send(blocked);
+
+    //a primeira tentativa falha, o worker fica preso no segundo email e o terceiro ocupa a única vaga da fila
+    CompletableFuture<Void> retried = dispatcher.submit(failing);
+    CompletableFuture<Void> first = dispatcher.submit(blocked);
+    sending.await(5, TimeUnit.SECONDS);
+    CompletableFuture<Void> queued = dispatcher.submit(message("terceiro@email.com"));
+    Thread.sleep(300);
+
+    assertThat(retried).isNotDone();
+    release.countDown();
+    CompletableFuture.allOf(retried, first, queued).get(5, TimeUnit.SECONDS);
+    verify(mailSender, times(2)).send(failing);
+    verify(deadLetterRepository, never()).save(Mockito.any());
+  }
+
+  @Test
+  @DisplayName("Deve gravar na dead letter a nova tentativa que não encontrar vaga na fila a tempo")
+  public void retryQueueFullTimeoutTest() throws Exception {
+    SimpleMailMessage failing = message();
+    SimpleMailMessage blocked = message("outro@email.com");
+    CountDownLatch sending = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    doThrow(new MailSendException("smtp fora")).doNothing().when(mailSender).send(failing);
+    doAnswer(invocation -> {
+      sending.countDown();
+      release.await();
+      return null;
+    }).when(mailSender).send(blocked);
+
+    CompletableFuture<Void> retried = dispatcher.submit(failing);
+    CompletableFuture<Void> first = dispatcher.submit(blocked);
+    sending.await(5, TimeUnit.SECONDS);
+    dispatcher.submit(message("terceiro@email.com"));
+    Throwable ex = catchThrowable(() -> retried.get(5, TimeUnit.SECONDS));
+    release.countDown();
+    first.get(5, TimeUnit.SECONDS);
+
+    assertThat(ex).isInstanceOf(ExecutionException.class).hasCauseInstanceOf(RejectedExecutionException.class);
+    verify(mailSender, times(1)).send(failing);
+    ArgumentCaptor<DeadLetterEmail> deadLetter = ArgumentCaptor.forClass(DeadLetterEmail.class);
+    verify(deadLetterRepository).save(deadLetter.capture());
+    assertThat(deadLetter.getValue().getAttempts()).isEqualTo(1);
+  }
+
+  @Test
+  @DisplayName("Deve gravar na dead letter as novas tentativas agendadas quando a fila for encerrada")
+  public void shutdownWithScheduledRetryTest() throws Exception {
+    dispatcher.shutdown();
+    //nova tentativa só depois de 1 minuto
+    dispatcher = new EmailDispatcher(mailSender, deadLetterRepository, registry,
+        1, 1, 3, Duration.ofMinutes(1), Duration.ofMillis(100), false);
+    SimpleMailMessage message = message();
+    doThrow(new MailSendException("smtp fora")).when(mailSender).send(message);
+
+    CompletableFuture<Void> result = dispatcher.submit(message);
+    verify(mailSender, Mockito.timeout(5000)).send(message);
+    while (registry.get("library.email.retries").counter().count() < 1) {
+      Thread.sleep(10);
+    }
+    dispatcher.shutdown();
+
+    Throwable ex = catchThrowable(() -> result.get(5, TimeUnit.SECONDS));
+    assertThat(ex).isInstanceOf(ExecutionException.class).hasCauseInstanceOf(RejectedExecutionException.class);
+    ArgumentCaptor<DeadLetterEmail> deadLetter = ArgumentCaptor.forClass(DeadLetterEmail.class);
+    verify(deadLetterRepository).save(deadLetter.capture());
+    assertThat(deadLetter.getValue().getAttempts()).isEqualTo(1);
+  }
+
+  @Test
+  @DisplayName("Deve recusar o email quando a fila continuar cheia")
+  public void backpressureTest() throws Exception {
+    CountDownLatch sending = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    SimpleMailMessage blocked = message();
+    doAnswer(invocation -> {
+      sending.countDown();
+      release.await();
+      return null;
+    }).when(mailSender).send(blocked);
+    doNothing().when(mailSender).send(Mockito.<SimpleMailMessage>argThat(m -> m != blocked));
+
+    //o worker fica preso no primeiro email e o segundo ocupa a única vaga da fila
+    CompletableFuture<Void> first = dispatcher.submit(blocked);
+    sending.await(5, TimeUnit.SECONDS);
+    CompletableFuture<Void> queued = dispatcher.submit(message());
+    Throwable ex = catchThrowable(() -> dispatcher.submit(message()));
+
+    assertThat(ex).isInstanceOf(RejectedExecutionException.class);
+    assertThat(dispatcher.queueDepth()).isEqualTo(1);
+    assertThat(registry.get("library.email.rejected").counter().count()).isEqualTo(1);
+    //o recusado fica na dead letter para o reenvio
+    ArgumentCaptor<DeadLetterEmail> deadLetter = ArgumentCaptor.forClass(DeadLetterEmail.class);
+    verify(deadLetterRepository).save(deadLetter.capture());
+    assertThat(deadLetter.getValue().getAttempts()).isEqualTo(0);
+
+    release.countDown();
+    first.get(5, TimeUnit.SECONDS);
+    queued.get(5, TimeUnit.SECONDS);
+  }
+
+  private SimpleMailMessage message() {
+    return message("cliente@email.com");
+  }
+
+  //mensagens iguais valem como o mesmo argumento no mock, então cada uma vai para um destinatário
+  private SimpleMailMessage message(String to) {
+    SimpleMailMessage message = new SimpleMailMessage();
+    message.setTo(to);
+    message.setSubject("Livro com empréstimo atrasado");
+    message.setText("Devolva o livro");
+    return message;
+  }
+}
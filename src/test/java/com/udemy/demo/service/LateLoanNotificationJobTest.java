@@ -0,0 +1,296 @@
+package com.udemy.demo.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.icegreen.greenmail.junit5.GreenMailExtension;
+import com.icegreen.greenmail.store.StoredMessage;
+import com.icegreen.greenmail.user.GreenMailUser;
+import com.icegreen.greenmail.util.ServerSetupTest;
+import com.udemy.demo.api.dto.LateLoanDTO;
+import com.udemy.demo.api.model.entity.DeadLetterEmail;
+import com.udemy.demo.api.model.entity.JobCheckpoint;
+import com.udemy.demo.model.repository.DeadLetterEmailRepository;
+import com.udemy.demo.model.repository.JobCheckpointRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+import jakarta.mail.Message.RecipientType;
+import jakarta.mail.internet.MimeMessage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+@ExtendWith(SpringExtension.class)
+@ActiveProfiles("test")
+public class LateLoanNotificationJobTest {
+
+  //servidor smtp local no lugar do mailtrap
+  @RegisterExtension
+  static GreenMailExtension greenMail = new GreenMailExtension(ServerSetupTest.SMTP);
+
+  @MockBean
+  LoanService loanService;
+
+  @MockBean
+  JobCheckpointRepository checkpointRepository;
+
+  @MockBean
+  DeadLetterEmailRepository deadLetterRepository;
+
+  EmailDispatcher dispatcher;
+
+  LateLoanNotificationJob job;
+
+  @BeforeEach
+  public void setup() {
+    JavaMailSenderImpl mailSender = new JavaMailSenderImpl();
+    mailSender.setHost("localhost");
+    mailSender.setPort(ServerSetupTest.SMTP.getPort());
+    //fila de 10 emails com 2 workers e 2 tentativas, chunk de 3 empréstimos e 2 destinatários por email
+    dispatcher = new EmailDispatcher(mailSender, deadLetterRepository, new SimpleMeterRegistry(),
+        10, 2, 2, Duration.ofMillis(10), Duration.ofSeconds(1), false);
+    job = new LateLoanNotificationJob(loanService, new EmailServiceImpl(dispatcher), checkpointRepository,
+        deadLetterRepository, 3, 2);
+    when(checkpointRepository.findById(LateLoanNotificationJob.NAME)).thenReturn(Optional.empty());
+  }
+
+  @AfterEach
+  public void tearDown() throws InterruptedException {
+    job.shutdown();
+    dispatcher.shutdown();
+  }
+
+  @Test
+  @DisplayName("Deve enviar os atrasados em blocos e em emails com poucos destinatários")
+  public void sendInBatchesTest() throws Exception {
+    when(loanService.getLateLoansAfter(0l, 3)).thenReturn(lateLoans(1, 3));
+    when(loanService.getLateLoansAfter(3l, 3)).thenReturn(lateLoans(4, 5));
+
+    job.run("Devolva o livro").get(10, TimeUnit.SECONDS);
+
+    //bloco 1: 3 destinatários em 2 emails, bloco 2: 2 destinatários em 1 email; o greenmail guarda uma cópia
+    //por destinatário do envelope, e o remetente no To recebe uma cópia de cada email
+    assertThat(greenMail.getReceivedMessages()).hasSize(8);
+    assertThat(inbox(EmailServiceImpl.FROM)).hasSize(3);
+    assertThat(inbox("cliente5@email.com")).hasSize(1);
+
+    ArgumentCaptor<JobCheckpoint> checkpoint = ArgumentCaptor.forClass(JobCheckpoint.class);
+    verify(checkpointRepository, Mockito.atLeastOnce()).save(checkpoint.capture());
+    assertThat(checkpoint.getValue().getLastId()).isEqualTo(5l);
+    assertThat(checkpoint.getValue().getFinished()).isTrue();
+  }
+
+  @Test
+  @DisplayName("Não deve expor o endereço de um cliente aos outros clientes do mesmo lote")
+  public void recipientsPrivacyTest() throws Exception {
+    when(loanService.getLateLoansAfter(0l, 3)).thenReturn(lateLoans(1, 2));
+
+    job.run("Devolva o livro").get(10, TimeUnit.SECONDS);
+
+    for (long id = 1; id <= 2; id++) {
+      String customer = "cliente" + id + "@email.com";
+      String other = "cliente" + (3 - id) + "@email.com";
+      List<MimeMessage> received = inbox(customer);
+      assertThat(received).hasSize(1);
+      assertThat(received.get(0).getRecipients(RecipientType.TO)).extracting(Object::toString).containsExactly(EmailServiceImpl.FROM);
+      assertThat(received.get(0).getRecipients(RecipientType.CC)).isNull();
+      assertThat(received.get(0).getRecipients(RecipientType.BCC)).isNull();
+      assertThat(headers(received.get(0))).doesNotContain(other);
+    }
+  }
+
+  @Test
+  @DisplayName("Deve continuar do último bloco enviado quando a execução do dia foi interrompida")
+  public void resumeTest() throws Exception {
+    JobCheckpoint saved = JobCheckpoint.builder().name(LateLoanNotificationJob.NAME)
+        .runDate(LocalDate.now()).lastId(3l).finished(false).build();
+    when(checkpointRepository.findById(LateLoanNotificationJob.NAME)).thenReturn(Optional.of(saved));
+    when(loanService.getLateLoansAfter(3l, 3)).thenReturn(lateLoans(4, 5));
+
+    job.run("Devolva o livro").get(10, TimeUnit.SECONDS);
+
+    verify(loanService, never()).getLateLoansAfter(0l, 3);
+    //2 clientes e a cópia do remetente
+    assertThat(greenMail.getReceivedMessages()).hasSize(3);
+    assertThat(saved.getFinished()).isTrue();
+  }
+
+  @Test
+  @DisplayName("Deve começar do início quando o checkpoint for de outro dia")
+  public void newDayTest() throws Exception {
+    JobCheckpoint yesterday = JobCheckpoint.builder().name(LateLoanNotificationJob.NAME)
+        .runDate(LocalDate.now().minusDays(1)).lastId(3l).finished(true).build();
+    when(checkpointRepository.findById(LateLoanNotificationJob.NAME)).thenReturn(Optional.of(yesterday));
+    when(loanService.getLateLoansAfter(0l, 3)).thenReturn(lateLoans(1, 1));
+
+    job.run("Devolva o livro").get(10, TimeUnit.SECONDS);
+
+    assertThat(inbox("cliente1@email.com")).hasSize(1);
+  }
+
+  @Test
+  @DisplayName("Deve gravar na dead letter os emails que falharem e concluir a execução")
+  public void failureTest() throws Exception {
+    greenMail.stop();
+    when(loanService.getLateLoansAfter(0l, 3)).thenReturn(lateLoans(1, 3));
+
+    job.run("Devolva o livro").get(10, TimeUnit.SECONDS);
+
+    //2 emails no bloco, cada um tentado 2 vezes antes de ir para a dead letter
+    ArgumentCaptor<DeadLetterEmail> deadLetters = ArgumentCaptor.forClass(DeadLetterEmail.class);
+    verify(deadLetterRepository, times(2)).save(deadLetters.capture());
+    //o reenvio precisa dos clientes da cópia oculta, não do remetente que vai no To
+    assertThat(deadLetters.getAllValues()).extracting(DeadLetterEmail::getRecipients)
+        .containsExactlyInAnyOrder("cliente1@email.com,cliente2@email.com", "cliente3@email.com");
+    ArgumentCaptor<JobCheckpoint> checkpoint = ArgumentCaptor.forClass(JobCheckpoint.class);
+    verify(checkpointRepository, Mockito.atLeastOnce()).save(checkpoint.capture());
+    assertThat(checkpoint.getValue().getFinished()).isTrue();
+    greenMail.start();
+  }
+
+  @Test
+  @DisplayName("Deve retornar sem esperar a leitura e o envio e ignorar uma nova execução enquanto a anterior não terminar")
+  public void runInBackgroundTest() throws Exception {
+    CountDownLatch reading = new CountDownLatch(1);
+    when(loanService.getLateLoansAfter(0l, 3)).thenAnswer(invocation -> {
+      reading.await(10, TimeUnit.SECONDS);
+      return lateLoans(1, 1);
+    });
+
+    CompletableFuture<Void> first = job.run("Devolva o livro");
+    CompletableFuture<Void> second = job.run("Devolva o livro");
+
+    assertThat(first).isNotDone();
+    assertThat(second).isDone();
+    reading.countDown();
+    first.get(10, TimeUnit.SECONDS);
+    verify(loanService, times(1)).getLateLoansAfter(0l, 3);
+    assertThat(inbox("cliente1@email.com")).hasSize(1);
+  }
+
+  @Test
+  @DisplayName("Deve seguir com os outros lotes e concluir o bloco quando a fila recusar um lote")
+  public void rejectedBatchTest() throws Exception {
+    EmailService emailService = Mockito.mock(EmailService.class);
+    Mockito.when(emailService.sendEmailsAsync(Mockito.anyString(), Mockito.anyList()))
+        .thenThrow(new RejectedExecutionException("Email queue is full"))
+        .thenReturn(CompletableFuture.completedFuture(null));
+    job.shutdown();
+    job = new LateLoanNotificationJob(loanService, emailService, checkpointRepository, deadLetterRepository, 3, 2);
+    when(loanService.getLateLoansAfter(0l, 3)).thenReturn(lateLoans(1, 3));
+
+    job.run("Devolva o livro").get(10, TimeUnit.SECONDS);
+
+    verify(emailService, times(2)).sendEmailsAsync(Mockito.anyString(), Mockito.anyList());
+    ArgumentCaptor<JobCheckpoint> checkpoint = ArgumentCaptor.forClass(JobCheckpoint.class);
+    verify(checkpointRepository, Mockito.atLeastOnce()).save(checkpoint.capture());
+    assertThat(checkpoint.getValue().getLastId()).isEqualTo(3l);
+    assertThat(checkpoint.getValue().getFinished()).isTrue();
+  }
+
+  @Test
+  @DisplayName("Deve reenviar os emails do dia que estão na dead letter e tirá-los da dead letter")
+  public void resendDeadLettersTest() throws Exception {
+    List<DeadLetterEmail> deadLetters = Arrays.asList(deadLetter(1l, "cliente1@email.com,cliente2@email.com"),
+        deadLetter(2l, "cliente3@email.com"));
+    when(deadLetterRepository.findMaxId()).thenReturn(2l);
+    when(deadLetterRepository.findToResend(Mockito.eq(LocalDate.now().atStartOfDay()), Mockito.eq(0l), Mockito.eq(2l), Mockito.any()))
+        .thenReturn(deadLetters);
+
+    job.resendDeadLetters().get(10, TimeUnit.SECONDS);
+
+    assertThat(inbox("cliente1@email.com")).hasSize(1);
+    assertThat(inbox("cliente2@email.com")).hasSize(1);
+    assertThat(inbox("cliente3@email.com").get(0).getContent().toString().trim()).isEqualTo("Devolva o livro");
+    verify(deadLetterRepository).deleteAllInBatch(deadLetters);
+    verify(deadLetterRepository, never()).save(Mockito.any());
+  }
+
+  @Test
+  @DisplayName("Deve gravar de novo na dead letter o email que falhar no reenvio e tirar o antigo")
+  public void resendDeadLettersFailureTest() throws Exception {
+    greenMail.stop();
+    List<DeadLetterEmail> deadLetters = Collections.singletonList(deadLetter(1l, "cliente1@email.com"));
+    when(deadLetterRepository.findMaxId()).thenReturn(1l);
+    when(deadLetterRepository.findToResend(Mockito.any(), Mockito.eq(0l), Mockito.eq(1l), Mockito.any()))
+        .thenReturn(deadLetters);
+
+    job.resendDeadLetters().get(10, TimeUnit.SECONDS);
+
+    ArgumentCaptor<DeadLetterEmail> saved = ArgumentCaptor.forClass(DeadLetterEmail.class);
+    verify(deadLetterRepository).save(saved.capture());
+    assertThat(saved.getValue().getRecipients()).isEqualTo("cliente1@email.com");
+    verify(deadLetterRepository).deleteAllInBatch(deadLetters);
+    greenMail.start();
+  }
+
+  @Test
+  @DisplayName("Não deve reenviar nada com a dead letter vazia")
+  public void resendEmptyDeadLetterTest() throws Exception {
+    when(deadLetterRepository.findMaxId()).thenReturn(null);
+
+    job.resendDeadLetters().get(10, TimeUnit.SECONDS);
+
+    verify(deadLetterRepository, never()).findToResend(Mockito.any(), Mockito.any(), Mockito.any(), Mockito.any());
+    assertThat(greenMail.getReceivedMessages()).isEmpty();
+  }
+
+  @Test
+  @DisplayName("Não deve enviar nada sem empréstimos atrasados")
+  public void noLateLoansTest() throws Exception {
+    when(loanService.getLateLoansAfter(0l, 3)).thenReturn(Collections.emptyList());
+
+    job.run("Devolva o livro").get(10, TimeUnit.SECONDS);
+
+    assertThat(greenMail.getReceivedMessages()).isEmpty();
+  }
+
+  private DeadLetterEmail deadLetter(Long id, String recipients) {
+    return DeadLetterEmail.builder().id(id).recipients(recipients).subject("Livro com empréstimo atrasado")
+        .text("Devolva o livro").attempts(2).failedAt(LocalDateTime.now()).build();
+  }
+
+  private List<LateLoanDTO> lateLoans(long from, long to) {
+    return LongStream.rangeClosed(from, to)
+        .mapToObj(id -> new LateLoanDTO(id, "Cliente " + id, "cliente" + id + "@email.com"))
+        .collect(Collectors.toList());
+  }
+
+  //cópias entregues na caixa do destinatário do envelope; o To de todas é o remetente
+  private List<MimeMessage> inbox(String email) throws Exception {
+    GreenMailUser user = greenMail.getUserManager().getUserByEmail(email);
+    assertThat(user).as("nenhum email entregue para " + email).isNotNull();
+    return greenMail.getManagers().getImapHostManager().getInbox(user).getMessages().stream()
+        .map(StoredMessage::getMimeMessage)
+        .collect(Collectors.toList());
+  }
+
+  //todos os cabeçalhos da cópia entregue, inclusive os que o servidor acrescenta
+  private String headers(MimeMessage message) throws Exception {
+    return String.join("\n", Collections.list(message.getAllHeaderLines()));
+  }
+}
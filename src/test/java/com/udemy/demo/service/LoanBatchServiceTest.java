@@ -0,0 +1,198 @@
+package com.udemy.demo.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.udemy.demo.api.dto.LoanBatchResultDTO;
+import com.udemy.demo.api.dto.LoanBatchStatus;
+import com.udemy.demo.api.dto.LoanDTO;
+import com.udemy.demo.api.dto.LoanReturnDTO;
+import com.udemy.demo.api.model.entity.Books;
+import com.udemy.demo.api.model.entity.Loan;
+import com.udemy.demo.exception.BusinessException;
+import com.udemy.demo.model.repository.BooksRepository;
+import com.udemy.demo.model.repository.LoanRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManagerFactory;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+//cada lote roda nas suas próprias transações, como na api; as estatísticas do hibernate contam os selects
+@ExtendWith(SpringExtension.class)
+@ActiveProfiles("test")
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class LoanBatchServiceTest {
+
+  @Autowired
+  BooksRepository booksRepository;
+
+  @Autowired
+  LoanRepository loanRepository;
+
+  @Autowired
+  PlatformTransactionManager transactionManager;
+
+  @Autowired
+  EntityManagerFactory entityManagerFactory;
+
+  LoanBatchService service;
+
+  SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+  List<Books> books = new ArrayList<>();
+
+  @BeforeEach
+  public void setup() {
+    LoanService loanService = new LoanServiceImpl(loanRepository, registry);
+    service = new LoanBatchServiceImpl(loanRepository, booksRepository, loanService, transactionManager, registry, 4);
+    for (int i = 0; i < 3; i++) {
+      books.add(booksRepository.save(Books.builder().isbn("lote-" + i).author("Joao").title("Clean Code").build()));
+    }
+  }
+
+  @AfterEach
+  public void cleanup() {
+    books.forEach(book -> loanRepository.deleteAll(loanRepository.findByBook(book, Pageable.unpaged())));
+    booksRepository.deleteAll(books);
+  }
+
+  @Test
+  @DisplayName("Deve emprestar o lote com um status por item")
+  public void createAllTest() {
+    loanRepository.save(Loan.builder().book(books.get(2)).customer("Ciclano").loanDate(LocalDate.now()).build());
+    Statistics statistics = statistics();
+
+    List<LoanBatchResultDTO> results = service.createAll(Arrays.asList(
+        loan("lote-0"), loan("inexistente"), loan("lote-2"), loan(null)));
+    long statements = statistics.getPrepareStatementCount();
+
+    assertThat(results).extracting(LoanBatchResultDTO::getStatus).containsExactly(
+        LoanBatchStatus.CREATED, LoanBatchStatus.NOT_FOUND, LoanBatchStatus.CONFLICT, LoanBatchStatus.INVALID);
+    assertThat(results).extracting(LoanBatchResultDTO::getIndex).containsExactly(0, 1, 2, 3);
+    assertThat(results.get(0).getId()).isNotNull();
+    assertThat(loanRepository.findById(results.get(0).getId())).hasValueSatisfying(loan -> {
+      assertThat(loan.getCustomer()).isEqualTo("Fulano");
+      assertThat(loan.getActiveBookId()).isEqualTo(books.get(0).getId());
+    });
+    assertThat(registry.counter(LoanServiceImpl.CONFLICTS_COUNTER).count()).isEqualTo(1);
+    //um select pelos isbns e um pelos empréstimos ativos; o insert vai no batch jdbc
+    assertThat(statements).isEqualTo(2);
+  }
+
+  @Test
+  @DisplayName("Deve recusar o mesmo livro duas vezes no lote")
+  public void createAllDuplicatedTest() {
+    List<LoanBatchResultDTO> results = service.createAll(Arrays.asList(loan("lote-1"), loan("lote-1")));
+
+    assertThat(results).extracting(LoanBatchResultDTO::getStatus)
+        .containsExactly(LoanBatchStatus.CREATED, LoanBatchStatus.CONFLICT);
+    assertThat(loanRepository.countByBook(books.get(1))).isEqualTo(1);
+  }
+
+  @Test
+  @DisplayName("Deve recusar só o item que o banco não aceitar e gravar os outros")
+  public void createAllItemErrorTest() {
+    //customer maior que a coluna derruba o batch; item a item, só ele falha
+    LoanDTO tooLong = LoanDTO.builder().isbn("lote-1").customer("F".repeat(300)).email("fulano@email.com").build();
+
+    List<LoanBatchResultDTO> results = service.createAll(Arrays.asList(loan("lote-0"), tooLong, loan("lote-2")));
+
+    assertThat(results).extracting(LoanBatchResultDTO::getStatus)
+        .containsExactly(LoanBatchStatus.CREATED, LoanBatchStatus.ERROR, LoanBatchStatus.CREATED);
+    assertThat(results.get(1).getId()).isNull();
+    assertThat(results.get(1).getMessage()).isEqualTo("Loan could not be saved");
+    assertThat(loanRepository.countByBook(books.get(0))).isEqualTo(1);
+    assertThat(loanRepository.countByBook(books.get(1))).isEqualTo(0);
+    assertThat(loanRepository.countByBook(books.get(2))).isEqualTo(1);
+  }
+
+  @Test
+  @DisplayName("Deve recusar lote maior que o limite")
+  public void createAllTooLargeTest() {
+    List<LoanDTO> loans = Collections.nCopies(5, loan("lote-0"));
+
+    assertThatThrownBy(() -> service.createAll(loans)).isInstanceOf(BusinessException.class);
+  }
+
+  @Test
+  @DisplayName("Deve devolver o lote com um select e um update agrupado")
+  public void returnAllTest() {
+    List<Long> ids = books.subList(0, 2).stream()
+        .map(book -> loanRepository.save(Loan.builder().book(book).customer("Fulano").loanDate(LocalDate.now()).build()).getId())
+        .collect(Collectors.toList());
+    Statistics statistics = statistics();
+
+    List<LoanBatchResultDTO> results = service.returnAll(Arrays.asList(
+        new LoanReturnDTO(ids.get(0), true, null), new LoanReturnDTO(-1L, true, null), new LoanReturnDTO(ids.get(1), true, null),
+        new LoanReturnDTO(null, true, null)));
+    long statements = statistics.getPrepareStatementCount();
+
+    assertThat(results).extracting(LoanBatchResultDTO::getStatus).containsExactly(
+        LoanBatchStatus.UPDATED, LoanBatchStatus.NOT_FOUND, LoanBatchStatus.UPDATED, LoanBatchStatus.INVALID);
+    //um select e um update agrupado para os dois empréstimos
+    assertThat(statements).isEqualTo(2);
+    assertThat(loanRepository.findActiveBookIds(List.of(books.get(0).getId()))).isEmpty();
+    assertThat(loanRepository.findActiveBookIds(List.of(books.get(1).getId()))).isEmpty();
+  }
+
+  @Test
+  @DisplayName("Deve recusar só o item que reabre empréstimo de livro emprestado de novo")
+  public void returnAllConflictTest() {
+    Books book = books.get(0);
+    Loan returned = loanRepository.save(Loan.builder().book(book).customer("Fulano").loanDate(LocalDate.now()).returned(true).build());
+    loanRepository.save(Loan.builder().book(book).customer("Ciclano").loanDate(LocalDate.now()).build());
+    Loan other = loanRepository.save(Loan.builder().book(books.get(1)).customer("Fulano").loanDate(LocalDate.now()).build());
+
+    List<LoanBatchResultDTO> results = service.returnAll(Arrays.asList(
+        new LoanReturnDTO(returned.getId(), false, null), new LoanReturnDTO(other.getId(), true, null)));
+
+    assertThat(results).extracting(LoanBatchResultDTO::getStatus)
+        .containsExactly(LoanBatchStatus.CONFLICT, LoanBatchStatus.UPDATED);
+    assertThat(results).extracting(LoanBatchResultDTO::getIndex).containsExactly(0, 1);
+    assertThat(loanRepository.findActiveBookIds(List.of(books.get(1).getId()))).isEmpty();
+  }
+
+  @Test
+  @DisplayName("Deve recusar a devolução com versão desatualizada")
+  public void returnAllStaleVersionTest() {
+    Loan loan = loanRepository.save(Loan.builder().book(books.get(0)).customer("Fulano").loanDate(LocalDate.now()).build());
+
+    List<LoanBatchResultDTO> results = service.returnAll(Arrays.asList(
+        new LoanReturnDTO(loan.getId(), true, loan.getVersion() + 1), new LoanReturnDTO(loan.getId(), true, loan.getVersion())));
+
+    assertThat(results).extracting(LoanBatchResultDTO::getStatus)
+        .containsExactly(LoanBatchStatus.CONFLICT, LoanBatchStatus.UPDATED);
+    assertThat(loanRepository.findById(loan.getId())).hasValueSatisfying(
+        returned -> assertThat(returned.getVersion()).isEqualTo(loan.getVersion() + 1));
+  }
+
+  private Statistics statistics() {
+    Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    statistics.clear();
+    return statistics;
+  }
+
+  private static LoanDTO loan(String isbn) {
+    return LoanDTO.builder().isbn(isbn).customer("Fulano").email("fulano@email.com").build();
+  }
+}
@@ -0,0 +1,123 @@
+package com.udemy.demo.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.udemy.demo.api.model.entity.Books;
+import com.udemy.demo.api.model.entity.Loan;
+import com.udemy.demo.exception.BusinessException;
+import com.udemy.demo.model.repository.BooksRepository;
+import com.udemy.demo.model.repository.LoanRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+//cada save roda na sua própria transação, como nas requisições concorrentes da api
+@ExtendWith(SpringExtension.class)
+@ActiveProfiles("test")
+@DataJpaTest
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class LoanConcurrencyTest {
+
+  private static final int THREADS = 16;
+
+  @Autowired
+  BooksRepository booksRepository;
+
+  @Autowired
+  LoanRepository loanRepository;
+
+  LoanService service;
+
+  List<Books> books = new ArrayList<>();
+
+  @BeforeEach
+  public void setup() {
+    service = new LoanServiceImpl(loanRepository, new SimpleMeterRegistry());
+  }
+
+  @AfterEach
+  public void cleanup() {
+    books.forEach(book -> loanRepository.deleteAll(loanRepository.findByBook(book, Pageable.unpaged())));
+    booksRepository.deleteAll(books);
+  }
+
+  @Test
+  @DisplayName("Deve emprestar o livro uma única vez com requisições concorrentes")
+  public void concurrentLoansTest() throws Exception {
+    for (int round = 0; round < 5; round++) {
+      Books book = booksRepository.save(Books.builder().isbn("concorrente-" + round).author("Joao").title("Clean Code").build());
+      books.add(book);
+
+      List<Object> results = loanConcurrently(book);
+
+      assertThat(results.stream().filter(Loan.class::isInstance)).hasSize(1);
+      assertThat(results.stream().filter(BusinessException.class::isInstance)).hasSize(THREADS - 1);
+      assertThat(loanRepository.findActiveBookIds(List.of(book.getId()))).containsExactly(book.getId());
+    }
+  }
+
+  @Test
+  @DisplayName("Deve permitir novo empréstimo depois que o livro for devolvido")
+  public void loanAfterReturnTest() {
+    Books book = booksRepository.save(Books.builder().isbn("devolvido").author("Joao").title("Clean Code").build());
+    books.add(book);
+
+    Loan loan = service.save(newLoan(book, "primeiro"));
+    loan.setReturned(true);
+    service.update(loan);
+
+    Loan other = service.save(newLoan(book, "segundo"));
+
+    assertThat(other.getId()).isNotEqualTo(loan.getId());
+  }
+
+  private List<Object> loanConcurrently(Books book) throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+    CountDownLatch start = new CountDownLatch(1);
+    try {
+      List<Future<Object>> futures = new ArrayList<>();
+      for (int i = 0; i < THREADS; i++) {
+        String customer = "cliente-" + i;
+        Callable<Object> task = () -> {
+          start.await();
+          try {
+            return service.save(newLoan(book, customer));
+          } catch (BusinessException e) {
+            return e;
+          }
+        };
+        futures.add(executor.submit(task));
+      }
+      start.countDown();
+      List<Object> results = new ArrayList<>();
+      for (Future<Object> future : futures) {
+        results.add(future.get());
+      }
+      return results;
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private Loan newLoan(Books book, String customer) {
+    return Loan.builder().book(book).customer(customer).customerEmail(customer + "@email.com").loanDate(LocalDate.now()).build();
+  }
+}
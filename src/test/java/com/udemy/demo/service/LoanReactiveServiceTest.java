@@ -0,0 +1,121 @@
+package com.udemy.demo.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.udemy.demo.api.dto.LoanFilterDTO;
+import com.udemy.demo.api.model.entity.LoanBookRow;
+import com.udemy.demo.api.model.entity.LoanRow;
+import com.udemy.demo.exception.BusinessException;
+import com.udemy.demo.model.repository.LoanReactiveRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.Arrays;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mockito;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+@ExtendWith(SpringExtension.class)
+@ActiveProfiles("test")
+public class LoanReactiveServiceTest {
+  LoanReactiveService service;
+
+  @MockBean
+  LoanReactiveRepository repository;
+
+  SimpleMeterRegistry registry;
+
+  @BeforeEach
+  public void setup(){
+    this.registry=new SimpleMeterRegistry();
+    this.service=new LoanReactiveServiceImpl(repository,registry);
+  }
+
+  @Test
+  @DisplayName("Deve salvar um emprestimo com o livro ativo")
+  public void saveLoanTest(){
+    LoanRow loan = LoanRow.builder().bookId(1l).customer("Fulano").loanDate(LocalDate.now()).build();
+    Mockito.when(repository.insert(loan)).thenReturn(Mono.just(loan));
+
+    StepVerifier.create(service.save(loan)).expectNext(loan).verifyComplete();
+
+    assertThat(loan.getActiveBookId()).isEqualTo(1l);
+  }
+
+  @Test
+  @DisplayName("Deve lançar erro de negócio e contar o conflito quando o livro já estiver emprestado")
+  public void loanedBookSaveTest(){
+    LoanRow loan = LoanRow.builder().bookId(1l).customer("Fulano").loanDate(LocalDate.now()).build();
+    Mockito.when(repository.insert(loan)).thenReturn(Mono.error(new DataIntegrityViolationException("insert",
+        new SQLException("Unique index or primary key violation: \"PUBLIC.UK_LOAN_ACTIVE_BOOK_INDEX_2 ON PUBLIC.LOAN(ACTIVE_BOOK_ID)\""))));
+
+    StepVerifier.create(service.save(loan))
+        .expectErrorSatisfies(e -> assertThat(e).isInstanceOf(BusinessException.class).hasMessage("Book has already loaned"))
+        .verify();
+
+    assertThat(registry.counter(LoanServiceImpl.CONFLICTS_COUNTER).count()).isEqualTo(1);
+  }
+
+  @Test
+  @DisplayName("Deve liberar o livro ao devolver o emprestimo")
+  public void returnLoanTest(){
+    LoanRow loan = LoanRow.builder().id(1l).bookId(1l).activeBookId(1l).returned(true).build();
+    Mockito.when(repository.update(loan)).thenReturn(Mono.just(loan));
+
+    StepVerifier.create(service.update(loan)).expectNext(loan).verifyComplete();
+
+    assertThat(loan.getActiveBookId()).isNull();
+  }
+
+  @Test
+  @DisplayName("Deve devolver com erro de concorrência quando a versão estiver desatualizada")
+  public void returnStaleLoanTest(){
+    Mockito.when(repository.updateReturned(1l, true, 2l)).thenReturn(Mono.just(0l));
+    Mockito.when(repository.existsById(1l)).thenReturn(Mono.just(true));
+
+    StepVerifier.create(service.returnLoan(1l, true, 2l))
+        .expectError(ObjectOptimisticLockingFailureException.class)
+        .verify();
+  }
+
+  @Test
+  @DisplayName("Não deve contar os empréstimos quando a primeira página já define o total")
+  public void findLoanWithoutCountTest(){
+    LoanFilterDTO filter = LoanFilterDTO.builder().isbn("321").customer("Fulano").build();
+    LoanBookRow row = new LoanBookRow(1l, "321", "Fulano", null, 1l, "Clean Code", "Joao");
+    Mockito.when(repository.findByBookIsbnOrCustomer("321", "Fulano", 10, 0)).thenReturn(Flux.just(row));
+
+    StepVerifier.create(service.find(filter, PageRequest.of(0, 10)))
+        .assertNext(page -> {
+          assertThat(page.getContent()).isEqualTo(Arrays.asList(row));
+          assertThat(page.getTotalElements()).isEqualTo(1);
+        })
+        .verifyComplete();
+
+    Mockito.verify(repository, Mockito.never()).countByBookIsbnOrCustomer(Mockito.any(), Mockito.any());
+  }
+
+  @Test
+  @DisplayName("Deve contar os empréstimos quando a página vier cheia")
+  public void findLoanWithCountTest(){
+    LoanFilterDTO filter = LoanFilterDTO.builder().isbn("321").customer("Fulano").build();
+    LoanBookRow row = new LoanBookRow(1l, "321", "Fulano", null, 1l, "Clean Code", "Joao");
+    Mockito.when(repository.findByBookIsbnOrCustomer("321", "Fulano", 1, 0)).thenReturn(Flux.just(row));
+    Mockito.when(repository.countByBookIsbnOrCustomer("321", "Fulano")).thenReturn(Mono.just(5l));
+
+    StepVerifier.create(service.find(filter, PageRequest.of(0, 1)))
+        .assertNext(page -> assertThat(page.getTotalElements()).isEqualTo(5))
+        .verifyComplete();
+  }
+}
@@ -16,10 +16,14 @@ import com.udemy.demo.api.model.entity.Loan;
 import com.udemy.demo.exception.BusinessException;
 import com.udemy.demo.model.repository.BooksRepository;
 import com.udemy.demo.model.repository.LoanRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.sql.SQLException;
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 import org.assertj.core.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
@@ -27,10 +31,13 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mockito;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.data.domain.Example;
 import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 
@@ -42,9 +49,12 @@ public class LoanServiceTest {
   @MockBean
   private LoanRepository repository;
 
+  SimpleMeterRegistry registry;
+
   @BeforeEach
   public void setup(){
-    this.service=new LoanServiceImpl(repository);
+    this.registry=new SimpleMeterRegistry();
+    this.service=new LoanServiceImpl(repository,registry);
   }
 
   private Books createNewBook() {
@@ -63,9 +73,7 @@ public class LoanServiceTest {
     Loan savingLoan = Loan.builder().id(1l).book(book).customer("Fulano").loanDate(LocalDate.now()).build();
 
     Loan savedLoan=Loan.builder().id(1l).book(book).customer("Fulano").loanDate(LocalDate.now()).build();
-    //to dizendo que vai retornar false, ou seja, não vai dar erro de businnes exception
-    when(repository.existsByBookAndNotReturned(book)).thenReturn(false);
-    Mockito.when(repository.save(savingLoan)).thenReturn(savedLoan);
+    Mockito.when(repository.saveAndFlush(savingLoan)).thenReturn(savedLoan);
 
     //execucao
     Loan saved=service.save(savingLoan);
@@ -75,6 +83,8 @@ public class LoanServiceTest {
     assertThat(saved.getBook().getId()).isEqualTo(savedLoan.getBook().getId());
     assertThat(saved.getCustomer()).isEqualTo(savedLoan.getCustomer());
     assertThat(saved.getLoanDate()).isEqualTo(savedLoan.getLoanDate());
+    //não consulta antes de inserir, quem garante é a constraint
+    verify(repository,never()).findActiveBookIds(Mockito.anyCollection());
 
     
   }
@@ -89,8 +99,9 @@ public class LoanServiceTest {
 
 
 
-    //aqui diz que o livro não retornou...ou seja -=true, a expception será gerada
-    when(repository.existsByBookAndNotReturned(book)).thenReturn(true);
+    //aqui diz que o livro não retornou...ou seja a constraint de empréstimo ativo barra o insert
+    when(repository.saveAndFlush(savingLoan)).thenThrow(new DataIntegrityViolationException("could not execute statement",
+        new SQLException("Unique index or primary key violation: \"PUBLIC.UK_LOAN_ACTIVE_BOOK_INDEX_2 ON PUBLIC.LOAN(ACTIVE_BOOK_ID)\"")));
 
     //execucao
 
@@ -101,14 +112,26 @@ public class LoanServiceTest {
     //verificacao
     assertThat(ex).isInstanceOf(BusinessException.class)
            .hasMessage("Book has already loaned");
-
-   verify(repository,never()).save(savingLoan);
+    assertThat(registry.counter(LoanServiceImpl.CONFLICTS_COUNTER).count()).isEqualTo(1);
 
 
   }
 
 
 
+  @Test
+  @DisplayName("Deve repassar violações de integridade que não são de empréstimo ativo"  )
+  public void otherIntegrityViolationTest(){
+    Loan savingLoan = Loan.builder().book(createNewBook()).customer("Fulano").loanDate(LocalDate.now()).build();
+    DataIntegrityViolationException violation = new DataIntegrityViolationException("could not execute statement",
+        new SQLException("Referential integrity constraint violation: \"FK_BOOK\""));
+    when(repository.saveAndFlush(savingLoan)).thenThrow(violation);
+
+    Throwable ex=catchThrowable(()-> service.save(savingLoan));
+
+    assertThat(ex).isSameAs(violation);
+  }
+
   @Test
   @DisplayName("Deve obter as informações de empréstimo por id"  )
   public void getLoanDetailsTest(){
@@ -164,6 +187,50 @@ public class LoanServiceTest {
     verify(repository).save(loan);
   }
 
+  @Test
+  @DisplayName("Deve devolver o emprestimo num update direto, sem buscar antes")
+  public void returnLoanTest(){
+    when(repository.updateReturned(1l,true,null)).thenReturn(1);
+
+    boolean returned=service.returnLoan(1l,true,null);
+
+    assertThat(returned).isTrue();
+    verify(repository,never()).findById(Mockito.anyLong());
+    verify(repository,never()).existsById(Mockito.anyLong());
+  }
+
+  @Test
+  @DisplayName("Deve retornar false ao devolver emprestimo inexistente")
+  public void returnInexistentLoanTest(){
+    when(repository.updateReturned(1l,true,2l)).thenReturn(0);
+    when(repository.existsById(1l)).thenReturn(false);
+
+    assertThat(service.returnLoan(1l,true,2l)).isFalse();
+  }
+
+  @Test
+  @DisplayName("Deve lançar erro de concorrência ao devolver com versão desatualizada")
+  public void returnStaleLoanTest(){
+    when(repository.updateReturned(1l,true,2l)).thenReturn(0);
+    when(repository.existsById(1l)).thenReturn(true);
+
+    Throwable ex=catchThrowable(()-> service.returnLoan(1l,true,2l));
+
+    assertThat(ex).isInstanceOf(ObjectOptimisticLockingFailureException.class);
+  }
+
+  @Test
+  @DisplayName("Deve lançar erro de negocio ao reabrir emprestimo de livro emprestado de novo")
+  public void reopenLoanOfLoanedBookTest(){
+    when(repository.updateReturned(1l,false,null)).thenThrow(new DataIntegrityViolationException("could not execute statement",
+        new SQLException("Unique index or primary key violation: \"PUBLIC.UK_LOAN_ACTIVE_BOOK_INDEX_2 ON PUBLIC.LOAN(ACTIVE_BOOK_ID)\"")));
+
+    Throwable ex=catchThrowable(()-> service.returnLoan(1l,false,null));
+
+    assertThat(ex).isInstanceOf(BusinessException.class).hasMessage("Book has already loaned");
+    assertThat(registry.counter(LoanServiceImpl.CONFLICTS_COUNTER).count()).isEqualTo(1);
+  }
+
   @Test
   @DisplayName("Deve filtar emprestimos pelas propriedades")
   public void findLoanTest() {
@@ -175,9 +242,9 @@ public class LoanServiceTest {
 
 
     List<Loan> lista=Arrays.asList(loan);
-    Page<Loan> page=new PageImpl<Loan>(lista, PageRequest.of(0,10),1);
+    Slice<Loan> slice=new SliceImpl<Loan>(lista, PageRequest.of(0,10),false);
 
-    Mockito.when(repository.findByBookIsbnOrCustomer(Mockito.anyString(),Mockito.anyString(),Mockito.any(PageRequest.class))).thenReturn(page);
+    Mockito.when(repository.findByBookIsbnOrCustomer(Mockito.anyString(),Mockito.anyString(),Mockito.any(PageRequest.class))).thenReturn(slice);
 
     //execução
     Page<Loan> result=service.find(loanFilterDTO,PageRequest.of(0,10));
@@ -188,7 +255,37 @@ public class LoanServiceTest {
     assertThat(result.getContent()).isEqualTo(lista); //la no cenário eu passei uma lista
     assertThat(result.getPageable().getPageNumber()).isEqualTo(0); //lá no cenário eu passei 0
     assertThat(result.getPageable().getPageSize()).isEqualTo(10); //la no cenário eu passei 10
+    //a página veio incompleta, então o total já é conhecido sem count
+    Mockito.verify(repository,Mockito.never()).countByBookIsbnOrCustomer(Mockito.anyString(),Mockito.anyString());
+  }
+
+  @Test
+  @DisplayName("Deve usar o count do repositório quando a página vier cheia")
+  public void findLoanWithCountTest() {
+    LoanFilterDTO loanFilterDTO=LoanFilterDTO.builder().customer("Fulano").isbn("321").build();
+    Loan loan=createLoan();
+    loan.setId(1l);
+    Slice<Loan> slice=new SliceImpl<Loan>(Arrays.asList(loan), PageRequest.of(0,1),true);
+    Mockito.when(repository.findByBookIsbnOrCustomer("321","Fulano",PageRequest.of(0,1))).thenReturn(slice);
+    Mockito.when(repository.countByBookIsbnOrCustomer("321","Fulano")).thenReturn(5l);
+
+    Page<Loan> result=service.find(loanFilterDTO,PageRequest.of(0,1));
+
+    assertThat(result.getTotalElements()).isEqualTo(5);
+    assertThat(result.getTotalPages()).isEqualTo(5);
   }
 
+  @Test
+  @DisplayName("Deve exportar os empréstimos do filtro")
+  public void exportLoansTest() {
+    LoanDTO loan=new LoanDTO(1l,"321","Fulano","fulano@email.com",1l,"Clean Code","Joao");
+    Mockito.when(repository.streamByBookIsbnOrCustomer("321",null)).thenReturn(Stream.of(loan));
+    List<LoanDTO> exported=new ArrayList<>();
+
+    service.export(LoanFilterDTO.builder().isbn("321").build(),exported::add);
+
+    assertThat(exported).containsExactly(loan);
+    assertThat(exported.get(0).getBook().getIsbn()).isEqualTo("321");
+  }
 
 }